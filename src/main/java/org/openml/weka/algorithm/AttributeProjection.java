@@ -0,0 +1,205 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.openml.apiconnector.algorithms.Conversion;
+import org.openml.apiconnector.xml.DataSetDescription;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+/**
+ * Removes a set of attributes from a dataset in a single pass. The kept 
+ * columns are determined once, after which every instance is copied exactly 
+ * once, regardless of the number of removed attributes. Can be applied to a 
+ * complete dataset, or to every row while it is parsed. 
+ */
+public class AttributeProjection {
+	
+	private final Instances structure;
+	private final int[] newIndex;
+	private final int[] oldIndex;
+	
+	/**
+	 * @param structure - the header of the dataset to project
+	 * @param removeAttributes - names of attributes that are dropped, may be null
+	 * @throws IllegalArgumentException - when one of the attributes does not exist
+	 */
+	public AttributeProjection(Instances structure, Collection<String> removeAttributes) {
+		boolean[] removed = new boolean[structure.numAttributes()];
+		if (removeAttributes != null) {
+			for (String name : removeAttributes) {
+				Attribute att = structure.attribute(name);
+				if (att == null) {
+					throw new IllegalArgumentException("Attribute " + name + " non-existant on dataset. ");
+				}
+				Conversion.log("OK", "Remove Attribte", "Removing attribute " + name + " (1-based index: " + att.index() + ")");
+				removed[att.index()] = true;
+			}
+		}
+		
+		this.structure = structure;
+		newIndex = new int[structure.numAttributes()];
+		int numKept = 0;
+		for (int i = 0; i < structure.numAttributes(); ++i) {
+			newIndex[i] = removed[i] ? -1 : numKept++;
+		}
+		oldIndex = new int[numKept];
+		for (int i = 0; i < newIndex.length; ++i) {
+			if (newIndex[i] >= 0) {
+				oldIndex[newIndex[i]] = i;
+			}
+		}
+	}
+	
+	/**
+	 * @param dsd - the data set description object, as downloaded from openml
+	 * @return the ignore attributes and the row id attribute of the dataset
+	 */
+	public static List<String> getRemovedAttributes(DataSetDescription dsd) {
+		List<String> removeAttributes = new ArrayList<String>();
+		if (dsd.getIgnore_attribute() != null) {
+			removeAttributes.addAll(Arrays.asList(dsd.getIgnore_attribute()));
+		}
+		if (dsd.getRow_id_attribute() != null) {
+			removeAttributes.add(dsd.getRow_id_attribute());
+		}
+		return removeAttributes;
+	}
+	
+	/**
+	 * Creates an empty dataset with the kept attributes. String and relational 
+	 * attributes get their own, empty value lists, as projected values are 
+	 * stored in the attributes of the target dataset, and an incremental 
+	 * reader overwrites the ones of the structure on every row. Nominal 
+	 * attributes with many labels are shared through the ValueDictionary. 
+	 * 
+	 * @param capacity - the initial capacity of the dataset
+	 * @return an empty dataset without the removed attributes
+	 */
+	public Instances createHeader(int capacity) {
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>(oldIndex.length);
+		for (int i : oldIndex) {
+			Attribute att = structure.attribute(i);
+			if (att.isString()) {
+				attributes.add(new Attribute(att.name(), (List<String>) null));
+			} else if (att.isRelationValued()) {
+				attributes.add(new Attribute(att.name(), new Instances(att.relation(), 0)));
+			} else {
+				attributes.add(ValueDictionary.getShared().share((Attribute) att.copy()));
+			}
+		}
+		return new Instances(structure.relationName(), attributes, capacity);
+	}
+	
+	/**
+	 * @return the number of attributes that are kept
+	 */
+	public int numAttributes() {
+		return oldIndex.length;
+	}
+	
+	/**
+	 * @return for every kept attribute, its index in the original dataset
+	 */
+	public int[] getKeptAttributes() {
+		return oldIndex.clone();
+	}
+	
+	/**
+	 * Projects all instances of a dataset. The class index is not set.
+	 * 
+	 * @param dataset - the dataset, with the structure that this projection was created for
+	 * @return a new dataset without the removed attributes
+	 */
+	public Instances project(Instances dataset) {
+		Instances result = createHeader(dataset.numInstances());
+		for (int i = 0; i < dataset.numInstances(); ++i) {
+			result.add(project(dataset.instance(i), result));
+		}
+		return result;
+	}
+	
+	/**
+	 * Projects a single instance. String and relational values are added to 
+	 * the attributes of the target dataset. 
+	 * 
+	 * @param row - the instance, with the structure that this projection was created for
+	 * @param target - the dataset that the result will be added to, as 
+	 *                 obtained by createHeader
+	 * @return a new instance without the removed attributes, without dataset
+	 */
+	public Instance project(Instance row, Instances target) {
+		if (row instanceof SparseInstance) {
+			int numValues = 0;
+			double[] values = new double[row.numValues()];
+			int[] indices = new int[row.numValues()];
+			for (int p = 0; p < row.numValues(); ++p) {
+				int j = newIndex[row.index(p)];
+				if (j >= 0) {
+					values[numValues] = projectValue(row, row.index(p), target.attribute(j));
+					indices[numValues] = j;
+					++numValues;
+				}
+			}
+			return new SparseInstance(row.weight(), values, indices, oldIndex.length);
+		} else {
+			double[] values = new double[oldIndex.length];
+			for (int j = 0; j < oldIndex.length; ++j) {
+				values[j] = projectValue(row, oldIndex[j], target.attribute(j));
+			}
+			return new DenseInstance(row.weight(), values);
+		}
+	}
+	
+	private static double projectValue(Instance row, int index, Attribute target) {
+		double value = row.value(index);
+		if (row.isMissing(index)) {
+			return value;
+		}
+		// string and relational values are stored in the source attribute
+		if (target.isString()) {
+			return target.addStringValue(ValueDictionary.getShared().intern(row.stringValue(index)));
+		} else if (target.isRelationValued()) {
+			return target.addRelation(row.relationalValue(index));
+		}
+		return value;
+	}
+}
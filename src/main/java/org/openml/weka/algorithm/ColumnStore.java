@@ -0,0 +1,68 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.algorithm;
+
+import java.io.Closeable;
+
+/**
+ * Read-only storage of the values of a dataset, addressed by row and column.
+ * Implementations decide on the physical layout (e.g., a memory-mapped file);
+ * {@link StoredInstance} exposes a single row as a Weka instance.
+ * 
+ * Stores that hold an open file are closed when their dataset is no longer
+ * used; values may not be read from a closed store.
+ */
+public interface ColumnStore extends Closeable {
+	
+	/**
+	 * @return the number of rows (instances) in the store
+	 */
+	public int numRows();
+	
+	/**
+	 * @return the number of columns (attributes) in the store
+	 */
+	public int numColumns();
+	
+	/**
+	 * @param row - the row index
+	 * @param column - the column index
+	 * @return the value in Weka's internal format (NaN for missing)
+	 */
+	public double value(int row, int column);
+	
+	/**
+	 * @param row - the row index
+	 * @return the weight of the instance at this row
+	 */
+	public double weight(int row);
+}
@@ -0,0 +1,212 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.algorithm;
+
+import java.util.Arrays;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+import weka.core.Utils;
+
+/**
+ * Column store that holds the values of a dataset in the heap, in the 
+ * smallest type that represents them: nominal values as byte or short codes,
+ * string values and nominal values of attributes with very many labels as 
+ * int codes, and numeric values as 32-bit floats. Date and relational values
+ * are kept as doubles. 
+ * 
+ * Nominal, string and missing values are represented exactly, so for datasets
+ * without numeric attributes, the values (and therefore the results of any 
+ * classifier) are bit-identical to those of the original dataset. Numeric 
+ * values are rounded to the nearest float, which changes the values and can
+ * change the results of classifiers. 
+ */
+public class CompactColumnStore implements ColumnStore {
+	
+	private static final byte KIND_BYTE = 0;
+	private static final byte KIND_SHORT = 1;
+	private static final byte KIND_INT = 2;
+	private static final byte KIND_FLOAT = 3;
+	private static final byte KIND_DOUBLE = 4;
+	
+	private final int numRows;
+	private final int numColumns;
+	private final byte[] kinds;
+	private final Object[] columns;
+	private final double[] weights;
+	
+	/**
+	 * Copies the values of a dense dataset into compact columns.
+	 * 
+	 * @param instances - the dataset
+	 */
+	public CompactColumnStore(Instances instances) {
+		numRows = instances.numInstances();
+		numColumns = instances.numAttributes();
+		kinds = new byte[numColumns];
+		columns = new Object[numColumns];
+		
+		for (int j = 0; j < numColumns; ++j) {
+			Attribute attribute = instances.attribute(j);
+			if (attribute.isNominal() || attribute.isString()) {
+				// the largest code is used for missing values
+				if (attribute.isNominal() && attribute.numValues() < Byte.MAX_VALUE) {
+					kinds[j] = KIND_BYTE;
+					byte[] codes = new byte[numRows];
+					for (int i = 0; i < numRows; ++i) {
+						Instance instance = instances.instance(i);
+						codes[i] = instance.isMissing(j) ? Byte.MAX_VALUE : (byte) instance.value(j);
+					}
+					columns[j] = codes;
+				} else if (attribute.isNominal() && attribute.numValues() < Short.MAX_VALUE) {
+					kinds[j] = KIND_SHORT;
+					short[] codes = new short[numRows];
+					for (int i = 0; i < numRows; ++i) {
+						Instance instance = instances.instance(i);
+						codes[i] = instance.isMissing(j) ? Short.MAX_VALUE : (short) instance.value(j);
+					}
+					columns[j] = codes;
+				} else {
+					kinds[j] = KIND_INT;
+					int[] codes = new int[numRows];
+					for (int i = 0; i < numRows; ++i) {
+						Instance instance = instances.instance(i);
+						codes[i] = instance.isMissing(j) ? Integer.MAX_VALUE : (int) instance.value(j);
+					}
+					columns[j] = codes;
+				}
+			} else if (attribute.isNumeric() && !attribute.isDate()) {
+				kinds[j] = KIND_FLOAT;
+				float[] values = new float[numRows];
+				for (int i = 0; i < numRows; ++i) {
+					// NaN, Weka's missing value, stays NaN
+					values[i] = (float) instances.instance(i).value(j);
+				}
+				columns[j] = values;
+			} else {
+				kinds[j] = KIND_DOUBLE;
+				double[] values = new double[numRows];
+				for (int i = 0; i < numRows; ++i) {
+					values[i] = instances.instance(i).value(j);
+				}
+				columns[j] = values;
+			}
+		}
+		
+		double[] weights = null;
+		for (int i = 0; i < numRows; ++i) {
+			if (instances.instance(i).weight() != 1.0) {
+				if (weights == null) {
+					weights = new double[numRows];
+					Arrays.fill(weights, 1.0);
+				}
+				weights[i] = instances.instance(i).weight();
+			}
+		}
+		this.weights = weights;
+	}
+	
+	/**
+	 * Replaces the instances of a dense dataset by instances that read their 
+	 * values from a compact column store. Sparse datasets are not changed, 
+	 * as sparse instances are already compact. 
+	 * 
+	 * @param instances - the dataset, which is modified
+	 * @return the same dataset
+	 */
+	public static Instances compact(Instances instances) {
+		if (instances.numInstances() == 0 || instances.instance(0) instanceof SparseInstance) {
+			return instances;
+		}
+		CompactColumnStore store = new CompactColumnStore(instances);
+		for (int i = 0; i < store.numRows(); ++i) {
+			instances.set(i, new StoredInstance(store, i));
+		}
+		return instances;
+	}
+
+	@Override
+	public int numRows() {
+		return numRows;
+	}
+
+	@Override
+	public int numColumns() {
+		return numColumns;
+	}
+
+	@Override
+	public double value(int row, int column) {
+		switch (kinds[column]) {
+			case KIND_BYTE: {
+				byte code = ((byte[]) columns[column])[row];
+				return code == Byte.MAX_VALUE ? Utils.missingValue() : code;
+			}
+			case KIND_SHORT: {
+				short code = ((short[]) columns[column])[row];
+				return code == Short.MAX_VALUE ? Utils.missingValue() : code;
+			}
+			case KIND_INT: {
+				int code = ((int[]) columns[column])[row];
+				return code == Integer.MAX_VALUE ? Utils.missingValue() : code;
+			}
+			case KIND_FLOAT:
+				return ((float[]) columns[column])[row];
+			default:
+				return ((double[]) columns[column])[row];
+		}
+	}
+
+	@Override
+	public double weight(int row) {
+		return weights == null ? 1.0 : weights[row];
+	}
+	
+	@Override
+	public void close() {
+		// the values are released by the garbage collector
+	}
+	
+	/**
+	 * @return the number of bytes used by the values and weights
+	 */
+	public long sizeInBytes() {
+		final int[] bytesPerKind = {1, 2, 4, 4, 8};
+		long size = weights == null ? 0 : (long) numRows * 8;
+		for (int j = 0; j < numColumns; ++j) {
+			size += (long) numRows * bytesPerKind[kinds[j]];
+		}
+		return size;
+	}
+}
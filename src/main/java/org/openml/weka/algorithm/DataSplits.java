@@ -31,21 +31,21 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
 
 package org.openml.weka.algorithm;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.openml.apiconnector.xml.EstimationProcedure;
+import org.openml.apiconnector.xml.EstimationProcedureType;
 
-import weka.core.Attribute;
-import weka.core.AttributeStats;
-import weka.core.Instance;
 import weka.core.Instances;
 
 public class DataSplits {
 
-	private final Instances[][][][] subsamples;
-	private final ArrayList<Integer>[][][] rowids;
+	private final Instances dataset;
+	private final SplitIndex splits;
 	private final EstimationProcedure estimationProcedure;
+	// the train and test sets that were requested and not released yet
+	private final Map<Long, Instances[]> materialized = new HashMap<Long, Instances[]>();
 
 	public final int REPEATS;
 	public final int FOLDS;
@@ -54,6 +54,10 @@ public class DataSplits {
 	public final boolean HAS_SAMPLES;
 	
 	public DataSplits(int datasetId, EstimationProcedure ep, Instances dataset, Instances datasplits) throws Exception {
+		this(datasetId, ep, dataset, SplitIndex.fromInstances(datasplits, ep.getType() == EstimationProcedureType.LEAVEONEOUT));
+	}
+	
+	public DataSplits(int datasetId, EstimationProcedure ep, Instances dataset, SplitIndex splits) throws Exception {
 		estimationProcedure = ep;
 		final int numRepeats;
 		final int numFolds;
@@ -92,8 +96,7 @@ public class DataSplits {
 		
 		if (ep.getTtid() == 3) {
 			HAS_SAMPLES = true;
-			AttributeStats att = datasplits.attributeStats(datasplits.attribute("sample").index());
-			numSamples = (int) att.numericStats.max + 1;
+			numSamples = splits.getSamples();
 		} else {
 			HAS_SAMPLES = false;
 			numSamples = 1;
@@ -104,38 +107,9 @@ public class DataSplits {
 		FOLDS = numFolds;
 		SAMPLES = numSamples;
 		
-		subsamples = new Instances[REPEATS][FOLDS][SAMPLES][2];
-		rowids = new ArrayList[REPEATS][FOLDS][SAMPLES];
-		for (int repeats = 0; repeats < REPEATS; ++repeats) {
-			for (int folds = 0; folds < FOLDS; ++folds) {
-				for (int samples = 0; samples < SAMPLES; ++samples) {
-					for (int i = 0; i < 2; ++i) {
-						subsamples[repeats][folds][samples][i] = new Instances(dataset, 0);
-						rowids[repeats][folds][samples] = new ArrayList<Integer>();
-					}
-				}
-			}
-		}
-
-		Attribute attRowid = datasplits.attribute("rowid");
-		Attribute attRepeat = datasplits.attribute("repeat");
-		Attribute attFold = datasplits.attribute("fold");
-		Attribute attSample = datasplits.attribute("sample");
-		Attribute attType = datasplits.attribute("type");
-		for (int i = 0; i < datasplits.numInstances(); ++i) {
-			Instance instanceMeta = datasplits.get(i);
-			int rowid = (int) instanceMeta.value(attRowid);
-			int repeat = attRepeat == null ? 0 : (int) instanceMeta.value(attRepeat);
-			int fold = attFold == null ? 0 : (int) instanceMeta.value(attFold);
-			int sample = attSample == null ? 0 : (int) instanceMeta.value(attSample);
-			boolean train = attType.value((int) instanceMeta.value(attType)).equals("TRAIN");
-
-			Instance instanceBase = dataset.get(rowid);
-			subsamples[repeat][fold][sample][train == true ? 0 : 1].add(instanceBase);
-			if (train == false) {
-				rowids[repeat][fold][sample].add(rowid);
-			}
-		}
+		// the sets are views on the dataset, created when they are first requested
+		this.dataset = dataset;
+		this.splits = splits;
 	}
 	
 	public EstimationProcedure getEstimationProcedure() {
@@ -143,31 +117,85 @@ public class DataSplits {
 	}
 
 	public Instances getTrainingSet(int repeat, int fold) {
-		return subsamples[repeat][fold][0][0];
+		return getTrainingSet(repeat, fold, 0);
 	}
 	
 	public Instances getTrainingSet(int repeat, int fold, Integer sample) {
 		if (sample == null) {
 			return getTrainingSet(repeat, fold);
 		} else {
-			return subsamples[repeat][fold][sample][0];
+			return materialize(repeat, fold, sample)[0];
 		}
 	}
 
 	public Instances getTestSet(int repeat, int fold) {
-		return subsamples[repeat][fold][0][1];
+		return getTestSet(repeat, fold, 0);
 	}
 
 	public Instances getTestSet(int repeat, int fold, Integer sample) {
 		if (sample == null) {
 			return getTestSet(repeat, fold);
 		} else {
-			return subsamples[repeat][fold][sample][1];
+			return materialize(repeat, fold, sample)[1];
 		}
 	}
 
-	public List<Integer> getTestSetRowIds(int repeat, int fold, Integer sample) {
-		return rowids[repeat][fold][sample];
+	private synchronized Instances[] materialize(int repeat, int fold, int sample) {
+		long key = getKey(repeat, fold, sample);
+		Instances[] sets = materialized.get(key);
+		if (sets == null) {
+			sets = new Instances[] {
+				new InstancesView(dataset, getRows(repeat, fold, sample, true)), 
+				new InstancesView(dataset, getRows(repeat, fold, sample, false))
+			};
+			materialized.put(key, sets);
+		}
+		return sets;
+	}
+	
+	/**
+	 * Drops the train and test set of a fold. They are created again when 
+	 * they are requested after this. 
+	 * 
+	 * @param repeat - the repeat
+	 * @param fold - the fold
+	 * @param sample - the sample, null if the task has no samples
+	 */
+	public synchronized void release(int repeat, int fold, Integer sample) {
+		materialized.remove(getKey(repeat, fold, sample == null ? 0 : sample));
+	}
+	
+	/**
+	 * @return the number of folds of which the train and test set are held
+	 */
+	public synchronized int getNumMaterialized() {
+		return materialized.size();
+	}
+	
+	private long getKey(int repeat, int fold, int sample) {
+		return ((long) repeat * FOLDS + fold) * SAMPLES + sample;
+	}
+	
+	/**
+	 * @param repeat - the repeat
+	 * @param fold - the fold
+	 * @param sample - the sample
+	 * @return the row ids of the test set, in the order of its instances. 
+	 *         The array is shared and should not be modified. 
+	 */
+	public int[] getTestSetRowIds(int repeat, int fold, Integer sample) {
+		return getRows(repeat, fold, sample == null ? 0 : sample, false);
+	}
+	
+	private int[] getRows(int repeat, int fold, int sample, boolean train) {
+		if (repeat < 0 || repeat >= REPEATS || fold < 0 || fold >= FOLDS || sample < 0 || sample >= SAMPLES) {
+			throw new IndexOutOfBoundsException("No split for repeat " + repeat + ", fold " + fold + ", sample " + sample);
+		}
+		return splits.getRows(repeat, fold, sample, train);
+	}
+	
+	public SplitIndex getSplitIndex() {
+		return splits;
 	}
 	
 	public int getNrOfRuns() {
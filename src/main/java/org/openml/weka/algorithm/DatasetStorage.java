@@ -0,0 +1,40 @@
+package org.openml.weka.algorithm;
+
+public enum DatasetStorage {
+	// heap: every instance is a DenseInstance or SparseInstance with its own arrays (Weka default)
+	// mapped: values are read from a memory-mapped file in the dataset cache, shared between processes
+	// lazy: a column is read from the file in the dataset cache into the heap when it is first accessed
+	// float: values are held in the heap as float32, and as byte/short/int codes for nominal and string attributes
+	// offheap: values are held in direct memory outside of the heap
+	HEAP("heap"), MAPPED("mapped"), LAZY("lazy"), FLOAT("float"), OFFHEAP("offheap");
+
+	private String text;
+
+	DatasetStorage(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * @return The name of this storage type;
+	 */
+	public String getName() {
+		return this.text;
+	}
+
+	/**
+	 * Converts a textual description of a storage type into a DatasetStorage
+	 * 
+	 * @param text (String)
+	 * @return the DatasetStorage
+	 */
+	public static DatasetStorage fromString(String text) {
+		if (text != null) {
+			for (DatasetStorage b : DatasetStorage.values()) {
+				if (text.equalsIgnoreCase(b.text)) {
+					return b;
+				}
+			}
+		}
+		return null;
+	}
+}
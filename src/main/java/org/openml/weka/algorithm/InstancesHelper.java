@@ -31,7 +31,11 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
 
 package org.openml.weka.algorithm;
 
-import java.io.FileReader;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -41,10 +45,20 @@ import org.openml.apiconnector.io.OpenmlConnector;
 import org.openml.apiconnector.xml.DataSetDescription;
 import org.openml.apiconnector.xml.Task;
 import org.openml.apiconnector.xml.Task.Input.Data_set;
+import org.openml.weka.io.CompressedStreams;
+import org.openml.weka.io.DatasetCache;
+import org.openml.weka.io.OpenmlWekaConnector;
+import org.openml.weka.io.ParquetLoader;
+import org.openml.weka.io.StreamingArffLoader;
 
+import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.SparseInstance;
 
 public class InstancesHelper {
+	
+	/** Dense datasets stay dense unless a threshold is configured; a sparse representation changes which code paths of a classifier run **/
+	public static final double DEFAULT_SPARSE_DENSITY = 0;
 
 	public static void setTargetAttribute(Instances instances, String classAttribute) throws Exception {
 		for (int i = 0; i < instances.numAttributes(); ++i) {
@@ -74,31 +88,140 @@ public class InstancesHelper {
 		return attributesAvailable;
 	}
 	
+	/**
+	 * @param instances - the dataset
+	 * @return the fraction of values that are non-zero, counting missing 
+	 *         values as non-zero
+	 */
+	public static double getDensity(Instances instances) {
+		if (instances.numInstances() == 0 || instances.numAttributes() == 0) {
+			return 1.0;
+		}
+		long nonZero = 0;
+		for (Instance instance : instances) {
+			for (int p = 0; p < instance.numValues(); ++p) {
+				if (instance.valueSparse(p) != 0) {
+					++nonZero;
+				}
+			}
+		}
+		return nonZero / ((double) instances.numInstances() * instances.numAttributes());
+	}
+	
+	/**
+	 * Converts all instances of a dataset to sparse instances, when its 
+	 * density is at most the given threshold. Datasets that already contain
+	 * sparse instances are returned as is. Conversion happens in place.
+	 * Sparse instances store an index next to each value, so they only pay
+	 * off well below a density of 2/3. 
+	 * 
+	 * @param instances - the dataset
+	 * @param maxDensity - the maximum fraction of non-zero values for which 
+	 *                     the sparse representation is used, 0 to never convert
+	 * @return the dataset
+	 */
+	public static Instances toSparseIfBeneficial(Instances instances, double maxDensity) {
+		if (maxDensity <= 0 || instances.numInstances() == 0 || instances.instance(0) instanceof SparseInstance) {
+			return instances;
+		}
+		double density = getDensity(instances);
+		if (density > maxDensity) {
+			return instances;
+		}
+		Conversion.log("OK", "Sparse", "Dataset " + instances.relationName() + " has density " + density + ", using sparse representation");
+		for (int i = 0; i < instances.numInstances(); ++i) {
+			instances.set(i, new SparseInstance(instances.instance(i)));
+		}
+		return instances;
+	}
+	
 	public static Instances getDatasetFromTask(OpenmlConnector apiconnector, Task task) throws Exception {
+		return getDatasetFromTask(apiconnector, task, null);
+	}
+	
+	/**
+	 * Closes the column store that the instances of a dataset read their 
+	 * values from, if any. The dataset may no longer be used afterwards. 
+	 * Failures are logged, as the dataset is discarded anyway. 
+	 * 
+	 * @param instances - a dataset that is no longer used
+	 */
+	public static void closeStore(Instances instances) {
+		if (instances.numInstances() == 0 || !(instances.instance(0) instanceof StoredInstance)) {
+			return;
+		}
+		try {
+			((StoredInstance) instances.instance(0)).getStore().close();
+		} catch (IOException e) {
+			Conversion.log("WARNING", "Column Store", "Could not close the store of " + instances.relationName() + ": " + e.getMessage());
+		}
+	}
+	
+	public static Instances getDatasetFromTask(OpenmlConnector apiconnector, Task task, DatasetCache cache) throws Exception {
+		return getDatasetFromTask(apiconnector, task, cache, DEFAULT_SPARSE_DENSITY);
+	}
+	
+	/**
+	 * Obtains the dataset of a task, with the ignore and row id attributes 
+	 * removed and the target attribute set as class. 
+	 * 
+	 * @param apiconnector - the connector to download the dataset with
+	 * @param task - the task to obtain the dataset for
+	 * @param cache - cache of already projected datasets, may be null
+	 * @param maxSparseDensity - datasets with at most this fraction of non-zero
+	 *                           values are represented as sparse instances
+	 * @return the dataset, ready to be used in combination with the task splits
+	 * @throws Exception - when the dataset could not be obtained or parsed
+	 */
+	public static Instances getDatasetFromTask(OpenmlConnector apiconnector, Task task, DatasetCache cache, double maxSparseDensity) throws Exception {
 		Data_set ds = TaskInformation.getSourceData(task);
 
 		DataSetDescription dsd = ds.getDataSetDescription(apiconnector);
-		Instances instances = new Instances(new FileReader(apiconnector.datasetGet(dsd)));
-
-		InstancesHelper.setTargetAttribute(instances, ds.getTarget_feature());
-
-		// remove attributes that may not be used.
-		if (dsd.getIgnore_attribute() != null) {
-			for (String ignoreAttr : dsd.getIgnore_attribute()) {
-				String attName = ignoreAttr;
-				Integer attIdx = instances.attribute(ignoreAttr).index();
-				Conversion.log("OK", "Remove Attribte", "Removing attribute " + attName + " (1-based index: " + attIdx + ")");
-				instances.deleteAttributeAt(attIdx);
+		Instances instances = cache == null ? null : cache.get(dsd);
+		if (instances == null) {
+			if (apiconnector instanceof OpenmlWekaConnector) {
+				OpenmlWekaConnector connector = (OpenmlWekaConnector) apiconnector;
+				// prefer the Parquet version, which only decodes the kept columns
+				File parquet = connector.getParquetFile(dsd);
+				if (parquet != null) {
+					try {
+						instances = ParquetLoader.load(parquet, AttributeProjection.getRemovedAttributes(dsd), connector.getNominalValues(dsd), dsd.getName());
+					} catch (Exception e) {
+						Conversion.log("WARNING", "Parquet", "Could not read " + parquet.getAbsolutePath() + ", falling back to ARFF: " + e.getMessage());
+					}
+				}
+				if (instances == null) {
+					// removes the attributes while parsing
+					instances = connector.getDatasetInstances(dsd);
+				}
+			} else {
+				// removes the attributes while parsing, in a single pass
+				Reader reader = new BufferedReader(new InputStreamReader(CompressedStreams.open(apiconnector.datasetGet(dsd))));
+				try {
+					instances = StreamingArffLoader.load(reader, AttributeProjection.getRemovedAttributes(dsd));
+				} finally {
+					reader.close();
+				}
+			}
+			// sparse ARFF files are parsed into sparse instances already
+			instances = toSparseIfBeneficial(instances, maxSparseDensity);
+			
+			if (cache != null) {
+				cache.put(dsd, instances);
+				if (cache.getStorage() != DatasetStorage.HEAP) {
+					// continue with the cached representation, so the parsed copy can be collected
+					Instances stored = cache.get(dsd);
+					if (stored != null) {
+						instances = stored;
+					} else {
+						// e.g., larger than the cache quota
+						instances = cache.toStorage(instances);
+					}
+				}
 			}
 		}
 
-		if (dsd.getRow_id_attribute() != null) {
-			String attName = dsd.getRow_id_attribute();
-			Integer attIdx = instances.attribute(dsd.getRow_id_attribute()).index();
-			Conversion.log("OK", "Remove Attribte", "Removing attribute " + attName + " (1-based index: " + attIdx + ")");
-			instances.deleteAttributeAt(attIdx);
-		}
-		
+		InstancesHelper.setTargetAttribute(instances, ds.getTarget_feature());
 		return instances;
 	}
 
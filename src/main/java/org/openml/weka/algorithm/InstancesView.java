@@ -0,0 +1,72 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.algorithm;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * A subset of the rows of a dataset, such as the training set of a fold, that
+ * keeps track of the row ids it was created from. The header is shared with 
+ * the base dataset. Every row is a copy of the instance in the base dataset, 
+ * so a classifier that modifies its training data (e.g., reweights it) does 
+ * not affect the base dataset or the sets of other folds. Instances of the 
+ * column stores only refer to their row, so copying them is cheap. 
+ */
+public class InstancesView extends Instances {
+	
+	private static final long serialVersionUID = 6417355208712346712L;
+	
+	private final int[] rows;
+	
+	/**
+	 * @param base - the dataset that the rows refer to
+	 * @param rows - the row ids of the instances in the view, in order
+	 */
+	public InstancesView(Instances base, int[] rows) {
+		super(base, rows.length);
+		this.rows = rows;
+		for (int row : rows) {
+			Instance instance = (Instance) base.instance(row).copy();
+			instance.setDataset(this);
+			m_Instances.add(instance);
+		}
+	}
+	
+	/**
+	 * @return the row ids of the view in the base dataset, as it was created. 
+	 *         The array is shared and should not be modified. 
+	 */
+	public int[] getRows() {
+		return rows;
+	}
+}
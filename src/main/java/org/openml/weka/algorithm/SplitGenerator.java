@@ -0,0 +1,237 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.algorithm;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.openml.apiconnector.xml.EstimationProcedure;
+import org.openml.apiconnector.xml.EstimationProcedureType;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+/**
+ * Generates the splits of an estimation procedure locally, from a seed, 
+ * instead of downloading the splits file of a task. The rows are shuffled 
+ * and stratified the way Weka's CrossValidationResultProducer does it: 
+ * repeat r uses Instances.randomize(new Random(seed + r)), followed by 
+ * Instances.stratify if stratified sampling is requested and the class is 
+ * nominal, and the folds are those of trainCV and testCV. A holdout keeps 
+ * the first part of the shuffled rows (per class when stratified) for 
+ * training, as Weka's RandomSplitResultProducer does. 
+ * 
+ * The result is deterministic for a given seed, dataset and estimation 
+ * procedure, but it is not guaranteed to equal the splits file that the 
+ * OpenML server generated for a task. Results obtained with generated 
+ * splits are therefore not comparable with those of the task on OpenML. 
+ */
+public class SplitGenerator {
+	
+	/**
+	 * @param ep - the estimation procedure
+	 * @return whether splits can be generated for the estimation procedure
+	 */
+	public static boolean supports(EstimationProcedure ep) {
+		if (ep.getTtid() == 3) {
+			// learning curves
+			return false;
+		}
+		switch (ep.getType()) {
+			case CROSSVALIDATION:
+			case HOLDOUT:
+			case HOLDOUT_ORDERED:
+			case LEAVEONEOUT:
+			case TESTONTRAININGDATA:
+				return true;
+			default:
+				return false;
+		}
+	}
+	
+	/**
+	 * @param ep - the estimation procedure
+	 * @param dataset - the dataset, with class index if the splits are stratified
+	 * @param seed - the seed of the first repeat
+	 * @return the splits
+	 * @throws Exception - when the estimation procedure is not supported
+	 */
+	public static SplitIndex generate(EstimationProcedure ep, Instances dataset, long seed) throws Exception {
+		if (!supports(ep)) {
+			throw new Exception("Can not generate splits for estimation procedure " + ep.getName() + " (" + ep.getType() + ")");
+		}
+		final int numRows = dataset.numInstances();
+		switch (ep.getType()) {
+			case CROSSVALIDATION: {
+				int numRepeats = ep.getRepeats();
+				int numFolds = ep.getFolds();
+				if (numFolds < 2 || numFolds > numRows) {
+					throw new Exception("Can not generate " + numFolds + " folds for " + numRows + " rows");
+				}
+				int[][][][][] rows = new int[numRepeats][numFolds][1][2][];
+				for (int repeat = 0; repeat < numRepeats; ++repeat) {
+					Instances shuffled = getShuffledRows(dataset, seed + repeat);
+					if (isStratified(ep, dataset)) {
+						shuffled.stratify(numFolds);
+					}
+					for (int fold = 0; fold < numFolds; ++fold) {
+						rows[repeat][fold][0][0] = getRowIds(shuffled.trainCV(numFolds, fold));
+						rows[repeat][fold][0][1] = getRowIds(shuffled.testCV(numFolds, fold));
+					}
+				}
+				return new SplitIndex(rows);
+			}
+			case HOLDOUT: 
+			case HOLDOUT_ORDERED: {
+				int numRepeats = ep.getRepeats() == null ? 1 : ep.getRepeats();
+				int testPercentage = ep.getPercentage();
+				int[][][][][] rows = new int[numRepeats][1][1][2][];
+				for (int repeat = 0; repeat < numRepeats; ++repeat) {
+					boolean ordered = ep.getType() == EstimationProcedureType.HOLDOUT_ORDERED;
+					Instances shuffled = ordered ? getRows(dataset) : getShuffledRows(dataset, seed + repeat);
+					rows[repeat][0][0] = holdout(shuffled, testPercentage, !ordered && isStratified(ep, dataset));
+				}
+				return new SplitIndex(rows);
+			}
+			case LEAVEONEOUT: {
+				// only the test sets, the training sets are derived
+				int[][][][][] rows = new int[1][numRows][1][2][];
+				for (int row = 0; row < numRows; ++row) {
+					rows[0][row][0][1] = new int[] {row};
+				}
+				return new SplitIndex(rows, numRows);
+			}
+			case TESTONTRAININGDATA: {
+				int[] all = new int[numRows];
+				for (int row = 0; row < numRows; ++row) {
+					all[row] = row;
+				}
+				return new SplitIndex(new int[][][][][] {{{{all, all}}}});
+			}
+			default: {
+				throw new Exception("Estimation Procedure Type not supported: " + ep.getType());
+			}
+		}
+	}
+	
+	/**
+	 * @param datasetId - the id of the dataset
+	 * @param ep - the estimation procedure
+	 * @param dataset - the dataset, with class index if the splits are stratified
+	 * @param seed - the seed of the first repeat
+	 * @return the splits of the dataset
+	 * @throws Exception - when the estimation procedure is not supported
+	 */
+	public static DataSplits generateDataSplits(int datasetId, EstimationProcedure ep, Instances dataset, long seed) throws Exception {
+		return new DataSplits(datasetId, ep, dataset, generate(ep, dataset, seed));
+	}
+	
+	private static boolean isStratified(EstimationProcedure ep, Instances dataset) {
+		return "true".equalsIgnoreCase(ep.getStratifiedSampling()) && dataset.classIndex() >= 0 && dataset.classAttribute().isNominal();
+	}
+	
+	/**
+	 * @return a dataset with the row id and, if set, the class of every row 
+	 *         of the dataset, in order 
+	 */
+	private static Instances getRows(Instances dataset) {
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("rowid"));
+		if (dataset.classIndex() >= 0) {
+			attributes.add(dataset.classAttribute().copy("class"));
+		}
+		Instances rows = new Instances("rows", attributes, dataset.numInstances());
+		if (dataset.classIndex() >= 0) {
+			rows.setClassIndex(1);
+		}
+		for (int i = 0; i < dataset.numInstances(); ++i) {
+			double[] values = dataset.classIndex() >= 0 ? new double[] {i, dataset.instance(i).classValue()} : new double[] {i};
+			rows.add(new DenseInstance(1.0, values));
+		}
+		return rows;
+	}
+	
+	private static Instances getShuffledRows(Instances dataset, long seed) {
+		Instances rows = getRows(dataset);
+		rows.randomize(new Random(seed));
+		return rows;
+	}
+	
+	private static int[] getRowIds(Instances rows) {
+		int[] rowIds = new int[rows.numInstances()];
+		for (int i = 0; i < rowIds.length; ++i) {
+			rowIds[i] = (int) rows.instance(i).value(0);
+		}
+		return rowIds;
+	}
+	
+	/**
+	 * Keeps the first part of the rows for training and the rest for testing, 
+	 * per class value if stratified (missing class values form a group).
+	 * 
+	 * @return the training rows and the test rows
+	 */
+	private static int[][] holdout(Instances rows, int testPercentage, boolean stratified) {
+		int numGroups = stratified ? rows.classAttribute().numValues() + 1 : 1;
+		int[] groupSizes = new int[numGroups];
+		int[] groups = new int[rows.numInstances()];
+		for (int i = 0; i < rows.numInstances(); ++i) {
+			if (stratified) {
+				groups[i] = rows.instance(i).classIsMissing() ? numGroups - 1 : (int) rows.instance(i).classValue();
+			}
+			++groupSizes[groups[i]];
+		}
+		int[] groupTrainSizes = new int[numGroups];
+		int numTrain = 0;
+		for (int g = 0; g < numGroups; ++g) {
+			groupTrainSizes[g] = (int) Math.round(groupSizes[g] * (100 - testPercentage) / 100.0);
+			numTrain += groupTrainSizes[g];
+		}
+		
+		int[] train = new int[numTrain];
+		int[] test = new int[rows.numInstances() - numTrain];
+		int numTrainAdded = 0;
+		int numTestAdded = 0;
+		int[] groupTrainAdded = new int[numGroups];
+		for (int i = 0; i < rows.numInstances(); ++i) {
+			int rowId = (int) rows.instance(i).value(0);
+			if (groupTrainAdded[groups[i]] < groupTrainSizes[groups[i]]) {
+				++groupTrainAdded[groups[i]];
+				train[numTrainAdded++] = rowId;
+			} else {
+				test[numTestAdded++] = rowId;
+			}
+		}
+		return new int[][] {train, test};
+	}
+}
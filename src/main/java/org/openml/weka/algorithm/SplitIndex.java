@@ -0,0 +1,316 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.algorithm;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * The row ids of the train and test set of every repeat, fold and sample of 
+ * a task, as primitive arrays. The row ids of a set are in the order of the 
+ * splits file. 
+ * 
+ * The training sets can also be left implicit, in which case the training 
+ * set of a fold consists of all rows that are not in its test set, in 
+ * ascending order. This is used for leave-one-out, where storing every 
+ * training set would take memory quadratic in the number of rows. 
+ */
+public class SplitIndex {
+	
+	private static final int[] EMPTY = new int[0];
+	
+	// [repeat][fold][sample][0 = train, 1 = test]
+	private final int[][][][][] rows;
+	private final int repeats;
+	private final int folds;
+	private final int samples;
+	// the number of rows of the dataset if the training sets are implicit, otherwise -1
+	private final int numRows;
+	
+	/**
+	 * @param rows - the row ids per repeat, fold, sample, and train (0) or 
+	 *               test (1) set
+	 */
+	public SplitIndex(int[][][][][] rows) {
+		this(rows, -1);
+	}
+	
+	/**
+	 * @param rows - the row ids per repeat, fold, sample, and train (0) or 
+	 *               test (1) set. The training sets are ignored if numRows
+	 *               is set. 
+	 * @param numRows - the number of rows of the dataset, to derive the 
+	 *                  training sets from the test sets, or -1 if the 
+	 *                  training sets are given
+	 */
+	public SplitIndex(int[][][][][] rows, int numRows) {
+		this.rows = rows;
+		this.numRows = numRows;
+		this.repeats = rows.length;
+		this.folds = repeats == 0 ? 0 : rows[0].length;
+		this.samples = folds == 0 ? 0 : rows[0][0].length;
+	}
+	
+	/**
+	 * @param datasplits - the splits file, parsed as Instances
+	 * @return the index of the splits
+	 */
+	public static SplitIndex fromInstances(Instances datasplits) {
+		return fromInstances(datasplits, false);
+	}
+	
+	/**
+	 * @param datasplits - the splits file, parsed as Instances
+	 * @param testOnly - whether the training sets are derived from the test
+	 *                   sets rather than stored
+	 * @return the index of the splits
+	 */
+	public static SplitIndex fromInstances(Instances datasplits, boolean testOnly) {
+		Attribute attRowid = datasplits.attribute("rowid");
+		Attribute attRepeat = datasplits.attribute("repeat");
+		Attribute attFold = datasplits.attribute("fold");
+		Attribute attSample = datasplits.attribute("sample");
+		Attribute attType = datasplits.attribute("type");
+		Builder builder = new Builder(testOnly);
+		for (int i = 0; i < datasplits.numInstances(); ++i) {
+			Instance instanceMeta = datasplits.get(i);
+			int rowid = (int) instanceMeta.value(attRowid);
+			int repeat = attRepeat == null ? 0 : (int) instanceMeta.value(attRepeat);
+			int fold = attFold == null ? 0 : (int) instanceMeta.value(attFold);
+			int sample = attSample == null ? 0 : (int) instanceMeta.value(attSample);
+			boolean train = attType.value((int) instanceMeta.value(attType)).equals("TRAIN");
+			builder.add(repeat, fold, sample, train, rowid);
+		}
+		return builder.build();
+	}
+	
+	/**
+	 * @return the number of repeats in the splits
+	 */
+	public int getRepeats() {
+		return repeats;
+	}
+	
+	/**
+	 * @return the number of folds in the splits
+	 */
+	public int getFolds() {
+		return folds;
+	}
+	
+	/**
+	 * @return the number of samples in the splits
+	 */
+	public int getSamples() {
+		return samples;
+	}
+	
+	/**
+	 * @param repeat - the repeat
+	 * @param fold - the fold
+	 * @param sample - the sample
+	 * @param train - whether to obtain the training set or the test set
+	 * @return the row ids of the set, empty when the splits do not contain it.
+	 *         The array is shared and should not be modified. 
+	 */
+	public int[] getRows(int repeat, int fold, int sample, boolean train) {
+		if (repeat >= repeats || fold >= folds || sample >= samples) {
+			return EMPTY;
+		}
+		if (train && numRows >= 0) {
+			return complement(rows[repeat][fold][sample][1]);
+		}
+		return rows[repeat][fold][sample][train ? 0 : 1];
+	}
+	
+	/**
+	 * @return all row ids that are not in the given set, in ascending order
+	 */
+	private int[] complement(int[] test) {
+		boolean[] excluded = new boolean[numRows];
+		int numExcluded = 0;
+		for (int row : test) {
+			if (row < numRows && !excluded[row]) {
+				excluded[row] = true;
+				++numExcluded;
+			}
+		}
+		int[] result = new int[numRows - numExcluded];
+		int i = 0;
+		for (int row = 0; row < numRows; ++row) {
+			if (!excluded[row]) {
+				result[i++] = row;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @return whether the training sets are derived from the test sets
+	 */
+	public boolean isTrainingImplicit() {
+		return numRows >= 0;
+	}
+	
+	/**
+	 * @return the number of rows of the dataset if the training sets are 
+	 *         implicit, otherwise -1
+	 */
+	public int getNumRows() {
+		return numRows;
+	}
+	
+	/**
+	 * @return the total number of stored row ids, i.e., the number of rows of
+	 *         the splits file, unless the training sets are implicit
+	 */
+	public long size() {
+		long size = 0;
+		for (int[][][][] repeat : rows) {
+			for (int[][][] fold : repeat) {
+				for (int[][] sample : fold) {
+					size += (sample[0] == null ? 0 : sample[0].length) + sample[1].length;
+				}
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * Collects row ids in the order of the splits file. Splits files are 
+	 * ordered by repeat and fold, so consecutive rows mostly belong to the 
+	 * same set.
+	 */
+	public static class Builder {
+		
+		private static final int MAX_FOLDS = 1 << 21;
+		private static final int MAX_SAMPLES = 1 << 20;
+		
+		private final Map<Long, Cell> cells = new HashMap<Long, Cell>();
+		private int repeats;
+		private int folds;
+		private int samples;
+		
+		private final boolean testOnly;
+		private int maxRow = -1;
+		
+		private long lastKey = -1;
+		private Cell lastCell;
+		
+		public Builder() {
+			this(false);
+		}
+		
+		/**
+		 * @param testOnly - whether only the test sets are collected, and the
+		 *                   training sets are derived from them
+		 */
+		public Builder(boolean testOnly) {
+			this.testOnly = testOnly;
+		}
+		
+		/**
+		 * @param repeat - the repeat of the row
+		 * @param fold - the fold of the row
+		 * @param sample - the sample of the row, 0 if the task has no samples
+		 * @param train - whether the row is in the training set
+		 * @param rowid - the row id
+		 */
+		public void add(int repeat, int fold, int sample, boolean train, int rowid) {
+			if (repeat < 0 || fold < 0 || sample < 0 || rowid < 0) {
+				throw new IllegalArgumentException("Negative value in splits: repeat " + repeat + ", fold " + fold + ", sample " + sample + ", rowid " + rowid);
+			}
+			if (fold >= MAX_FOLDS || sample >= MAX_SAMPLES) {
+				throw new IllegalArgumentException("Too many folds or samples in splits: fold " + fold + ", sample " + sample);
+			}
+			maxRow = Math.max(maxRow, rowid);
+			if (testOnly && train) {
+				return;
+			}
+			long key = ((((long) repeat << 21 | fold) << 20 | sample) << 1) | (train ? 0 : 1);
+			if (key != lastKey) {
+				lastCell = cells.get(key);
+				if (lastCell == null) {
+					lastCell = new Cell();
+					cells.put(key, lastCell);
+				}
+				lastKey = key;
+				repeats = Math.max(repeats, repeat + 1);
+				folds = Math.max(folds, fold + 1);
+				samples = Math.max(samples, sample + 1);
+			}
+			lastCell.add(rowid);
+		}
+		
+		/**
+		 * @return the index of all rows added so far
+		 */
+		public SplitIndex build() {
+			int[][][][][] rows = new int[repeats][folds][samples][2][];
+			for (int r = 0; r < repeats; ++r) {
+				for (int f = 0; f < folds; ++f) {
+					for (int s = 0; s < samples; ++s) {
+						for (int t = testOnly ? 1 : 0; t < 2; ++t) {
+							Cell cell = cells.get(((((long) r << 21 | f) << 20 | s) << 1) | t);
+							rows[r][f][s][t] = cell == null ? EMPTY : cell.toArray();
+						}
+					}
+				}
+			}
+			return new SplitIndex(rows, testOnly ? maxRow + 1 : -1);
+		}
+	}
+	
+	private static class Cell {
+		private int[] rows = new int[16];
+		private int size;
+		
+		private void add(int rowid) {
+			if (size == rows.length) {
+				int[] grown = new int[rows.length * 2];
+				System.arraycopy(rows, 0, grown, 0, size);
+				rows = grown;
+			}
+			rows[size++] = rowid;
+		}
+		
+		private int[] toArray() {
+			int[] result = new int[size];
+			System.arraycopy(rows, 0, result, 0, size);
+			return result;
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.algorithm;
+
+import weka.core.AbstractInstance;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Utils;
+
+/**
+ * Dense instance that reads its values from a row of a {@link ColumnStore}, 
+ * rather than from its own array. Copying such an instance (which Weka does
+ * whenever an instance is added to a dataset) is cheap, as only the reference 
+ * to the store is copied.
+ * 
+ * The store itself is never modified. On the first modification the values
+ * are copied into a private array, after which the instance behaves exactly 
+ * like a {@link DenseInstance}. When serialized, it is replaced by a 
+ * DenseInstance, so models that keep their training data stay portable.
+ */
+public class StoredInstance extends AbstractInstance {
+
+	private static final long serialVersionUID = -1417592417286453287L;
+
+	/** The store that holds the values, as long as m_AttValues is null */
+	protected final ColumnStore m_Store;
+	
+	/** The row of this instance in the store */
+	protected final int m_Row;
+	
+	/**
+	 * @param store - the store holding the values
+	 * @param row - the row of the instance in the store
+	 */
+	public StoredInstance(ColumnStore store, int row) {
+		m_Store = store;
+		m_Row = row;
+		m_Weight = store.weight(row);
+		m_AttValues = null;
+		m_Dataset = null;
+	}
+	
+	/**
+	 * @return the store this instance reads its values from
+	 */
+	public ColumnStore getStore() {
+		return m_Store;
+	}
+	
+	/**
+	 * @return the row of this instance in the store
+	 */
+	public int getRow() {
+		return m_Row;
+	}
+
+	@Override
+	public Object copy() {
+		StoredInstance result = new StoredInstance(m_Store, m_Row);
+		// shared until one of the two is modified, see freshAttributeVector()
+		result.m_AttValues = m_AttValues;
+		result.m_Weight = m_Weight;
+		result.m_Dataset = m_Dataset;
+		return result;
+	}
+
+	@Override
+	public Instance copy(double[] values) {
+		DenseInstance result = new DenseInstance(m_Weight, values);
+		result.setDataset(m_Dataset);
+		return result;
+	}
+
+	@Override
+	public int index(int position) {
+		return position;
+	}
+
+	@Override
+	public Instance mergeInstance(Instance inst) {
+		int m = 0;
+		double[] newVals = new double[numAttributes() + inst.numAttributes()];
+		for (int j = 0; j < numAttributes(); j++, m++) {
+			newVals[m] = value(j);
+		}
+		for (int j = 0; j < inst.numAttributes(); j++, m++) {
+			newVals[m] = inst.value(j);
+		}
+		return new DenseInstance(1.0, newVals);
+	}
+
+	@Override
+	public int numAttributes() {
+		return m_AttValues == null ? m_Store.numColumns() : m_AttValues.length;
+	}
+
+	@Override
+	public int numValues() {
+		return numAttributes();
+	}
+
+	@Override
+	public void replaceMissingValues(double[] array) {
+		if ((array == null) || (array.length != numAttributes())) {
+			throw new IllegalArgumentException("Unequal number of attributes!");
+		}
+		freshAttributeVector();
+		for (int i = 0; i < m_AttValues.length; i++) {
+			if (isMissing(i)) {
+				m_AttValues[i] = array[i];
+			}
+		}
+	}
+
+	@Override
+	public void setValue(int attIndex, double value) {
+		freshAttributeVector();
+		m_AttValues[attIndex] = value;
+	}
+
+	@Override
+	public void setValueSparse(int indexOfIndex, double value) {
+		setValue(indexOfIndex, value);
+	}
+
+	@Override
+	public double[] toDoubleArray() {
+		double[] newValues = new double[numAttributes()];
+		if (m_AttValues == null) {
+			for (int i = 0; i < newValues.length; i++) {
+				newValues[i] = m_Store.value(m_Row, i);
+			}
+		} else {
+			System.arraycopy(m_AttValues, 0, newValues, 0, m_AttValues.length);
+		}
+		return newValues;
+	}
+
+	@Override
+	public String toStringNoWeight() {
+		return toStringNoWeight(AbstractInstance.s_numericAfterDecimalPoint);
+	}
+
+	@Override
+	public String toStringNoWeight(int afterDecimalPoint) {
+		StringBuffer text = new StringBuffer();
+		for (int i = 0; i < numAttributes(); i++) {
+			if (i > 0) {
+				text.append(",");
+			}
+			text.append(toString(i, afterDecimalPoint));
+		}
+		return text.toString();
+	}
+
+	@Override
+	public double value(int attIndex) {
+		if (m_AttValues == null) {
+			return m_Store.value(m_Row, attIndex);
+		}
+		return m_AttValues[attIndex];
+	}
+	
+	@Override
+	public double valueSparse(int indexOfIndex) {
+		return value(indexOfIndex);
+	}
+
+	@Override
+	protected void forceDeleteAttributeAt(int position) {
+		double[] values = m_AttValues == null ? toDoubleArray() : m_AttValues;
+		double[] newValues = new double[values.length - 1];
+		System.arraycopy(values, 0, newValues, 0, position);
+		if (position < values.length - 1) {
+			System.arraycopy(values, position + 1, newValues, position, values.length - (position + 1));
+		}
+		m_AttValues = newValues;
+	}
+
+	@Override
+	protected void forceInsertAttributeAt(int position) {
+		double[] values = m_AttValues == null ? toDoubleArray() : m_AttValues;
+		double[] newValues = new double[values.length + 1];
+		System.arraycopy(values, 0, newValues, 0, position);
+		newValues[position] = Utils.missingValue();
+		System.arraycopy(values, position, newValues, position + 1, values.length - position);
+		m_AttValues = newValues;
+	}
+	
+	/**
+	 * Replaces this instance by a regular DenseInstance upon serialization, as 
+	 * stores are generally not serializable.
+	 * 
+	 * @return a dense copy of this instance
+	 */
+	protected Object writeReplace() {
+		DenseInstance result = new DenseInstance(m_Weight, toDoubleArray());
+		result.setDataset(m_Dataset);
+		return result;
+	}
+
+	private void freshAttributeVector() {
+		m_AttValues = toDoubleArray();
+	}
+}
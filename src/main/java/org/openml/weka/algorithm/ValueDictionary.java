@@ -0,0 +1,247 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.algorithm;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import weka.core.Attribute;
+import weka.core.Instances;
+
+/**
+ * Dictionary of string values and nominal labels that is shared by all 
+ * datasets that are loaded in the JVM. Weka stores nominal and string values
+ * as an index into the value list of the attribute; this dictionary makes 
+ * sure that equal values are represented by a single String object, and that
+ * nominal attributes with many labels share one value list and value map 
+ * with every earlier attribute that has the same labels, e.g., the same 
+ * dataset loaded for another task or target. 
+ * 
+ * Setting the minimum number of labels to 0 disables the dictionary. Values
+ * are held weakly, so they are released together with the last 
+ * dataset that uses them. 
+ */
+public class ValueDictionary {
+	
+	public static final int DEFAULT_MIN_NOMINAL_VALUES = 1000;
+	
+	private static final ValueDictionary shared = new ValueDictionary(DEFAULT_MIN_NOMINAL_VALUES);
+	
+	private volatile int minNominalValues;
+	
+	private final Map<String, WeakReference<String>> values = new WeakHashMap<String, WeakReference<String>>();
+	
+	/** Nominal attributes by the hash code of their labels **/
+	private final Map<Integer, WeakReference<Attribute>> nominals = new HashMap<Integer, WeakReference<Attribute>>();
+	
+	private long sharedAttributes = 0;
+	
+	/**
+	 * @param minNominalValues - nominal attributes with at least this number 
+	 *                           of labels share their value list, 0 to 
+	 *                           disable the dictionary
+	 */
+	public ValueDictionary(int minNominalValues) {
+		this.minNominalValues = minNominalValues;
+	}
+	
+	/**
+	 * @return the dictionary that is shared within the JVM
+	 */
+	public static ValueDictionary getShared() {
+		return shared;
+	}
+	
+	public synchronized int getMinNominalValues() {
+		return minNominalValues;
+	}
+	
+	public synchronized void setMinNominalValues(int minNominalValues) {
+		this.minNominalValues = minNominalValues;
+	}
+	
+	/**
+	 * @param value - a string value
+	 * @return the canonical object that is equal to the value
+	 */
+	public synchronized String intern(String value) {
+		if (minNominalValues <= 0) {
+			return value;
+		}
+		WeakReference<String> reference = values.get(value);
+		String canonical = reference == null ? null : reference.get();
+		if (canonical == null) {
+			values.put(value, new WeakReference<String>(value));
+			return value;
+		}
+		return canonical;
+	}
+	
+	/**
+	 * Obtains a nominal attribute. When an attribute with the same labels was
+	 * obtained before, the result shares its value list and value map, and the
+	 * map does not have to be built again. 
+	 * 
+	 * @param name - the name of the attribute
+	 * @param labels - the nominal labels, in order
+	 * @return the nominal attribute
+	 */
+	public Attribute nominal(String name, List<String> labels) {
+		if (minNominalValues <= 0 || labels.size() < minNominalValues) {
+			return new Attribute(name, labels);
+		}
+		int hash = labels.hashCode();
+		synchronized (this) {
+			Attribute earlier = getNominal(hash);
+			if (earlier != null && hasLabels(earlier, labels)) {
+				++sharedAttributes;
+				return earlier.copy(name);
+			}
+		}
+		Attribute attribute = new Attribute(name, labels);
+		synchronized (this) {
+			nominals.put(hash, new WeakReference<Attribute>(attribute));
+		}
+		return attribute;
+	}
+	
+	/**
+	 * Obtains an attribute that is equal to the given one. Nominal attributes
+	 * with many labels share their value list and value map with an earlier
+	 * attribute with the same labels, if any. All other attributes are 
+	 * returned as is. 
+	 * 
+	 * @param attribute - the attribute
+	 * @return an equal attribute, not part of any dataset yet if it is shared
+	 */
+	public Attribute share(Attribute attribute) {
+		if (!attribute.isNominal() || minNominalValues <= 0 || attribute.numValues() < minNominalValues) {
+			return attribute;
+		}
+		int hash = 1;
+		for (int i = 0; i < attribute.numValues(); ++i) {
+			// same as List.hashCode, so nominal() finds it as well
+			hash = 31 * hash + attribute.value(i).hashCode();
+		}
+		synchronized (this) {
+			Attribute earlier = getNominal(hash);
+			if (earlier != null && earlier != attribute && hasLabels(earlier, attribute)) {
+				++sharedAttributes;
+				return earlier.copy(attribute.name());
+			} else if (earlier == null) {
+				nominals.put(hash, new WeakReference<Attribute>(attribute));
+			}
+		}
+		return attribute;
+	}
+	
+	/**
+	 * @param header - a dataset
+	 * @return a dataset with the same attributes, of which the nominal ones
+	 *         with many labels are shared, or the dataset itself if none of
+	 *         them is shared
+	 */
+	public Instances share(Instances header) {
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>(header.numAttributes());
+		boolean changed = false;
+		for (int j = 0; j < header.numAttributes(); ++j) {
+			attributes.add(share(header.attribute(j)));
+			changed |= attributes.get(j) != header.attribute(j);
+		}
+		if (!changed) {
+			return header;
+		}
+		Instances result = new Instances(header.relationName(), attributes, header.numInstances());
+		result.addAll(header);
+		result.setClassIndex(header.classIndex());
+		return result;
+	}
+	
+	/**
+	 * @return the number of nominal attributes that were shared rather than 
+	 *         built
+	 */
+	public synchronized long getSharedAttributes() {
+		return sharedAttributes;
+	}
+	
+	/**
+	 * @return the number of distinct string values held
+	 */
+	public synchronized int size() {
+		return values.size();
+	}
+	
+	private Attribute getNominal(int hash) {
+		WeakReference<Attribute> reference = nominals.get(hash);
+		Attribute attribute = reference == null ? null : reference.get();
+		if (reference != null && attribute == null) {
+			// drop all collected attributes, instead of just this one
+			Iterator<WeakReference<Attribute>> iterator = nominals.values().iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next().get() == null) {
+					iterator.remove();
+				}
+			}
+		}
+		return attribute;
+	}
+	
+	private static boolean hasLabels(Attribute attribute, List<String> labels) {
+		if (attribute.numValues() != labels.size()) {
+			return false;
+		}
+		for (int i = 0; i < labels.size(); ++i) {
+			if (!attribute.value(i).equals(labels.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean hasLabels(Attribute attribute, Attribute other) {
+		if (attribute.numValues() != other.numValues()) {
+			return false;
+		}
+		for (int i = 0; i < other.numValues(); ++i) {
+			if (!attribute.value(i).equals(other.value(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -31,7 +31,11 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
 
 package org.openml.weka.algorithm;
 
+import java.io.File;
+
 import org.openml.apiconnector.settings.Config;
+import org.openml.apiconnector.settings.Settings;
+import org.openml.weka.io.DownloadClient;
 
 public class WekaConfig extends Config {
 	
@@ -99,4 +103,306 @@ public class WekaConfig extends Config {
 		}
 		return null;
 	}
+
+	/**
+	 * @return Whether to store parsed datasets in the local binary dataset cache
+	 */
+	public boolean getDatasetCache() {
+		if (get("dataset_cache") == null) {
+			return false; // default value
+		}
+		if (get("dataset_cache").equals("true")) {
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return The directory of the local binary dataset cache
+	 */
+	public String getDatasetCacheDirectory() {
+		if (get("dataset_cache_directory") == null) {
+			return new File(Settings.CACHE_DIRECTORY, "weka_datasets").getAbsolutePath(); // default value
+		}
+		return get("dataset_cache_directory");
+	}
+	
+	/**
+	 * @return The maximum size of the local binary dataset cache, in megabytes
+	 */
+	public long getDatasetCacheSize() {
+		if (get("dataset_cache_size") == null) {
+			return 4096; // default value
+		}
+		return Long.parseLong(get("dataset_cache_size"));
+	}
+	
+	/**
+	 * @return How datasets are represented in memory
+	 */
+	public DatasetStorage getDatasetStorage() {
+		if (get("dataset_storage") == null) {
+			return DatasetStorage.HEAP; // default value
+		}
+		DatasetStorage storage = DatasetStorage.fromString(get("dataset_storage"));
+		if (storage == null) {
+			throw new IllegalArgumentException("Unknown dataset_storage: " + get("dataset_storage"));
+		}
+		return storage;
+	}
+	
+	/**
+	 * @return The number of upcoming tasks that are loaded in the background, 
+	 *         0 (default) to disable prefetching
+	 */
+	public int getPrefetchTasks() {
+		if (get("prefetch_tasks") == null) {
+			return 0; // default value
+		}
+		return Integer.parseInt(get("prefetch_tasks"));
+	}
+	
+	/**
+	 * @return The maximum memory held by tasks that are loaded in the 
+	 *         background, in megabytes
+	 */
+	public long getPrefetchMemory() {
+		if (get("prefetch_memory") == null) {
+			return 1024; // default value
+		}
+		return Long.parseLong(get("prefetch_memory"));
+	}
+	
+	/**
+	 * Datasets in the pool are kept after their task, to be reused by 
+	 * subsequent tasks on the same dataset, until the pool exceeds this size. 
+	 * 
+	 * @return The maximum memory held by the shared dataset pool, in 
+	 *         megabytes, 0 (default) to disable sharing datasets between tasks
+	 */
+	public long getDatasetPoolSize() {
+		if (get("dataset_pool_size") == null) {
+			return 0; // default value
+		}
+		return Long.parseLong(get("dataset_pool_size"));
+	}
+	
+	/**
+	 * @return Nominal attributes with at least this number of values share 
+	 *         their values with equal attributes of other datasets, and string
+	 *         values are interned, 0 to disable the dictionary
+	 */
+	public int getDictionaryMinValues() {
+		if (get("dictionary_min_values") == null) {
+			return ValueDictionary.DEFAULT_MIN_NOMINAL_VALUES; // default value
+		}
+		return Integer.parseInt(get("dictionary_min_values"));
+	}
+	
+	/**
+	 * @return The connect timeout of downloads, in milliseconds
+	 */
+	public int getHttpConnectTimeout() {
+		if (get("http_connect_timeout") == null) {
+			return 1000; // default value
+		}
+		return Integer.parseInt(get("http_connect_timeout"));
+	}
+	
+	/**
+	 * @return The read timeout of downloads, in milliseconds
+	 */
+	public int getHttpReadTimeout() {
+		if (get("http_read_timeout") == null) {
+			return 30000; // default value
+		}
+		return Integer.parseInt(get("http_read_timeout"));
+	}
+	
+	/**
+	 * @return How long a download waits for a pooled connection when all 
+	 *         connections are in use, in milliseconds
+	 */
+	public int getHttpLeaseTimeout() {
+		if (get("http_lease_timeout") == null) {
+			return DownloadClient.DEFAULT_LEASE_TIMEOUT; // default value
+		}
+		return Integer.parseInt(get("http_lease_timeout"));
+	}
+	
+	/**
+	 * @return The maximum number of pooled download connections
+	 */
+	public int getHttpMaxConnections() {
+		if (get("http_max_connections") == null) {
+			return 20; // default value
+		}
+		return Integer.parseInt(get("http_max_connections"));
+	}
+	
+	/**
+	 * @return The maximum number of pooled download connections to a single host
+	 */
+	public int getHttpMaxConnectionsPerHost() {
+		if (get("http_max_connections_per_host") == null) {
+			return 4; // default value
+		}
+		return Integer.parseInt(get("http_max_connections_per_host"));
+	}
+	
+	/**
+	 * @return The number of times an interrupted dataset download is resumed
+	 */
+	public int getHttpDownloadRetries() {
+		if (get("http_download_retries") == null) {
+			return 3; // default value
+		}
+		return Integer.parseInt(get("http_download_retries"));
+	}
+	
+	/**
+	 * @return The maximum fraction of non-zero values for which dense datasets
+	 *         are converted to sparse instances, 0 (default) to only keep 
+	 *         sparse ARFF sparse
+	 */
+	public double getSparseDensity() {
+		if (get("sparse_density") == null) {
+			return InstancesHelper.DEFAULT_SPARSE_DENSITY; // default value
+		}
+		return Double.parseDouble(get("sparse_density"));
+	}
+	
+	/**
+	 * Experimental: the Parquet reader is only tested against files of its 
+	 * own fixture generator, not against files written by pyarrow or 
+	 * parquet-mr, and is therefore left disabled by default. Files it can 
+	 * not read fall back to ARFF. 
+	 * 
+	 * @return The url of Parquet versions of datasets, with {id} as 
+	 *         placeholder for the dataset id, null (default) when Parquet 
+	 *         files are only taken from the cache
+	 */
+	public String getParquetUrl() {
+		return get("parquet_url");
+	}
+	
+	/**
+	 * The metadata cache is enabled by default, with a time to live of an 
+	 * hour. A task, dataset or flow that is edited on the server is therefore
+	 * only seen up to an hour later, also by subsequent runs when the cache 
+	 * is persistent; set this to 0 to always obtain the current version. 
+	 * 
+	 * @return How long tasks, data set descriptions, data features, 
+	 *         estimation procedures and flows are cached, in seconds, 0 to disable the metadata cache
+	 */
+	public long getMetadataCacheTtl() {
+		if (get("metadata_cache_ttl") == null) {
+			return 3600; // default value
+		}
+		return Long.parseLong(get("metadata_cache_ttl"));
+	}
+	
+	/**
+	 * @return The maximum number of metadata objects that are held in memory
+	 */
+	public int getMetadataCacheSize() {
+		if (get("metadata_cache_size") == null) {
+			return 10000; // default value
+		}
+		return Integer.parseInt(get("metadata_cache_size"));
+	}
+	
+	/**
+	 * @return Whether cached metadata is also stored on disk, for subsequent runs
+	 */
+	public boolean getMetadataCachePersistent() {
+		if (get("metadata_cache_persistent") == null) {
+			return false; // default value
+		}
+		if (get("metadata_cache_persistent").equals("true")) {
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return The directory of the persistent metadata cache
+	 */
+	public String getMetadataCacheDirectory() {
+		if (get("metadata_cache_directory") == null) {
+			return new File(Settings.CACHE_DIRECTORY, "weka_metadata").getAbsolutePath(); // default value
+		}
+		return get("metadata_cache_directory");
+	}
+	
+	/**
+	 * @return Directory with task bundles to run tasks from, without 
+	 *         downloading anything, null to use the server
+	 */
+	public String getTaskBundleDirectory() {
+		return get("task_bundle_directory");
+	}
+	
+	/**
+	 * @return The number of threads that parse a cached ARFF file, 1 to 
+	 *         parse sequentially, at most 4 by default, as other experiments
+	 *         may share the machine
+	 */
+	public int getArffParseThreads() {
+		if (get("arff_parse_threads") == null) {
+			return Math.min(4, Runtime.getRuntime().availableProcessors()); // default value
+		}
+		return Integer.parseInt(get("arff_parse_threads"));
+	}
+	
+	/**
+	 * @return Whether datasets that are not cached are first downloaded to a 
+	 *         temporary file and parsed from there, instead of being parsed 
+	 *         from the http connection
+	 */
+	public boolean getSpoolDownloads() {
+		if (get("spool_downloads") == null) {
+			return false; // default value
+		}
+		if (get("spool_downloads").equals("true")) {
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return The directory for temporary dataset downloads
+	 */
+	public String getSpoolDirectory() {
+		if (get("spool_directory") == null) {
+			return System.getProperty("java.io.tmpdir"); // default value
+		}
+		return get("spool_directory");
+	}
+	
+	/**
+	 * @return Whether the splits of supported estimation procedures are 
+	 *         generated locally instead of downloaded. Generated splits are 
+	 *         not the splits of the task on OpenML, so runs are only stored 
+	 *         on task bundles, and never uploaded. 
+	 */
+	public boolean getGenerateSplits() {
+		if (get("generate_splits") == null) {
+			return false; // default value
+		}
+		if (get("generate_splits").equals("true")) {
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return The seed of the first repeat of generated splits
+	 */
+	public long getSplitSeed() {
+		if (get("split_seed") == null) {
+			return 1; // default value
+		}
+		return Long.parseLong(get("split_seed"));
+	}
 }
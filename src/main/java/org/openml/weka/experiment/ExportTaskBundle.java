@@ -0,0 +1,105 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.experiment;
+
+import java.io.File;
+
+import org.openml.apiconnector.algorithms.Conversion;
+import org.openml.apiconnector.io.OpenmlConnector;
+import org.openml.apiconnector.xml.Task;
+import org.openml.weka.algorithm.WekaConfig;
+import org.openml.weka.io.OpenmlWekaConnector;
+import org.openml.weka.io.TaskBundle;
+
+import weka.core.CommandlineRunnable;
+import weka.core.Utils;
+
+/**
+ * Writes task bundles for a list of tasks, so they can be run on machines 
+ * without network access. Usage: 
+ * <pre>
+ * -task_id &lt;id&gt;[,&lt;id&gt;...] -directory &lt;dir&gt; [-config &lt;config&gt;]
+ * </pre>
+ * The bundles can be run by setting task_bundle_directory in the config of
+ * RunOpenmlJob. 
+ */
+public class ExportTaskBundle implements CommandlineRunnable {
+
+	public static void main(String[] args) throws Exception {
+		ExportTaskBundle etb = new ExportTaskBundle();
+		etb.run(etb, args);
+	}
+	
+	@Override
+	public void run(Object arg0, String[] args) throws Exception {
+		String strConfig;
+		WekaConfig config;
+		
+		try { strConfig = Utils.getOption("config", args); } catch (Exception e) { strConfig = null; }
+		if (strConfig != null && strConfig.equals("") == false) {
+			config = new WekaConfig(strConfig);
+		} else {
+			config = new WekaConfig();
+		}
+		
+		OpenmlConnector apiconnector;
+		if (config.getServer() != null) {
+			apiconnector = new OpenmlWekaConnector(config.getServer(), config.getApiKey(), config);
+		} else {
+			apiconnector = new OpenmlWekaConnector(config.getApiKey(), config);
+		}
+		
+		String strTaskIds = Utils.getOption("task_id", args);
+		if (strTaskIds.length() == 0) {
+			throw new Exception("One or more task ids must be specified with the -task_id option.");
+		}
+		String strDirectory = Utils.getOption("directory", args);
+		if (strDirectory.length() == 0) {
+			throw new Exception("An output directory must be specified with the -directory option.");
+		}
+		File directory = new File(strDirectory);
+		
+		for (String strTaskId : strTaskIds.split(",")) {
+			Task task = apiconnector.taskGet(Integer.parseInt(strTaskId.trim()));
+			TaskBundle bundle = TaskBundle.export(apiconnector, task, directory);
+			Conversion.log("OK", "Task Bundle", "Exported task " + task.getTask_id() + " to " + bundle.getDirectory().getAbsolutePath());
+		}
+	}
+
+	@Override
+	public void postExecution() throws Exception {
+	}
+
+	@Override
+	public void preExecution() throws Exception {
+	}
+}
@@ -33,6 +33,7 @@ package org.openml.weka.experiment;
 
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
+import java.io.File;
 
 import javax.swing.DefaultListModel;
 
@@ -43,6 +44,8 @@ import org.openml.apiconnector.io.OpenmlConnector;
 import org.openml.apiconnector.xml.Run;
 import org.openml.apiconnector.xml.Task;
 import org.openml.weka.algorithm.WekaConfig;
+import org.openml.weka.io.OpenmlWekaConnector;
+import org.openml.weka.io.TaskBundleConnector;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
@@ -109,7 +112,11 @@ public class RunOpenmlJob implements CommandlineRunnable {
 			throw new RuntimeException("This function is expected to upload exactly one run. Got: " + trl.getRunIds());
 		}
 		int runId = trl.getRunIds().iterator().next();
-		System.err.println("Uploaded with run id: " + runId);
+		if (runId < 0) {
+			System.err.println("Stored for a later upload with UploadStoredRuns");
+		} else {
+			System.err.println("Uploaded with run id: " + runId);
+		}
 		return new ImmutablePair<Integer, Run>(runId, trl.getRun(runId));
 	}
 	
@@ -132,10 +139,13 @@ public class RunOpenmlJob implements CommandlineRunnable {
 		String username = config.getApiKey();
 		String server = config.getServer();
 
-		if (server != null) {
-			apiconnector = new OpenmlConnector(server, username);
+		if (config.getTaskBundleDirectory() != null) {
+			// reads tasks and datasets from local files only
+			apiconnector = new TaskBundleConnector(new File(config.getTaskBundleDirectory()), config);
+		} else if (server != null) {
+			apiconnector = new OpenmlWekaConnector(server, username, config);
 		} else {
-			apiconnector = new OpenmlConnector(username);
+			apiconnector = new OpenmlWekaConnector(username, config);
 		}
 
 		try {
@@ -41,7 +41,6 @@ import java.util.Map;
 import javax.swing.DefaultListModel;
 
 import org.openml.apiconnector.algorithms.Conversion;
-import org.openml.apiconnector.algorithms.TaskInformation;
 import org.openml.apiconnector.io.OpenmlConnector;
 import org.openml.apiconnector.xml.EstimationProcedure;
 import org.openml.apiconnector.xml.Run;
@@ -49,6 +48,10 @@ import org.openml.apiconnector.xml.RunList;
 import org.openml.apiconnector.xml.Task;
 import org.openml.weka.algorithm.WekaAlgorithm;
 import org.openml.weka.algorithm.WekaConfig;
+import org.openml.weka.experiment.TaskResultProducer.TaskData;
+import org.openml.weka.io.MetadataCache;
+import org.openml.weka.io.OpenmlWekaConnector;
+import org.openml.weka.io.TaskBundleConnector;
 
 import weka.experiment.Experiment;
 
@@ -65,6 +68,9 @@ public class TaskBasedExperiment extends Experiment {
 	protected final OpenmlConnector apiconnector;
 	
 	protected final WekaConfig openmlconfig;
+	
+	/** Loads upcoming tasks in the background, null if disabled **/
+	protected transient TaskPrefetcher prefetcher;
 
 	public TaskBasedExperiment(Experiment exp, OpenmlConnector apiconnector, WekaConfig config) {
 		this.m_ResultListener = exp.getResultListener();
@@ -142,6 +148,46 @@ public class TaskBasedExperiment extends Experiment {
 		if (columnConstraints != null) {
 			m_ResultProducer.setAdditionalMeasures(columnConstraints);
 		}
+		
+		if (prefetcher != null) {
+			prefetcher.shutdown();
+			prefetcher = null;
+		}
+		if (openmlconfig.getPrefetchTasks() > 0 && m_ResultProducer instanceof TaskResultProducer) {
+			prefetcher = new TaskPrefetcher((TaskResultProducer) m_ResultProducer, openmlconfig.getPrefetchTasks(), openmlconfig.getPrefetchMemory() * 1024 * 1024);
+			prefetcher.prefetch(getUpcomingTasks(0));
+		}
+	}
+	
+	@Override
+	public void postProcess() throws Exception {
+		if (prefetcher != null) {
+			prefetcher.shutdown();
+			prefetcher = null;
+		}
+		if (apiconnector instanceof OpenmlWekaConnector && ((OpenmlWekaConnector) apiconnector).getMetadataCache() != null) {
+			MetadataCache metadataCache = ((OpenmlWekaConnector) apiconnector).getMetadataCache();
+			Conversion.log("INFO", "Metadata Cache", "Hits: " + metadataCache.getHits() + ", misses: " + metadataCache.getMisses());
+		}
+		super.postProcess();
+	}
+	
+	/**
+	 * @param from - index of the first task
+	 * @return The tasks that will be run, in order, starting from the given
+	 *         index. Includes the next pass over the tasks, if any. 
+	 */
+	protected List<Task> getUpcomingTasks(int from) {
+		List<Task> upcoming = new ArrayList<Task>();
+		for (int i = from; i < getTasks().size(); ++i) {
+			upcoming.add(getTasks().elementAt(i));
+		}
+		if (m_UsePropertyIterator && m_PropertyNumber + 1 < Array.getLength(m_PropertyArray)) {
+			for (int i = 0; i < from && i < getTasks().size(); ++i) {
+				upcoming.add(getTasks().elementAt(i));
+			}
+		}
+		return upcoming;
 	}
 
 	@Override
@@ -149,10 +195,16 @@ public class TaskBasedExperiment extends Experiment {
 
 		if (m_CurrentTask == null) {
 			m_CurrentTask = (Task) getTasks().elementAt(m_DatasetNumber);
-			int epId = TaskInformation.getEstimationProcedure(m_CurrentTask).getId();
-			EstimationProcedure ep = apiconnector.estimationProcedureGet(epId);
+			TaskData data;
+			if (prefetcher != null) {
+				data = prefetcher.get(m_CurrentTask);
+				prefetcher.prefetch(getUpcomingTasks(m_DatasetNumber + 1));
+			} else {
+				data = ((TaskResultProducer) m_ResultProducer).loadTask(m_CurrentTask);
+			}
+			EstimationProcedure ep = data.getDataSplits().getEstimationProcedure();
 			
-			((TaskResultProducer) m_ResultProducer).setTask(m_CurrentTask);
+			((TaskResultProducer) m_ResultProducer).setTask(data);
 			int numRuns;
 			try {
 				numRuns = ep.getRepeats();
@@ -175,7 +227,8 @@ public class TaskBasedExperiment extends Experiment {
 
 		}
 		
-		if (openmlconfig.getAvoidDuplicateRuns()) {
+		// task bundles are run without access to the server
+		if (openmlconfig.getAvoidDuplicateRuns() && !(apiconnector instanceof TaskBundleConnector)) {
 			String classifierName = (String) ((TaskResultProducer) m_ResultProducer).getSplitEvaluatorKey(0);
 			String classifierOptions = (String) ((TaskResultProducer) m_ResultProducer).getSplitEvaluatorKey(1);
 			
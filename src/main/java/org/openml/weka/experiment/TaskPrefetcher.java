@@ -0,0 +1,248 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.experiment;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.openml.apiconnector.algorithms.Conversion;
+import org.openml.apiconnector.xml.Task;
+import org.openml.weka.experiment.TaskResultProducer.TaskData;
+
+/**
+ * Loads the data of upcoming tasks on a background thread, while the current
+ * task is being trained. Tasks are loaded one at a time, in the order in 
+ * which they are requested. At most a given number of tasks are held in 
+ * advance, within a memory budget. A task whose estimated size does not fit
+ * in the budget next to the tasks that are held already is released after
+ * loading, and not prefetched again, but loaded when it is needed. 
+ */
+public class TaskPrefetcher {
+	
+	private final TaskResultProducer resultProducer;
+	private final int maxTasks;
+	private final long maxBytes;
+	private final ExecutorService executor;
+	
+	/** Tasks that are loaded or being loaded, by task id **/
+	private final Map<Integer, Future<TaskData>> loaded = new LinkedHashMap<Integer, Future<TaskData>>();
+	
+	/** Tasks that still need to be loaded, in order **/
+	private final List<Task> upcoming = new ArrayList<Task>();
+	
+	/** Tasks that completed loading, by task id **/
+	private final Map<Integer, TaskData> ready = new LinkedHashMap<Integer, TaskData>();
+	
+	/** Estimated memory held by each of the loaded tasks **/
+	private final Map<Integer, Long> sizes = new LinkedHashMap<Integer, Long>();
+	
+	/** Tasks that are being loaded, and already requested with get **/
+	private final Set<Integer> claimed = new HashSet<Integer>();
+	
+	/** Tasks that were discarded after loading, as they exceed the budget **/
+	private final Set<Integer> tooLarge = new HashSet<Integer>();
+	
+	private boolean busy = false;
+	
+	/**
+	 * @param resultProducer - the result producer that loads the tasks
+	 * @param maxTasks - maximum number of tasks that is loaded in advance
+	 * @param maxBytes - memory budget for the tasks that are loaded in advance
+	 */
+	public TaskPrefetcher(TaskResultProducer resultProducer, int maxTasks, long maxBytes) {
+		this.resultProducer = resultProducer;
+		this.maxTasks = maxTasks;
+		this.maxBytes = maxBytes;
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "OpenML Task Prefetcher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Sets the tasks that will be needed next, in order. Replaces the tasks 
+	 * that were previously requested, but not yet loaded. 
+	 * 
+	 * @param tasks - the upcoming tasks
+	 */
+	public synchronized void prefetch(List<Task> tasks) {
+		upcoming.clear();
+		for (Task task : tasks) {
+			if (upcoming.size() >= maxTasks) {
+				break;
+			}
+			if (!loaded.containsKey(task.getTask_id()) && !tooLarge.contains(task.getTask_id())) {
+				upcoming.add(task);
+			}
+		}
+		schedule();
+	}
+	
+	/**
+	 * Obtains the data of a task. Waits for the task if it is currently being 
+	 * loaded, and loads it on the calling thread if it was not requested.
+	 * 
+	 * @param task - the task to obtain
+	 * @return the task data
+	 * @throws Exception - when the task could not be loaded
+	 */
+	public TaskData get(Task task) throws Exception {
+		Future<TaskData> future;
+		synchronized (this) {
+			future = loaded.remove(task.getTask_id());
+			if (future != null && !ready.containsKey(task.getTask_id())) {
+				// the loader hands the data over, instead of holding it
+				claimed.add(task.getTask_id());
+			}
+			ready.remove(task.getTask_id());
+			sizes.remove(task.getTask_id());
+			tooLarge.remove(task.getTask_id());
+			for (int i = 0; i < upcoming.size(); ++i) {
+				if (upcoming.get(i).getTask_id().equals(task.getTask_id())) {
+					upcoming.remove(i);
+					break;
+				}
+			}
+		}
+		
+		if (future == null) {
+			return resultProducer.loadTask(task);
+		}
+		
+		try {
+			TaskData data = future.get();
+			Conversion.log("OK", "Prefetch", "Using prefetched data of task " + task.getTask_id());
+			return data;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		} finally {
+			synchronized (this) {
+				schedule();
+			}
+		}
+	}
+	
+	/**
+	 * Stops loading tasks, and discards the ones that were loaded in advance.
+	 * A task that is still being loaded is cancelled, or released when it
+	 * completes, unless it is awaited by get. 
+	 */
+	public void shutdown() {
+		List<TaskData> discarded;
+		synchronized (this) {
+			upcoming.clear();
+			discarded = new ArrayList<TaskData>(ready.values());
+			// not interrupted, as that would close file channels of pooled datasets
+			for (Future<TaskData> future : loaded.values()) {
+				future.cancel(false);
+			}
+			loaded.clear();
+			ready.clear();
+			sizes.clear();
+			tooLarge.clear();
+			executor.shutdown();
+		}
+		for (TaskData data : discarded) {
+			resultProducer.release(data);
+		}
+	}
+	
+	private long heldBytes() {
+		long bytes = 0;
+		for (Long size : sizes.values()) {
+			bytes += size;
+		}
+		return bytes;
+	}
+	
+	private void schedule() {
+		if (busy || executor.isShutdown() || upcoming.isEmpty()) {
+			return;
+		}
+		if (loaded.size() >= maxTasks || heldBytes() >= maxBytes) {
+			return;
+		}
+		
+		final Task task = upcoming.remove(0);
+		busy = true;
+		loaded.put(task.getTask_id(), executor.submit(new Callable<TaskData>() {
+			@Override
+			public TaskData call() throws Exception {
+				TaskData data = null;
+				try {
+					Conversion.log("INFO", "Prefetch", "Prefetching task " + task.getTask_id());
+					data = resultProducer.loadTask(task);
+					return data;
+				} finally {
+					synchronized (TaskPrefetcher.this) {
+						busy = false;
+						if (claimed.remove(task.getTask_id())) {
+							// returned by get, which owns the data now
+						} else if (data != null && loaded.containsKey(task.getTask_id())) {
+							long size = data.estimateSize();
+							if (heldBytes() + size > maxBytes) {
+								Conversion.log("INFO", "Prefetch", "Task " + task.getTask_id() + " (" + (size / 1024 / 1024) + " MB) exceeds the prefetch memory, discarding it");
+								loaded.remove(task.getTask_id());
+								tooLarge.add(task.getTask_id());
+								resultProducer.release(data);
+							} else {
+								ready.put(task.getTask_id(), data);
+								sizes.put(task.getTask_id(), size);
+							}
+						} else if (data != null) {
+							// cancelled by shutdown
+							resultProducer.release(data);
+						}
+						schedule();
+					}
+				}
+			}
+		}));
+	}
+}
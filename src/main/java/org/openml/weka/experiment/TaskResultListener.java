@@ -58,6 +58,8 @@ import org.openml.weka.algorithm.OptimizationTrace;
 import org.openml.weka.algorithm.WekaAlgorithm;
 import org.openml.weka.algorithm.OptimizationTrace.Quadlet;
 import org.openml.weka.algorithm.WekaConfig;
+import org.openml.weka.io.StoredRun;
+import org.openml.weka.io.TaskBundleConnector;
 
 import weka.classifiers.Classifier;
 import weka.classifiers.evaluation.NominalPrediction;
@@ -94,6 +96,12 @@ public class TaskResultListener extends InstancesResultListener {
 
 	boolean skipJvmBenchmark = false;
 	
+	/** Runs on task bundles are stored for a later upload, and get negative ids **/
+	private int storedRuns = 0;
+	
+	/** Runs on locally generated splits are never uploaded **/
+	private final boolean generatedSplits;
+	
 	public TaskResultListener(OpenmlConnector apiconnector, WekaConfig config) {
 		super();
 
@@ -102,11 +110,12 @@ public class TaskResultListener extends InstancesResultListener {
 		tasksWithErrors = new ArrayList<String>();
 		all_tags = ArrayUtils.addAll(DEFAULT_TAGS, config.getTags());
 		skipJvmBenchmark = config.getSkipJvmBenchmark();
+		generatedSplits = config.getGenerateSplits();
 		runs = new TreeMap<Integer, Run>();
 	}
 
 	public void acceptResultsForSending(Task t, Instances sourceData, int nrOfExpectedBatches, Integer repeat, Integer fold, Integer sample, Classifier classifier, String options,
-			List<Integer> rowids, ArrayList<Prediction> predictions, Map<String, MetricScore> userMeasures,
+			int[] rowids, ArrayList<Prediction> predictions, Map<String, MetricScore> userMeasures,
 			List<Quadlet<String, Double, List<Entry<String, Object>>, Boolean>> optimizationTrace) throws Exception {
 		// TODO: do something better than undefined
 		String revision = (classifier instanceof RevisionHandler) ? ((RevisionHandler) classifier).getRevision() : "undefined";
@@ -140,7 +149,6 @@ public class TaskResultListener extends InstancesResultListener {
 	}
 
 	private int sendTask(OpenmlExecutedTask oet) throws Exception {
-		Conversion.log("INFO", "Upload Run", "Task complete, start uploading... ");
 		File tmpPredictionsFile;
 
 		// also add information about CPU performance and OS to run:
@@ -149,6 +157,11 @@ public class TaskResultListener extends InstancesResultListener {
 		if (skipJvmBenchmark == false) {
 			oet.getRun().addOutputEvaluation(new EvaluationScore("scimark_benchmark", benchmarker.getResult(), null, "[" + StringUtils.join(benchmarker.getStringArray(), ", ") + "]"));
 		}
+		if (apiconnector instanceof TaskBundleConnector) {
+			return storeTask(oet);
+		}
+		refuseGeneratedSplits();
+		Conversion.log("INFO", "Upload Run", "Task complete, start uploading... ");
 		tmpPredictionsFile = Conversion.stringToTempFile(oet.getPredictions().toString(), "weka_generated_predictions", Constants.DATASET_FORMAT);
 		Map<String, File> output_files = new HashMap<String, File>();
 
@@ -162,8 +175,34 @@ public class TaskResultListener extends InstancesResultListener {
 		Conversion.log("INFO", "Upload Run", "Uploaded with run id = " + runId + ", see " + retrieveUrl);
 		return runId;
 	}
+	
+	/**
+	 * Stores a run on a task bundle next to the bundle, as the server can 
+	 * not be reached. 
+	 */
+	private int storeTask(OpenmlExecutedTask oet) throws Exception {
+		Map<String, Instances> output_files = new HashMap<String, Instances>();
+		if (oet.getRun().getError_message() == null) {
+			output_files.put("predictions", oet.getPredictions());
+			if (oet.optimizationTrace != null) {
+				output_files.put("trace", oet.optimizationTrace);
+			}
+		}
+		File directory = ((TaskBundleConnector) apiconnector).getRunDirectory(oet.task_id);
+		StoredRun stored = StoredRun.write(directory, oet.getRun(), oet.flow, output_files, generatedSplits);
+		if (generatedSplits) {
+			Conversion.log("INFO", "Store Run", "Stored run in " + stored.getDirectory().getAbsolutePath() + ", on locally generated splits");
+		} else {
+			Conversion.log("INFO", "Store Run", "Stored run in " + stored.getDirectory().getAbsolutePath() + ", upload it with UploadStoredRuns");
+		}
+		return -(++storedRuns);
+	}
 
 	private int sendTaskWithError(OpenmlExecutedTask oet) throws Exception {
+		if (apiconnector instanceof TaskBundleConnector) {
+			return storeTask(oet);
+		}
+		refuseGeneratedSplits();
 		Conversion.log("WARNING", "Upload Run", "Starting to upload run... (including error results) ");
 		int runId = apiconnector.runUpload(oet.getRun(), new HashMap<String, File>());
 		String retrieveUrl = apiconnector.getApiUrl() + "run/" + runId;
@@ -171,6 +210,12 @@ public class TaskResultListener extends InstancesResultListener {
 		return runId;
 	}
 	
+	private void refuseGeneratedSplits() throws Exception {
+		if (generatedSplits) {
+			throw new Exception("Runs on locally generated splits differ from the splits of the task on OpenML, and can not be uploaded. Run the tasks from task bundles to store them locally, or disable generate_splits.");
+		}
+	}
+	
 	public Set<Integer> getRunIds() {
 		return runs.keySet();
 	}
@@ -190,7 +235,7 @@ public class TaskResultListener extends InstancesResultListener {
 		private final int nrOfExpectedResultBatches;
 		private List<String> classnames;
 		private Run run;
-		private int implementation_id;
+		private Flow flow;
 
 		public OpenmlExecutedTask(Task t, Classifier classifier, Instances sourceData, int nrOfExpectedResultBatches, String error_message, String options, String[] tags) throws Exception {
 			this.task = t;
@@ -232,38 +277,55 @@ public class TaskResultListener extends InstancesResultListener {
 
 			predictions = new Instances("openml_task_" + t.getTask_id() + "_predictions", attInfo, 0);
 
-			Flow find = WekaAlgorithm.serializeClassifier((OptionHandler) classifier, tags);
-
-			implementation_id = WekaAlgorithm.getImplementationId(find, classifier, apiconnector);
-			Flow implementation = apiconnector.flowGet(implementation_id);
-			
-			String[] params = Utils.splitOptions(options);
-			List<Parameter_setting> list = WekaAlgorithm.getParameterSetting(params, implementation);
+			flow = WekaAlgorithm.serializeClassifier((OptionHandler) classifier, tags);
 			
 			String setup_string = classifier.getClass().getName() + " " + options;
 			
-			run = new Run(t.getTask_id(), error_message, implementation.getId(), setup_string, list.toArray(new Parameter_setting[list.size()]), tags);
+			if (apiconnector instanceof TaskBundleConnector) {
+				// without the server there is no flow id, StoredRun resolves it on upload
+				run = new Run(t.getTask_id(), error_message, 0, setup_string, new Parameter_setting[0], tags);
+			} else {
+				int implementation_id = WekaAlgorithm.getImplementationId(flow, classifier, apiconnector);
+				Flow implementation = apiconnector.flowGet(implementation_id);
+				
+				String[] params = Utils.splitOptions(options);
+				List<Parameter_setting> list = WekaAlgorithm.getParameterSetting(params, implementation);
+				
+				run = new Run(t.getTask_id(), error_message, implementation.getId(), setup_string, list.toArray(new Parameter_setting[list.size()]), tags);
+			}
 		}
 
-		public void addBatchOfPredictions(Integer fold, Integer repeat, Integer sample, List<Integer> rowids, ArrayList<Prediction> batchPredictions,
+		public void addBatchOfPredictions(Integer fold, Integer repeat, Integer sample, int[] rowids, ArrayList<Prediction> batchPredictions,
 				List<Quadlet<String, Double, List<Entry<String, Object>>, Boolean>> optimizationTraceFold) {
 			nrOfResultBatches += 1;
-			for (int i = 0; i < rowids.size(); ++i) {
+			int rowIdIndex = predictions.attribute("row_id").index();
+			int foldIndex = predictions.attribute("fold").index();
+			int repeatIndex = predictions.attribute("repeat").index();
+			int predictionIndex = predictions.attribute("prediction").index();
+			int sampleIndex = predictions.attribute("sample") == null ? -1 : predictions.attribute("sample").index();
+			int correctIndex = predictions.attribute("correct").index();
+			int[] confidenceIndices = new int[classnames == null ? 0 : classnames.size()];
+			for (int j = 0; j < confidenceIndices.length; ++j) {
+				Attribute confidence = predictions.attribute("confidence." + classnames.get(j));
+				confidenceIndices[j] = confidence == null ? -1 : confidence.index();
+			}
+			
+			for (int i = 0; i < rowids.length; ++i) {
 				Prediction current = batchPredictions.get(i);
 				double[] values = new double[predictions.numAttributes()];
-				values[predictions.attribute("row_id").index()] = rowids.get(i);
-				values[predictions.attribute("fold").index()] = fold;
-				values[predictions.attribute("repeat").index()] = repeat;
-				values[predictions.attribute("prediction").index()] = current.predicted();
-				if (predictions.attribute("sample") != null) {
-					values[predictions.attribute("sample").index()] = sample;
+				values[rowIdIndex] = rowids[i];
+				values[foldIndex] = fold;
+				values[repeatIndex] = repeat;
+				values[predictionIndex] = current.predicted();
+				if (sampleIndex >= 0) {
+					values[sampleIndex] = sample;
 				}
-				values[predictions.attribute("correct").index()] = inputData.instance(rowids.get(i)).classValue();
+				values[correctIndex] = inputData.instance(rowids[i]).classValue();
 
 				if (current instanceof NominalPrediction) {
 					double[] confidences = ((NominalPrediction) current).distribution();
 					for (int j = 0; j < confidences.length; ++j) {
-						values[predictions.attribute("confidence." + classnames.get(j)).index()] = confidences[j];
+						values[confidenceIndices[j]] = confidences[j];
 					}
 				}
 
@@ -31,11 +31,12 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
 
 package org.openml.weka.experiment;
 
-import java.io.FileReader;
+import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 
 import org.openml.apiconnector.algorithms.Conversion;
 import org.openml.apiconnector.algorithms.TaskInformation;
@@ -46,11 +47,18 @@ import org.openml.apiconnector.xml.EstimationProcedureType;
 import org.openml.apiconnector.xml.Task;
 import org.openml.apiconnector.xml.Task.Input.Data_set;
 import org.openml.weka.algorithm.DataSplits;
+import org.openml.weka.algorithm.DatasetStorage;
 import org.openml.weka.algorithm.InstancesHelper;
 import org.openml.weka.algorithm.OptimizationTrace;
+import org.openml.weka.algorithm.SplitGenerator;
+import org.openml.weka.algorithm.SplitIndex;
+import org.openml.weka.algorithm.ValueDictionary;
 import org.openml.weka.algorithm.WekaAlgorithm;
 import org.openml.weka.algorithm.OptimizationTrace.Quadlet;
 import org.openml.weka.algorithm.WekaConfig;
+import org.openml.weka.io.DatasetCache;
+import org.openml.weka.io.DatasetPool;
+import org.openml.weka.io.SplitIndexFormat;
 
 import weka.core.AttributeStats;
 import weka.core.Instances;
@@ -94,23 +102,55 @@ public class TaskResultProducer extends CrossValidationResultProducer {
 
 	protected OpenmlConnector apiconnector;
 	protected WekaConfig openmlconfig;
+	
+	/** Local cache of parsed datasets, null if disabled **/
+	protected DatasetCache datasetCache;
+	
+	/** Datasets shared with other tasks in the JVM, null if disabled **/
+	protected DatasetPool datasetPool;
+	
+	/** The data of the current task, released when the next task is set **/
+	protected TaskData m_TaskData;
 
 	public TaskResultProducer(OpenmlConnector apiconnector, WekaConfig openmlconfig) {
 		super();
 		this.m_SplitEvaluator = new OpenmlClassificationSplitEvaluator();
 		this.apiconnector = apiconnector;
 		this.openmlconfig = openmlconfig;
+		
+		// all storage types other than heap are backed by the dataset cache
+		DatasetStorage storage = openmlconfig.getDatasetStorage();
+		if (openmlconfig.getDatasetCache() || storage != DatasetStorage.HEAP) {
+			this.datasetCache = new DatasetCache(new File(openmlconfig.getDatasetCacheDirectory()), openmlconfig.getDatasetCacheSize() * 1024 * 1024, storage);
+		}
+		ValueDictionary.getShared().setMinNominalValues(openmlconfig.getDictionaryMinValues());
+		if (openmlconfig.getDatasetPoolSize() > 0) {
+			this.datasetPool = DatasetPool.getShared(openmlconfig.getDatasetPoolSize() * 1024 * 1024);
+		}
 	}
 
 	public void setTask(Task t) throws Exception {
-		m_Task = t;
-
-		regressionTask = t.getTask_type_id() == 2;
-
-		if (regressionTask) {
+		setTask(loadTask(t));
+	}
+	
+	/**
+	 * Downloads and parses everything that is needed to run a task: the 
+	 * dataset, the splits and the estimation procedure. Does not change the 
+	 * state of the result producer, and can therefore be invoked from a 
+	 * background thread while another task is running. When the dataset pool
+	 * is enabled, the dataset is shared with other tasks that use it, and it
+	 * is held until the task data is released. 
+	 * 
+	 * @param t - the task to load
+	 * @return the loaded task data, to be passed to setTask
+	 * @throws Exception - when the task is not supported or one of the
+	 *                     files can not be obtained
+	 */
+	public TaskData loadTask(Task t) throws Exception {
+		if (t.getTask_type_id() == 2) {
 			throw new Exception("OpenML Plugin Exception: Regression tasks currently not supported. Aborting.");
 		}
-
+		
 		/*
 		 * if( regressionTask && !( m_SplitEvaluator instanceof
 		 * OpenmlRegressionSplitEvaluator ) ) { m_SplitEvaluator = new
@@ -119,20 +159,90 @@ public class TaskResultProducer extends CrossValidationResultProducer {
 		 * = new OpenmlClassificationSplitEvaluator(); }
 		 */
 		
-		m_Instances = InstancesHelper.getDatasetFromTask(apiconnector, m_Task);
-		Data_set ds = TaskInformation.getSourceData(m_Task);
-		int targetAttributeIndex = InstancesHelper.getAttributeIndex(m_Instances, ds.getTarget_feature());
-		AttributeStats targetStats = m_Instances.attributeStats(targetAttributeIndex);
-		Instances splits = new Instances(new FileReader(apiconnector.taskSplitsGet(m_Task)));
-		int epId = TaskInformation.getEstimationProcedure(m_Task).getId();
-		EstimationProcedure ep = apiconnector.estimationProcedureGet(epId);
-
-		missingLabels = targetStats.missingCount > 0;
-		m_DataSplits = new DataSplits(ds.getData_set_id(), ep, m_Instances, splits);
+		final Task task = t;
+		Data_set ds = TaskInformation.getSourceData(t);
+		Instances instances;
+		String poolKey = null;
+		if (datasetPool != null) {
+			poolKey = DatasetPool.getKey(ds.getDataSetDescription(apiconnector), ds.getTarget_feature());
+			instances = datasetPool.acquire(poolKey, new Callable<Instances>() {
+				@Override
+				public Instances call() throws Exception {
+					return InstancesHelper.getDatasetFromTask(apiconnector, task, datasetCache, openmlconfig.getSparseDensity());
+				}
+			});
+		} else {
+			instances = InstancesHelper.getDatasetFromTask(apiconnector, t, datasetCache, openmlconfig.getSparseDensity());
+		}
+		
+		try {
+			int targetAttributeIndex = InstancesHelper.getAttributeIndex(instances, ds.getTarget_feature());
+			AttributeStats targetStats = instances.attributeStats(targetAttributeIndex);
+			int epId = TaskInformation.getEstimationProcedure(t).getId();
+			EstimationProcedure ep = apiconnector.estimationProcedureGet(epId);
+			SplitIndex splits;
+			if (openmlconfig.getGenerateSplits() && SplitGenerator.supports(ep)) {
+				Conversion.log("WARNING", "Splits", "Generating splits for task " + t.getTask_id() + " locally; these differ from the splits of the task on OpenML, and can not be uploaded");
+				splits = SplitGenerator.generate(ep, instances, openmlconfig.getSplitSeed());
+			} else {
+				// leave-one-out training sets are derived from the test sets, in linear memory
+				boolean testOnly = ep.getType() == EstimationProcedureType.LEAVEONEOUT;
+				splits = SplitIndexFormat.load(apiconnector.taskSplitsGet(t), testOnly);
+			}
+			
+			DataSplits dataSplits = new DataSplits(ds.getData_set_id(), ep, instances, splits);
+			String representation = "Task " + t.getTask_id() + " (" + ds.getDataSetDescription(apiconnector).getName() + ")";
+			return new TaskData(t, instances, dataSplits, targetStats.missingCount > 0, representation, poolKey);
+		} catch (Exception e) {
+			if (poolKey != null) {
+				datasetPool.release(poolKey);
+			} else {
+				InstancesHelper.closeStore(instances);
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * Releases the dataset of task data that was obtained with loadTask, 
+	 * but is no longer used. Task data that is passed to setTask is released
+	 * by the result producer. A dataset that is not pooled is closed, which 
+	 * releases the file of a lazily loaded dataset. 
+	 * 
+	 * @param data - the task data to release
+	 */
+	public void release(TaskData data) {
+		if (data.poolKey != null && datasetPool != null) {
+			datasetPool.release(data.poolKey);
+		} else {
+			InstancesHelper.closeStore(data.getInstances());
+		}
+	}
+	
+	public void setTask(TaskData data) {
+		// the new data is acquired already, so a shared dataset stays pooled
+		if (m_TaskData != null) {
+			release(m_TaskData);
+		}
+		m_TaskData = data;
+		m_Task = data.getTask();
+		regressionTask = m_Task.getTask_type_id() == 2;
+		m_Instances = data.getInstances();
+		missingLabels = data.hasMissingLabels();
+		m_DataSplits = data.getDataSplits();
 		m_NumFolds = m_DataSplits.FOLDS;
 		m_NumSamples = m_DataSplits.SAMPLES;
-
-		currentTaskRepresentation = "Task " + m_Task.getTask_id() + " (" + TaskInformation.getSourceData(m_Task).getDataSetDescription(apiconnector).getName() + ")";
+		
+		currentTaskRepresentation = data.getRepresentation();
+	}
+	
+	@Override
+	public void postProcess() throws Exception {
+		if (m_TaskData != null) {
+			release(m_TaskData);
+			m_TaskData = null;
+		}
+		super.postProcess();
 	}
 	
 	public Object getSplitEvaluatorKey(int index) {
@@ -244,6 +354,9 @@ public class TaskResultProducer extends CrossValidationResultProducer {
 					if (m_ResultListener instanceof TaskResultListener) {
 						((TaskResultListener) m_ResultListener).acceptErrorResult(m_Task, m_Instances, m_DataSplits.getNrOfRuns(), tse.getTrainedClassifier(), ex.getMessage(), (String) tse.getKey()[1]);
 					}
+				} finally {
+					// the predictions are handed over, the fold is not needed anymore
+					m_DataSplits.release(repeat, fold, sample);
 				}
 			}
 		}
@@ -264,4 +377,56 @@ public class TaskResultProducer extends CrossValidationResultProducer {
 			this(openmlFunctionName, wekaFunctionName, 1.0D);
 		}
 	}
+
+	/**
+	 * Everything that is needed to run a task, as obtained by loadTask. 
+	 */
+	public static class TaskData {
+		private final Task task;
+		private final Instances instances;
+		private final DataSplits dataSplits;
+		private final boolean missingLabels;
+		private final String representation;
+		private final String poolKey;
+		
+		protected TaskData(Task task, Instances instances, DataSplits dataSplits, boolean missingLabels, String representation, String poolKey) {
+			this.task = task;
+			this.instances = instances;
+			this.dataSplits = dataSplits;
+			this.missingLabels = missingLabels;
+			this.representation = representation;
+			this.poolKey = poolKey;
+		}
+		
+		public Task getTask() {
+			return task;
+		}
+		
+		public Instances getInstances() {
+			return instances;
+		}
+		
+		public DataSplits getDataSplits() {
+			return dataSplits;
+		}
+		
+		public boolean hasMissingLabels() {
+			return missingLabels;
+		}
+		
+		public String getRepresentation() {
+			return representation;
+		}
+		
+		/**
+		 * @return A rough estimate of the heap memory that is held by the 
+		 *         dataset and its splits, in bytes
+		 */
+		public long estimateSize() {
+			// fold sets are materialised one at a time and released after use
+			long size = DatasetPool.estimateSize(instances);
+			size += dataSplits.getSplitIndex().size() * 4;
+			return size;
+		}
+	}
 }
@@ -0,0 +1,106 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.experiment;
+
+import java.io.File;
+
+import org.openml.apiconnector.algorithms.Conversion;
+import org.openml.apiconnector.io.OpenmlConnector;
+import org.openml.weka.algorithm.WekaConfig;
+import org.openml.weka.io.OpenmlWekaConnector;
+import org.openml.weka.io.StoredRun;
+
+import weka.core.CommandlineRunnable;
+import weka.core.Utils;
+
+/**
+ * Uploads the runs that were stored while running task bundles without 
+ * network access. Usage: 
+ * <pre>
+ * -directory &lt;dir&gt; [-config &lt;config&gt;]
+ * </pre>
+ * All stored runs in the directory and its subdirectories that were not 
+ * uploaded yet are uploaded, so the directory of the task bundles can be 
+ * passed as is. Runs on locally generated splits are skipped. 
+ */
+public class UploadStoredRuns implements CommandlineRunnable {
+
+	public static void main(String[] args) throws Exception {
+		UploadStoredRuns usr = new UploadStoredRuns();
+		usr.run(usr, args);
+	}
+	
+	@Override
+	public void run(Object arg0, String[] args) throws Exception {
+		String strConfig;
+		WekaConfig config;
+		
+		try { strConfig = Utils.getOption("config", args); } catch (Exception e) { strConfig = null; }
+		if (strConfig != null && strConfig.equals("") == false) {
+			config = new WekaConfig(strConfig);
+		} else {
+			config = new WekaConfig();
+		}
+		
+		OpenmlConnector apiconnector;
+		if (config.getServer() != null) {
+			apiconnector = new OpenmlWekaConnector(config.getServer(), config.getApiKey(), config);
+		} else {
+			apiconnector = new OpenmlWekaConnector(config.getApiKey(), config);
+		}
+		
+		String strDirectory = Utils.getOption("directory", args);
+		if (strDirectory.length() == 0) {
+			throw new Exception("A directory with stored runs must be specified with the -directory option.");
+		}
+		
+		for (StoredRun stored : StoredRun.find(new File(strDirectory))) {
+			if (stored.getUploadedRunId() != null) {
+				continue;
+			}
+			if (stored.hasGeneratedSplits()) {
+				Conversion.log("WARNING", "Upload Run", "Skipping " + stored.getDirectory().getAbsolutePath() + ", which used locally generated splits");
+				continue;
+			}
+			int runId = stored.upload(apiconnector);
+			Conversion.log("OK", "Upload Run", "Uploaded " + stored.getDirectory().getAbsolutePath() + " with run id = " + runId + ", see " + apiconnector.getApiUrl() + "run/" + runId);
+		}
+	}
+
+	@Override
+	public void postExecution() throws Exception {
+	}
+
+	@Override
+	public void preExecution() throws Exception {
+	}
+}
@@ -65,6 +65,7 @@ import org.openml.weka.experiment.OpenmlClassificationSplitEvaluator;
 import org.openml.weka.experiment.TaskBasedExperiment;
 import org.openml.weka.experiment.TaskResultListener;
 import org.openml.weka.experiment.TaskResultProducer;
+import org.openml.weka.io.OpenmlWekaConnector;
 
 import weka.classifiers.Classifier;
 import weka.experiment.Experiment;
@@ -154,13 +155,13 @@ public class OpenmlSimpleSetupPanel extends SimpleSetupPanel {
 			String apiKey = openmlconfig.getApiKey();
 			
 			if( openmlconfig.getServer() != null ) {
-				apiconnector = new OpenmlConnector(openmlconfig.getServer(), apiKey);
+				apiconnector = new OpenmlWekaConnector(openmlconfig.getServer(), apiKey, openmlconfig);
 				m_ResultsDestinationPathTField.setText(apiKeyToStarred(apiKey));
 			} else { 
-				apiconnector = new OpenmlConnector(apiKey);
+				apiconnector = new OpenmlWekaConnector(apiKey, openmlconfig);
 			}
 		} catch( RuntimeException e ) {
-			apiconnector = new OpenmlConnector();
+			apiconnector = new OpenmlWekaConnector();
 		}
 		
 		m_TaskListPanel = new TaskListPanel( apiconnector );
@@ -0,0 +1,310 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import org.openml.weka.algorithm.ValueDictionary;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+/**
+ * Compact binary representation of a Weka dataset, used for the local dataset
+ * cache. Compared to ARFF, loading does not involve any tokenizing or number
+ * parsing.
+ * 
+ * Layout (big endian, as written by DataOutputStream):
+ * <pre>
+ * int     magic, int version
+ * int     header length, byte[] ARFF header (UTF-8)
+ * int     number of instances, int number of attributes
+ * byte    layout (dense columns / sparse rows), byte has weights
+ * per string attribute: int number of values, per value: int length, byte[] (UTF-8)
+ * double[numInstances]   weights (only if has weights)
+ * dense:  per attribute a column of double[numInstances]
+ * sparse: int[numInstances + 1] row offsets, int[nnz] indices, double[nnz] values
+ * </pre>
+ * Dense data is stored column by column, so a single attribute occupies one
+ * contiguous block of the file.
+ */
+public class BinaryInstancesFormat {
+
+	public static final int MAGIC = 0x4F4D4C57; // "OMLW"
+	public static final int VERSION = 1;
+	
+	public static final byte LAYOUT_DENSE = 0;
+	public static final byte LAYOUT_SPARSE = 1;
+	
+	/**
+	 * Writes a dataset to a file in the binary format. The class index is not
+	 * stored; it is up to the reader to set it.
+	 * 
+	 * @param instances - the dataset to write
+	 * @param file - the destination file
+	 * @throws IOException - when the file could not be written, or the dataset
+	 *                       contains relational attributes
+	 */
+	public static void write(Instances instances, File file) throws IOException {
+		for (int i = 0; i < instances.numAttributes(); ++i) {
+			if (instances.attribute(i).isRelationValued()) {
+				throw new IOException("Relational attributes can not be stored in binary format: " + instances.attribute(i).name());
+			}
+		}
+		final int numInstances = instances.numInstances();
+		final int numAttributes = instances.numAttributes();
+		boolean sparse = numInstances > 0 && instances.instance(0) instanceof SparseInstance;
+		boolean hasWeights = false;
+		for (int i = 0; i < numInstances; ++i) {
+			if (instances.instance(i).weight() != 1.0) {
+				hasWeights = true;
+				break;
+			}
+		}
+		
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, new Instances(instances, 0).toString());
+			out.writeInt(numInstances);
+			out.writeInt(numAttributes);
+			out.writeByte(sparse ? LAYOUT_SPARSE : LAYOUT_DENSE);
+			out.writeByte(hasWeights ? 1 : 0);
+			for (int j = 0; j < numAttributes; ++j) {
+				Attribute att = instances.attribute(j);
+				if (att.isString()) {
+					out.writeInt(att.numValues());
+					for (int k = 0; k < att.numValues(); ++k) {
+						writeString(out, att.value(k));
+					}
+				}
+			}
+			if (hasWeights) {
+				for (int i = 0; i < numInstances; ++i) {
+					out.writeDouble(instances.instance(i).weight());
+				}
+			}
+			
+			if (sparse) {
+				int offset = 0;
+				out.writeInt(offset);
+				for (int i = 0; i < numInstances; ++i) {
+					offset += instances.instance(i).numValues();
+					out.writeInt(offset);
+				}
+				for (int i = 0; i < numInstances; ++i) {
+					Instance instance = instances.instance(i);
+					for (int k = 0; k < instance.numValues(); ++k) {
+						out.writeInt(instance.index(k));
+					}
+				}
+				for (int i = 0; i < numInstances; ++i) {
+					Instance instance = instances.instance(i);
+					for (int k = 0; k < instance.numValues(); ++k) {
+						out.writeDouble(instance.valueSparse(k));
+					}
+				}
+			} else {
+				for (int j = 0; j < numAttributes; ++j) {
+					for (int i = 0; i < numInstances; ++i) {
+						out.writeDouble(instances.instance(i).value(j));
+					}
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Reads a dataset that was written with {@link #write(Instances, File)}.
+	 * 
+	 * @param file - the file to read
+	 * @return the dataset, without class index
+	 * @throws IOException - when the file could not be read or is not in the 
+	 *                       expected format
+	 */
+	public static Instances read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			Header header = readHeader(in);
+			Instances instances = header.structure;
+			final int numInstances = header.numInstances;
+			final int numAttributes = instances.numAttributes();
+			
+			double[] weights = readWeights(in, header);
+			if (header.layout == LAYOUT_SPARSE) {
+				int[] offsets = new int[numInstances + 1];
+				for (int i = 0; i <= numInstances; ++i) {
+					offsets[i] = in.readInt();
+				}
+				int[][] indices = new int[numInstances][];
+				for (int i = 0; i < numInstances; ++i) {
+					indices[i] = new int[offsets[i + 1] - offsets[i]];
+					for (int k = 0; k < indices[i].length; ++k) {
+						indices[i][k] = in.readInt();
+					}
+				}
+				for (int i = 0; i < numInstances; ++i) {
+					double[] values = new double[indices[i].length];
+					for (int k = 0; k < values.length; ++k) {
+						values[k] = in.readDouble();
+					}
+					instances.add(new SparseInstance(weights == null ? 1.0 : weights[i], values, indices[i], numAttributes));
+					indices[i] = null;
+				}
+			} else {
+				double[][] values = new double[numInstances][numAttributes];
+				for (int j = 0; j < numAttributes; ++j) {
+					for (int i = 0; i < numInstances; ++i) {
+						values[i][j] = in.readDouble();
+					}
+				}
+				for (int i = 0; i < numInstances; ++i) {
+					instances.add(new DenseInstance(weights == null ? 1.0 : weights[i], values[i]));
+				}
+			}
+			return instances;
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Reads the header section of a binary dataset file, i.e., everything up
+	 * to (but not including) the weights and the actual data.
+	 * 
+	 * @param in - stream positioned at the start of the file
+	 * @return the header information, with an empty dataset as structure
+	 * @throws IOException - when the stream is not in the expected format
+	 */
+	public static Header readHeader(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a binary instances file");
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported binary instances version: " + version);
+		}
+		Header header = new Header();
+		byte[] arffHeader = readBytes(in);
+		long offset = 8 + 4 + arffHeader.length + 4 + 4 + 1 + 1;
+		header.numInstances = in.readInt();
+		int numAttributes = in.readInt();
+		header.layout = in.readByte();
+		header.hasWeights = in.readByte() == 1;
+		header.structure = new Instances(new Instances(new StringReader(new String(arffHeader, StandardCharsets.UTF_8))), header.numInstances);
+		if (header.structure.numAttributes() != numAttributes) {
+			throw new IOException("Header does not match number of attributes: " + numAttributes);
+		}
+		header.structure = ValueDictionary.getShared().share(header.structure);
+		for (int j = 0; j < numAttributes; ++j) {
+			Attribute att = header.structure.attribute(j);
+			if (att.isString()) {
+				int numValues = in.readInt();
+				offset += 4;
+				for (int k = 0; k < numValues; ++k) {
+					byte[] value = readBytes(in);
+					offset += 4 + value.length;
+					att.addStringValue(ValueDictionary.getShared().intern(new String(value, StandardCharsets.UTF_8)));
+				}
+			}
+		}
+		header.dataOffset = offset;
+		return header;
+	}
+	
+	protected static double[] readWeights(DataInputStream in, Header header) throws IOException {
+		if (!header.hasWeights) {
+			return null;
+		}
+		double[] weights = new double[header.numInstances];
+		for (int i = 0; i < weights.length; ++i) {
+			weights[i] = in.readDouble();
+		}
+		return weights;
+	}
+	
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return bytes;
+	}
+	
+	public static class Header {
+		protected Instances structure;
+		protected int numInstances;
+		protected byte layout;
+		protected boolean hasWeights;
+		/** file position at which the weights (or, if absent, the data) start */
+		protected long dataOffset;
+		
+		public Instances getStructure() {
+			return structure;
+		}
+		
+		public int getNumInstances() {
+			return numInstances;
+		}
+		
+		public boolean isSparse() {
+			return layout == LAYOUT_SPARSE;
+		}
+		
+		public boolean hasWeights() {
+			return hasWeights;
+		}
+		
+		public long getDataOffset() {
+			return dataOffset;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Opens remote and local files that may be compressed. HTTP requests 
+ * negotiate gzip or deflate content encoding, and local files are 
+ * recognized as gzip by their magic bytes, regardless of their extension. 
+ * Decompression happens while the stream is read. 
+ */
+public class CompressedStreams {
+	
+	public static final String ACCEPT_ENCODING = "gzip, deflate";
+	
+	private static final int BUFFER_SIZE = 65536;
+	
+	/**
+	 * Downloads a file with the shared download client, accepting a 
+	 * compressed response, and returns the decompressed response body.
+	 * 
+	 * @param url - the url to open
+	 * @return the decompressed response body
+	 * @throws IOException - when the connection fails
+	 */
+	public static InputStream open(URL url) throws IOException {
+		return DownloadClient.getDefault().open(url);
+	}
+	
+	/**
+	 * Opens a local file, which is decompressed when it starts with the gzip 
+	 * magic bytes. 
+	 * 
+	 * @param file - the file to open, for example a .arff or .arff.gz file
+	 * @return the decompressed contents of the file
+	 * @throws IOException - when the file can not be read
+	 */
+	public static InputStream open(File file) throws IOException {
+		BufferedInputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+		in.mark(2);
+		int first = in.read();
+		int second = in.read();
+		in.reset();
+		if (isGzipMagic(first, second)) {
+			return new GZIPInputStream(in, BUFFER_SIZE);
+		}
+		return in;
+	}
+	
+	/**
+	 * @param file - a local file
+	 * @return whether the file starts with the gzip magic bytes
+	 * @throws IOException - when the file can not be read
+	 */
+	public static boolean isCompressed(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return isGzipMagic(in.read(), in.read());
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static boolean isGzipMagic(int first, int second) {
+		return first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >> 8);
+	}
+	
+	/**
+	 * Wraps a stream according to its http content encoding.
+	 * 
+	 * @param in - the raw stream
+	 * @param contentEncoding - the value of the Content-Encoding header, may be null
+	 * @return the decompressed stream
+	 * @throws IOException - when the encoding is not supported or the stream
+	 *                       is not valid for the encoding
+	 */
+	public static InputStream decode(InputStream in, String contentEncoding) throws IOException {
+		if (contentEncoding == null || contentEncoding.equalsIgnoreCase("identity")) {
+			return in;
+		} else if (contentEncoding.equalsIgnoreCase("gzip") || contentEncoding.equalsIgnoreCase("x-gzip")) {
+			return new GZIPInputStream(in, BUFFER_SIZE);
+		} else if (contentEncoding.equalsIgnoreCase("deflate")) {
+			// servers send both zlib wrapped and raw deflate data under this name
+			BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+			buffered.mark(2);
+			int cmf = buffered.read();
+			int flg = buffered.read();
+			buffered.reset();
+			boolean zlib = cmf >= 0 && flg >= 0 && (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+			return new InflaterInputStream(buffered, new Inflater(!zlib), BUFFER_SIZE);
+		}
+		throw new IOException("Unsupported content encoding: " + contentEncoding);
+	}
+}
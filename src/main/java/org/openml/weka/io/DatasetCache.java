@@ -0,0 +1,261 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.openml.apiconnector.algorithms.Conversion;
+import org.openml.apiconnector.xml.DataSetDescription;
+import org.openml.weka.algorithm.CompactColumnStore;
+import org.openml.weka.algorithm.DatasetStorage;
+
+import weka.core.Instances;
+
+/**
+ * Local on-disk cache of datasets that have already been parsed and projected
+ * (i.e., the ignore and row id attributes are removed). Entries are stored in 
+ * the {@link BinaryInstancesFormat} and are keyed by dataset id, file id, md5
+ * checksum and the removed attributes, so that a new version of the data or of
+ * its description never hits a stale entry. 
+ * 
+ * The total size of the cache is bounded; when a new entry does not fit, the
+ * least recently used entries are evicted. The last modified time of a file 
+ * is used to keep track of usage, so that multiple processes can share the 
+ * same cache directory.
+ * 
+ * With {@link DatasetStorage#MAPPED}, datasets are not read into the heap but 
+ * memory-mapped from the cache file, which is then shared between all worker
+ * processes on the same machine through the page cache. With 
+ * {@link DatasetStorage#LAZY}, a column is only read into the heap when one of
+ * its values is first accessed. With {@link DatasetStorage#FLOAT}, numeric 
+ * values are held as 32-bit floats and nominal values as small int codes. 
+ * With {@link DatasetStorage#OFFHEAP}, values are read into direct memory 
+ * outside of the Java heap.
+ */
+public class DatasetCache {
+	
+	private static final String EXTENSION = ".bin";
+	
+	private final File directory;
+	private final long maxBytes;
+	private final DatasetStorage storage;
+	
+	/**
+	 * @param directory - the directory to store the cached datasets in
+	 * @param maxBytes - the maximum total size of all cached datasets
+	 */
+	public DatasetCache(File directory, long maxBytes) {
+		this(directory, maxBytes, DatasetStorage.HEAP);
+	}
+	
+	/**
+	 * @param directory - the directory to store the cached datasets in
+	 * @param maxBytes - the maximum total size of all cached datasets
+	 * @param storage - how datasets obtained from the cache are represented
+	 */
+	public DatasetCache(File directory, long maxBytes, DatasetStorage storage) {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.storage = storage;
+	}
+	
+	public File getDirectory() {
+		return directory;
+	}
+	
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+	
+	public DatasetStorage getStorage() {
+		return storage;
+	}
+	
+	/**
+	 * @param dsd - the data set description object, as downloaded from openml
+	 * @return the location where the projected dataset is (or would be) cached
+	 */
+	public File getLocation(DataSetDescription dsd) {
+		StringBuilder projection = new StringBuilder();
+		if (dsd.getIgnore_attribute() != null) {
+			projection.append(Arrays.toString(dsd.getIgnore_attribute()));
+		}
+		projection.append(";").append(dsd.getRow_id_attribute());
+		String name = dsd.getId() + "_" + dsd.getFile_id() + "_" + dsd.getMd5_checksum() + "_" + DownloadClient.md5(projection.toString());
+		return new File(directory, name + EXTENSION);
+	}
+	
+	/**
+	 * Obtains a dataset from the cache, in the storage that the cache was 
+	 * configured with. The class index is not set.
+	 * 
+	 * @param dsd - the data set description object, as downloaded from openml
+	 * @return the cached dataset, or null if it is not in the cache
+	 */
+	public Instances get(DataSetDescription dsd) {
+		File location = getLocation(dsd);
+		if (!location.exists()) {
+			return null;
+		}
+		try {
+			Instances instances = null;
+			if (storage == DatasetStorage.MAPPED) {
+				try {
+					instances = MappedColumnStore.load(location);
+				} catch (IOException e) {
+					Conversion.log("INFO", "Dataset Cache", "Could not map dataset " + dsd.getId() + ", reading into heap: " + e.getMessage());
+				}
+			} else if (storage == DatasetStorage.OFFHEAP) {
+				try {
+					instances = OffHeapColumnStore.load(location);
+				} catch (IOException e) {
+					Conversion.log("INFO", "Dataset Cache", "Could not store dataset " + dsd.getId() + " off-heap, reading into heap: " + e.getMessage());
+				}
+			} else if (storage == DatasetStorage.LAZY) {
+				try {
+					instances = LazyColumnStore.load(location);
+				} catch (IOException e) {
+					Conversion.log("INFO", "Dataset Cache", "Could not open dataset " + dsd.getId() + " lazily, reading into heap: " + e.getMessage());
+				}
+			}
+			if (instances == null) {
+				instances = BinaryInstancesFormat.read(location);
+				if (storage == DatasetStorage.FLOAT) {
+					instances = toStorage(instances);
+				}
+			}
+			touch(location);
+			Conversion.log("OK", "Dataset Cache", "Loaded dataset " + dsd.getId() + " from " + location.getAbsolutePath());
+			return instances;
+		} catch (IOException e) {
+			Conversion.log("WARNING", "Dataset Cache", "Could not read cached dataset " + location.getAbsolutePath() + ": " + e.getMessage());
+			location.delete();
+			return null;
+		}
+	}
+	
+	/**
+	 * Converts a dataset into the storage that the cache was configured with,
+	 * for as far as that does not require a file in the cache. Used for 
+	 * datasets that do not fit in the cache. 
+	 * 
+	 * @param instances - a dense dataset in the heap, which is modified
+	 * @return the dataset in float or off-heap storage, or the dataset itself
+	 *         for all other storage types
+	 */
+	public Instances toStorage(Instances instances) {
+		if (storage == DatasetStorage.FLOAT) {
+			return CompactColumnStore.compact(instances);
+		} else if (storage == DatasetStorage.OFFHEAP) {
+			return OffHeapColumnStore.store(instances);
+		}
+		return instances;
+	}
+	
+	/**
+	 * Stores a projected dataset in the cache, and evicts least recently used 
+	 * entries when the cache is over its size quota. Failures are logged and 
+	 * otherwise ignored, as the cache is merely an optimization. 
+	 * 
+	 * @param dsd - the data set description object, as downloaded from openml
+	 * @param instances - the projected dataset
+	 */
+	public void put(DataSetDescription dsd, Instances instances) {
+		File location = getLocation(dsd);
+		try {
+			directory.mkdirs();
+			// write to a temporary file first, so that concurrent readers never see partial entries
+			File tmp = File.createTempFile(location.getName(), ".tmp", directory);
+			try {
+				BinaryInstancesFormat.write(instances, tmp);
+				if (tmp.length() > maxBytes) {
+					Conversion.log("INFO", "Dataset Cache", "Dataset " + dsd.getId() + " exceeds cache quota, not caching");
+					return;
+				}
+				evict(maxBytes - tmp.length());
+				if (!tmp.renameTo(location)) {
+					throw new IOException("Could not move " + tmp.getAbsolutePath() + " to " + location.getAbsolutePath());
+				}
+			} finally {
+				tmp.delete();
+			}
+			Conversion.log("OK", "Dataset Cache", "Stored dataset " + dsd.getId() + " in " + location.getAbsolutePath());
+		} catch (IOException e) {
+			Conversion.log("WARNING", "Dataset Cache", "Could not cache dataset " + dsd.getId() + ": " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * @return the total size of all cached datasets in bytes
+	 */
+	public long size() {
+		long total = 0;
+		for (File file : entries()) {
+			total += file.length();
+		}
+		return total;
+	}
+	
+	/**
+	 * Removes least recently used entries until at most the given number of 
+	 * bytes is in use.
+	 * 
+	 * @param targetBytes - the maximum number of bytes that may remain in use
+	 */
+	protected void evict(long targetBytes) {
+		File[] entries = entries();
+		long total = 0;
+		for (File file : entries) {
+			total += file.length();
+		}
+		Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+		for (int i = 0; i < entries.length && total > targetBytes; ++i) {
+			long length = entries[i].length();
+			if (entries[i].delete()) {
+				total -= length;
+				Conversion.log("INFO", "Dataset Cache", "Evicted " + entries[i].getName());
+			}
+		}
+	}
+	
+	private File[] entries() {
+		File[] entries = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+		return entries == null ? new File[0] : entries;
+	}
+	
+	private static void touch(File file) {
+		file.setLastModified(System.currentTimeMillis());
+	}
+}
@@ -0,0 +1,253 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.openml.apiconnector.algorithms.Conversion;
+import org.openml.apiconnector.xml.DataSetDescription;
+import org.openml.weka.algorithm.AttributeProjection;
+import org.openml.weka.algorithm.InstancesHelper;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * In-memory pool of loaded datasets, shared by all tasks in the JVM. Tasks 
+ * that use the same dataset, with the same projection and target, obtain the
+ * same Instances object, so a sweep over many tasks keeps one copy of every
+ * dataset. Pooled datasets are shared and must not be modified.
+ * 
+ * Every acquire must be followed by a release. Datasets that are still in use 
+ * are never evicted. Datasets that are no longer in use are kept as long as 
+ * the total estimated size stays within the bound, and evicted least recently
+ * used first. The column store of an evicted dataset is closed, so a lazily 
+ * loaded dataset does not keep its file open. 
+ */
+public class DatasetPool {
+	
+	private static DatasetPool shared;
+	
+	private long maxBytes;
+	
+	/** Entries by key, in order of last use **/
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private long hits = 0;
+	private long misses = 0;
+	
+	private static class Entry {
+		private final FutureTask<Instances> loader;
+		private int references = 0;
+		private long bytes = 0;
+		
+		private Entry(Callable<Instances> loader) {
+			this.loader = new FutureTask<Instances>(loader);
+		}
+	}
+	
+	/**
+	 * @param maxBytes - bound on the estimated size of all pooled datasets
+	 */
+	public DatasetPool(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+	
+	/**
+	 * Obtains the pool that is shared within the JVM, and creates it if it 
+	 * does not exist yet. 
+	 * 
+	 * @param maxBytes - bound on the estimated size of all pooled datasets, 
+	 *                   replaces the bound of an existing pool
+	 * @return the shared pool
+	 */
+	public static synchronized DatasetPool getShared(long maxBytes) {
+		if (shared == null) {
+			shared = new DatasetPool(maxBytes);
+		} else {
+			shared.setMaxBytes(maxBytes);
+		}
+		return shared;
+	}
+	
+	/**
+	 * @param dsd - the data set description object, as downloaded from openml
+	 * @param target - the name of the target attribute
+	 * @return the key under which the projected dataset with the given target
+	 *         is pooled
+	 */
+	public static String getKey(DataSetDescription dsd, String target) {
+		return dsd.getId() + "_" + dsd.getFile_id() + "_" + dsd.getMd5_checksum() + "_" + AttributeProjection.getRemovedAttributes(dsd) + "_" + target;
+	}
+	
+	/**
+	 * @param instances - a dataset
+	 * @return a rough estimate of the heap memory held by the dataset, in bytes
+	 */
+	public static long estimateSize(Instances instances) {
+		// 8 bytes per stored value plus some overhead per instance object, 
+		// sparse instances also store an int index per value
+		long size = 0;
+		for (Instance instance : instances) {
+			size += instance.numValues() * (instance.numValues() == instance.numAttributes() ? 8 : 12) + 40;
+		}
+		return size;
+	}
+	
+	/**
+	 * Obtains a dataset from the pool, and loads it if it is not pooled. When
+	 * the dataset is being loaded by another thread, waits for it. 
+	 * 
+	 * @param key - the key of the dataset, see getKey
+	 * @param loader - loads the dataset if it is not pooled
+	 * @return the shared dataset, which must be released after use
+	 * @throws Exception - when the dataset could not be loaded
+	 */
+	public Instances acquire(String key, Callable<Instances> loader) throws Exception {
+		Entry entry;
+		boolean load = false;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry == null) {
+				entry = new Entry(loader);
+				entries.put(key, entry);
+				load = true;
+				++misses;
+			} else {
+				++hits;
+			}
+			++entry.references;
+		}
+		
+		if (load) {
+			entry.loader.run();
+		}
+		try {
+			Instances instances = entry.loader.get();
+			if (load) {
+				synchronized (this) {
+					entry.bytes = estimateSize(instances);
+					evict();
+				}
+				Conversion.log("INFO", "Dataset Pool", "Pooled dataset " + instances.relationName() + " (" + (entry.bytes / 1024 / 1024) + " MB)");
+			}
+			return instances;
+		} catch (ExecutionException e) {
+			synchronized (this) {
+				--entry.references;
+				if (entries.get(key) == entry) {
+					entries.remove(key);
+				}
+			}
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * Indicates that a dataset that was acquired is no longer used. 
+	 * 
+	 * @param key - the key the dataset was acquired with
+	 */
+	public synchronized void release(String key) {
+		Entry entry = entries.get(key);
+		if (entry == null || entry.references == 0) {
+			throw new IllegalStateException("Dataset " + key + " was not acquired");
+		}
+		--entry.references;
+		evict();
+	}
+	
+	public synchronized void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		evict();
+	}
+	
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+	
+	/**
+	 * @return the number of pooled datasets, including those being loaded
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * @return the estimated size of all pooled datasets, in bytes
+	 */
+	public synchronized long getBytes() {
+		long bytes = 0;
+		for (Entry entry : entries.values()) {
+			bytes += entry.bytes;
+		}
+		return bytes;
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	private static void close(Entry entry) {
+		try {
+			InstancesHelper.closeStore(entry.loader.get());
+		} catch (Exception e) {
+			// a dataset that failed to load holds no store
+		}
+	}
+	
+	private void evict() {
+		long bytes = getBytes();
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (bytes > maxBytes && iterator.hasNext()) {
+			Map.Entry<String, Entry> next = iterator.next();
+			Entry entry = next.getValue();
+			if (entry.references == 0 && entry.loader.isDone()) {
+				Conversion.log("INFO", "Dataset Pool", "Evicting dataset " + next.getKey());
+				bytes -= entry.bytes;
+				iterator.remove();
+				close(entry);
+			}
+		}
+	}
+}
@@ -0,0 +1,618 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.openml.apiconnector.algorithms.Conversion;
+import org.openml.weka.algorithm.WekaConfig;
+
+/**
+ * Http client for file downloads, backed by a pool of keep-alive connections.
+ * Connections are returned to the pool when the stream of a download is 
+ * closed, so subsequent downloads from the same server skip connection setup
+ * and TLS handshakes. 
+ */
+public class DownloadClient {
+	
+	private static final int TRANSFER_SIZE = 1 << 20;
+	
+	/** Time to wait for a pooled connection, in milliseconds **/
+	public static final int DEFAULT_LEASE_TIMEOUT = 60000;
+	
+	private static DownloadClient defaultClient = null;
+	
+	/** Targets that are being downloaded by this process **/
+	private static final Set<String> DOWNLOADING = new HashSet<String>();
+	
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient httpClient;
+	private final int retries;
+	
+	/**
+	 * @param connectTimeout - connect timeout in milliseconds
+	 * @param readTimeout - socket read timeout in milliseconds
+	 * @param maxConnections - maximum number of pooled connections
+	 * @param maxConnectionsPerHost - maximum number of pooled connections per host
+	 */
+	public DownloadClient(int connectTimeout, int readTimeout, int maxConnections, int maxConnectionsPerHost) {
+		this(connectTimeout, readTimeout, maxConnections, maxConnectionsPerHost, 3);
+	}
+	
+	/**
+	 * @param connectTimeout - connect timeout in milliseconds
+	 * @param readTimeout - socket read timeout in milliseconds
+	 * @param maxConnections - maximum number of pooled connections
+	 * @param maxConnectionsPerHost - maximum number of pooled connections per host
+	 * @param retries - number of times an interrupted file download is resumed
+	 */
+	public DownloadClient(int connectTimeout, int readTimeout, int maxConnections, int maxConnectionsPerHost, int retries) {
+		this(connectTimeout, readTimeout, DEFAULT_LEASE_TIMEOUT, maxConnections, maxConnectionsPerHost, retries);
+	}
+	
+	/**
+	 * @param connectTimeout - connect timeout in milliseconds
+	 * @param readTimeout - socket read timeout in milliseconds
+	 * @param leaseTimeout - time to wait for a pooled connection when all 
+	 *                       connections are in use, in milliseconds
+	 * @param maxConnections - maximum number of pooled connections
+	 * @param maxConnectionsPerHost - maximum number of pooled connections per host
+	 * @param retries - number of times an interrupted file download is resumed
+	 */
+	public DownloadClient(int connectTimeout, int readTimeout, int leaseTimeout, int maxConnections, int maxConnectionsPerHost, int retries) {
+		this.retries = retries;
+		connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+		
+		RequestConfig requestConfig = RequestConfig.custom()
+			.setConnectTimeout(connectTimeout)
+			.setConnectionRequestTimeout(leaseTimeout)
+			.setSocketTimeout(readTimeout)
+			.build();
+		
+		// content compression is handled by CompressedStreams, which decodes while reading
+		httpClient = HttpClients.custom()
+			.setConnectionManager(connectionManager)
+			.setDefaultRequestConfig(requestConfig)
+			.disableContentCompression()
+			.useSystemProperties()
+			.build();
+	}
+	
+	/**
+	 * @param config - the configuration to take timeouts and connection limits from
+	 */
+	public DownloadClient(WekaConfig config) {
+		this(config.getHttpConnectTimeout(), config.getHttpReadTimeout(), config.getHttpLeaseTimeout(), config.getHttpMaxConnections(), config.getHttpMaxConnectionsPerHost(), config.getHttpDownloadRetries());
+	}
+	
+	/**
+	 * @return a client that is shared by all connectors that are not 
+	 *         configured with a WekaConfig, with default settings
+	 */
+	public static synchronized DownloadClient getDefault() {
+		if (defaultClient == null) {
+			defaultClient = new DownloadClient(new WekaConfig(""));
+		}
+		return defaultClient;
+	}
+	
+	/**
+	 * Performs a GET request that accepts a compressed response, and returns 
+	 * the decompressed response body. The connection is returned to the pool 
+	 * when the stream is closed. 
+	 * 
+	 * @param url - the url to download
+	 * @return the decompressed response body
+	 * @throws IOException - when the connection fails, or the server responds
+	 *                       with an error status code
+	 */
+	public InputStream open(URL url) throws IOException {
+		HttpGet request = new HttpGet(url.toString());
+		request.setHeader("Accept-Encoding", CompressedStreams.ACCEPT_ENCODING);
+		CloseableHttpResponse response = httpClient.execute(request);
+		
+		int responseCode = response.getStatusLine().getStatusCode();
+		HttpEntity entity = response.getEntity();
+		String encoding = entity == null || entity.getContentEncoding() == null ? null : entity.getContentEncoding().getValue();
+		Conversion.log("OK", "URL", "HTTP request status code [" + responseCode + "] encoding [" + encoding + "] URL [" + url + "]");
+		if (responseCode >= 400 || entity == null) {
+			EntityUtils.consumeQuietly(entity);
+			response.close();
+			throw new IOException("Server returned HTTP response code: " + responseCode + " for URL: " + url);
+		}
+		// closing the content stream releases the connection back to the pool
+		try {
+			return CompressedStreams.decode(entity.getContent(), encoding);
+		} catch (IOException e) {
+			// e.g., a corrupt gzip header
+			response.close();
+			throw e;
+		} catch (RuntimeException e) {
+			response.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Performs a GET request as open(URL), and stores the decompressed 
+	 * response body in a file while it is being read. The body is written to
+	 * a temporary file next to the target. When the stream is closed, the 
+	 * rest of the body is read, the file is verified against the md5 checksum 
+	 * and renamed to the target. When reading fails or the checksum does not
+	 * match, the temporary file is deleted and the target is not created. 
+	 * 
+	 * @param url - the url to download
+	 * @param target - the location to store the file
+	 * @param md5 - the expected md5 checksum of the file, no verification 
+	 *              when null
+	 * @return the decompressed response body
+	 * @throws IOException - when the connection fails, or the server responds
+	 *                       with an error status code
+	 */
+	public InputStream openAndStore(URL url, File target, String md5) throws IOException {
+		if (target.getParentFile() != null) {
+			target.getParentFile().mkdirs();
+		}
+		// unique, so concurrent downloads of the same file never share it
+		File tmp = File.createTempFile(target.getName() + "_", ".tmp", target.getAbsoluteFile().getParentFile());
+		InputStream in;
+		try {
+			in = open(url);
+		} catch (IOException e) {
+			tmp.delete();
+			throw e;
+		}
+		return new StoringInputStream(in, url, tmp, target, md5);
+	}
+	
+	/**
+	 * Downloads a file to disk. The response is written to a .part file next 
+	 * to the target, and an interrupted download is resumed from the end of 
+	 * that file with a http Range request, also when a previous run was 
+	 * aborted. The complete file is verified against the md5 checksum; when
+	 * a resumed download does not match, it is downloaded once more from the 
+	 * start. The verified file is then atomically renamed, so the target never contains a partial file.  
+	 * Concurrent downloads of the same target, by threads or other processes,
+	 * wait for each other through a .lock file next to the target, and reuse
+	 * the file that was downloaded while they waited. 
+	 * When the server sends the file gzip compressed, it is stored compressed,
+	 * and the target gets the extension .gz. 
+	 * 
+	 * @param url - the url to download
+	 * @param target - the location to store the file
+	 * @param md5 - the expected md5 checksum of the (uncompressed) file, 
+	 *              no verification when null
+	 * @return the downloaded file, either the target or the target with .gz extension
+	 * @throws IOException - when the download fails after all retries, or
+	 *                       the checksum does not match
+	 */
+	public File download(URL url, File target, String md5) throws IOException {
+		return download(url, target, md5, true);
+	}
+	
+	/**
+	 * Downloads a file to disk, as download(URL, File, String). 
+	 * 
+	 * @param url - the url to download
+	 * @param target - the location to store the file
+	 * @param md5 - the expected md5 checksum of the (uncompressed) file, 
+	 *              no verification when null
+	 * @param acceptGzip - whether the file may be stored gzip compressed, 
+	 *                     which is not useful for binary formats that need 
+	 *                     random access
+	 * @return the downloaded file, either the target or the target with .gz extension
+	 * @throws IOException - when the download fails after all retries, or
+	 *                       the checksum does not match
+	 */
+	public File download(URL url, File target, String md5, boolean acceptGzip) throws IOException {
+		if (target.getParentFile() != null) {
+			target.getParentFile().mkdirs();
+		}
+		File compressed = new File(target.getAbsolutePath() + ".gz");
+		boolean present = target.exists() || compressed.exists();
+		
+		// only one thread or process at a time writes the partial download
+		String key = target.getAbsolutePath();
+		acquireLocal(key);
+		try {
+			FileChannel lockChannel = new RandomAccessFile(new File(key + ".lock"), "rw").getChannel();
+			try {
+				if (lockChannel.tryLock() == null) {
+					Conversion.log("INFO", "Download", "Waiting for another process that downloads " + url);
+					lockChannel.lock();
+				}
+				if (!present && target.exists()) {
+					return target;
+				} else if (!present && compressed.exists()) {
+					return compressed;
+				}
+				return downloadLocked(url, target, md5, acceptGzip);
+			} finally {
+				// releases the file lock
+				lockChannel.close();
+			}
+		} finally {
+			releaseLocal(key);
+		}
+	}
+	
+	private File downloadLocked(URL url, File target, String md5, boolean acceptGzip) throws IOException {
+		File part = new File(target.getAbsolutePath() + ".part");
+		for (boolean restarted = false; ; restarted = true) {
+			boolean resumed = fetch(url, part, acceptGzip);
+			if (md5 == null) {
+				break;
+			}
+			String actual = md5(part);
+			if (actual.equalsIgnoreCase(md5)) {
+				break;
+			}
+			part.delete();
+			if (!resumed || restarted) {
+				throw new IOException("Checksum mismatch for " + url + ": expected " + md5 + ", got " + actual);
+			}
+			// the partial file may have been stale or corrupt, which a resume can not repair
+			Conversion.log("WARNING", "Download", "Checksum mismatch for resumed download of " + url + ", downloading it again");
+		}
+		
+		File result = isGzip(part) ? new File(target.getAbsolutePath() + ".gz") : target;
+		moveInto(part, result);
+		Conversion.log("OK", "Download", "Stored " + url + " in " + result.getAbsolutePath());
+		return result;
+	}
+	
+	/**
+	 * File locks are held by the process, so threads of this process that 
+	 * download the same file also wait for each other. 
+	 */
+	private static void acquireLocal(String key) throws IOException {
+		synchronized (DOWNLOADING) {
+			while (DOWNLOADING.contains(key)) {
+				try {
+					DOWNLOADING.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for the download of " + key);
+				}
+			}
+			DOWNLOADING.add(key);
+		}
+	}
+	
+	private static void releaseLocal(String key) {
+		synchronized (DOWNLOADING) {
+			DOWNLOADING.remove(key);
+			DOWNLOADING.notifyAll();
+		}
+	}
+	
+	/**
+	 * Transfers the file into the partial download, resuming it when the 
+	 * connection breaks. 
+	 * 
+	 * @return whether bytes were appended to an existing partial download
+	 */
+	private boolean fetch(URL url, File part, boolean acceptGzip) throws IOException {
+		boolean resumed = false;
+		for (int attempt = 0; ; ++attempt) {
+			resumed |= part.exists() && part.length() > 0;
+			try {
+				transfer(url, part, acceptGzip);
+				return resumed;
+			} catch (IOException e) {
+				if (attempt >= retries) {
+					throw e;
+				}
+				Conversion.log("WARNING", "Download", "Download of " + url + " interrupted after " + part.length() + " bytes, resuming: " + e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * Appends the remainder of a file to the partial download, or starts 
+	 * over when the server can not resume. 
+	 */
+	private void transfer(URL url, File part, boolean acceptGzip) throws IOException {
+		long offset = part.exists() ? part.length() : 0;
+		HttpGet request = new HttpGet(url.toString());
+		// deflate can not be recognized on disk, so only gzip is accepted here
+		request.setHeader("Accept-Encoding", acceptGzip ? "gzip" : "identity");
+		if (offset > 0) {
+			request.setHeader("Range", "bytes=" + offset + "-");
+		}
+		
+		CloseableHttpResponse response = httpClient.execute(request);
+		try {
+			int responseCode = response.getStatusLine().getStatusCode();
+			HttpEntity entity = response.getEntity();
+			String encoding = entity == null || entity.getContentEncoding() == null ? null : entity.getContentEncoding().getValue();
+			Conversion.log("OK", "URL", "HTTP request status code [" + responseCode + "] encoding [" + encoding + "] offset [" + offset + "] URL [" + url + "]");
+			
+			if (responseCode == 416 && offset > 0) {
+				// the partial file already contains everything
+				return;
+			}
+			if (responseCode >= 400 || entity == null) {
+				throw new IOException("Server returned HTTP response code: " + responseCode + " for URL: " + url);
+			}
+			
+			boolean gzip = encoding != null && (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip"));
+			boolean append = false;
+			if (responseCode == 206) {
+				Header range = response.getFirstHeader("Content-Range");
+				append = range != null && range.getValue().startsWith("bytes " + offset + "-") && gzip == isGzip(part);
+				if (!append) {
+					// the server resumed a different representation, start over
+					part.delete();
+					throw new IOException("Server could not resume at offset " + offset);
+				}
+			}
+			
+			InputStream in = entity.getContent();
+			if (!gzip && encoding != null && !encoding.equalsIgnoreCase("identity")) {
+				in = CompressedStreams.decode(in, encoding);
+			}
+			// the response is written as fast as the network delivers it, 
+			// parsing only starts on the complete file
+			ReadableByteChannel source = Channels.newChannel(in);
+			FileChannel out = new FileOutputStream(part, append).getChannel();
+			try {
+				// not transferFrom, which hides a broken connection once some bytes are read
+				ByteBuffer buffer = ByteBuffer.allocateDirect(TRANSFER_SIZE);
+				while (source.read(buffer) >= 0) {
+					buffer.flip();
+					while (buffer.hasRemaining()) {
+						out.write(buffer);
+					}
+					buffer.clear();
+				}
+			} finally {
+				out.close();
+				source.close();
+			}
+		} finally {
+			response.close();
+		}
+	}
+	
+	private static void moveInto(File file, File target) throws IOException {
+		try {
+			Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	/**
+	 * Writes everything that is read to a temporary file, which is moved to
+	 * the target when the stream is closed after a complete, verified read.
+	 */
+	private static class StoringInputStream extends FilterInputStream {
+		private final URL url;
+		private final File tmp;
+		private final File target;
+		private final String md5;
+		private final MessageDigest digest;
+		private final OutputStream out;
+		private boolean failed = false;
+		private boolean closed = false;
+		
+		private StoringInputStream(InputStream in, URL url, File tmp, File target, String md5) throws IOException {
+			super(in);
+			this.url = url;
+			this.tmp = tmp;
+			this.target = target;
+			this.md5 = md5;
+			this.digest = md5Digest();
+			this.out = new BufferedOutputStream(new FileOutputStream(tmp), TRANSFER_SIZE);
+		}
+		
+		@Override
+		public int read() throws IOException {
+			byte[] single = new byte[1];
+			int read = read(single, 0, 1);
+			return read < 0 ? -1 : single[0] & 0xff;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			try {
+				int read = in.read(b, off, len);
+				if (read > 0) {
+					digest.update(b, off, read);
+					out.write(b, off, read);
+				}
+				return read;
+			} catch (IOException e) {
+				failed = true;
+				throw e;
+			}
+		}
+		
+		@Override
+		public long skip(long n) throws IOException {
+			// skipped bytes are stored as well
+			byte[] buffer = new byte[(int) Math.min(n, 8192)];
+			int read = read(buffer, 0, buffer.length);
+			return Math.max(read, 0);
+		}
+		
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				if (!failed) {
+					// the reader may stop before the end of the body
+					byte[] buffer = new byte[65536];
+					while (read(buffer, 0, buffer.length) >= 0) {
+						// stored by read
+					}
+				}
+			} finally {
+				try {
+					out.close();
+				} finally {
+					in.close();
+				}
+				if (failed) {
+					tmp.delete();
+				}
+			}
+			if (failed) {
+				return;
+			}
+			
+			String actual = toHex(digest.digest());
+			if (md5 != null && !actual.equalsIgnoreCase(md5)) {
+				tmp.delete();
+				throw new IOException("Checksum mismatch for " + url + ": expected " + md5 + ", got " + actual);
+			}
+			moveInto(tmp, target);
+			Conversion.log("OK", "Download", "Stored " + url + " in " + target.getAbsolutePath());
+		}
+	}
+	
+	private static boolean isGzip(File file) throws IOException {
+		if (!file.exists() || file.length() < 2) {
+			return false;
+		}
+		InputStream in = new FileInputStream(file);
+		try {
+			return in.read() == (GZIPInputStream.GZIP_MAGIC & 0xff) && in.read() == (GZIPInputStream.GZIP_MAGIC >> 8);
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * @param file - a file, decompressed when it is gzip compressed
+	 * @return the hexadecimal md5 checksum of the (decompressed) contents
+	 * @throws IOException - when the file can not be read
+	 */
+	public static String md5(File file) throws IOException {
+		MessageDigest digest = md5Digest();
+		InputStream in = CompressedStreams.open(file);
+		try {
+			byte[] buffer = new byte[65536];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		return toHex(digest.digest());
+	}
+	
+	/**
+	 * @param value - a string
+	 * @return the hexadecimal md5 checksum of the utf-8 encoded string
+	 */
+	public static String md5(String value) {
+		try {
+			return toHex(md5Digest().digest(value.getBytes("UTF-8")));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static MessageDigest md5Digest() throws IOException {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+	
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * @return the number of connections that are currently idle in the pool
+	 */
+	public int getAvailableConnections() {
+		return connectionManager.getTotalStats().getAvailable();
+	}
+	
+	/**
+	 * Closes all pooled connections. The client can not be used afterwards. 
+	 */
+	public void close() throws IOException {
+		httpClient.close();
+	}
+}
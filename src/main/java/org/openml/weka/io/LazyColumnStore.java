@@ -0,0 +1,202 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.openml.weka.algorithm.ColumnStore;
+import org.openml.weka.algorithm.StoredInstance;
+
+import weka.core.Instances;
+
+/**
+ * Column store over a dense file in the {@link BinaryInstancesFormat}, which
+ * reads a column into the heap the first time one of its values is accessed.
+ * As the file stores the data column by column, a column is a single 
+ * contiguous read. For wide datasets of which only a few attributes are used,
+ * e.g., after attribute selection, only those columns are ever read. 
+ * 
+ * The file stays open until the store is closed, so columns can still be 
+ * read after the dataset cache evicted the file. 
+ */
+public class LazyColumnStore implements ColumnStore {
+	
+	private final int numRows;
+	private final int numColumns;
+	private final long dataOffset;
+	private final FileChannel channel;
+	private final double[] weights;
+	private final AtomicReferenceArray<double[]> columns;
+	
+	/**
+	 * Opens a dense binary instances file. Only the weights are read.
+	 * 
+	 * @param file - a file written by {@link BinaryInstancesFormat#write(Instances, File)}
+	 * @param header - the header of this file
+	 * @throws IOException - when the file could not be opened
+	 */
+	protected LazyColumnStore(File file, BinaryInstancesFormat.Header header) throws IOException {
+		if (header.isSparse()) {
+			throw new IOException("Sparse data can not be read lazily: " + file.getAbsolutePath());
+		}
+		numRows = header.getNumInstances();
+		numColumns = header.getStructure().numAttributes();
+		columns = new AtomicReferenceArray<double[]>(numColumns);
+		channel = new RandomAccessFile(file, "r").getChannel();
+		try {
+			if (header.hasWeights()) {
+				weights = readColumn(header.getDataOffset());
+				dataOffset = header.getDataOffset() + (long) numRows * 8;
+			} else {
+				weights = null;
+				dataOffset = header.getDataOffset();
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Opens a binary instances file as a dataset whose instances read their 
+	 * values from columns that are loaded on first access. The class index 
+	 * is not set.
+	 * 
+	 * @param file - a dense file written by {@link BinaryInstancesFormat#write(Instances, File)}
+	 * @return the dataset, consisting of {@link StoredInstance}s
+	 * @throws IOException - when the file could not be read, or is sparse
+	 */
+	public static Instances load(File file) throws IOException {
+		BinaryInstancesFormat.Header header;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			header = BinaryInstancesFormat.readHeader(in);
+		} finally {
+			in.close();
+		}
+		LazyColumnStore store = new LazyColumnStore(file, header);
+		Instances instances = header.getStructure();
+		for (int i = 0; i < store.numRows(); ++i) {
+			instances.add(new StoredInstance(store, i));
+		}
+		return instances;
+	}
+
+	@Override
+	public int numRows() {
+		return numRows;
+	}
+
+	@Override
+	public int numColumns() {
+		return numColumns;
+	}
+
+	@Override
+	public double value(int row, int column) {
+		double[] values = columns.get(column);
+		if (values == null) {
+			values = loadColumn(column);
+		}
+		return values[row];
+	}
+
+	@Override
+	public double weight(int row) {
+		return weights == null ? 1.0 : weights[row];
+	}
+	
+	/**
+	 * Closes the file. Columns that were not read yet can no longer be read.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	/**
+	 * @return whether the file is still open
+	 */
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+	
+	/**
+	 * @return the number of columns that have been read into the heap
+	 */
+	public int numLoadedColumns() {
+		int loaded = 0;
+		for (int j = 0; j < numColumns; ++j) {
+			if (columns.get(j) != null) {
+				++loaded;
+			}
+		}
+		return loaded;
+	}
+	
+	private synchronized double[] loadColumn(int column) {
+		double[] values = columns.get(column);
+		if (values == null) {
+			try {
+				values = readColumn(dataOffset + (long) column * numRows * 8);
+			} catch (IOException e) {
+				// the Instance interface does not allow checked exceptions
+				throw new UncheckedIOException("Could not read column " + column, e);
+			}
+			columns.set(column, values);
+		}
+		return values;
+	}
+	
+	private double[] readColumn(long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(numRows * 8);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of file at column offset " + position);
+			}
+		}
+		buffer.flip();
+		double[] values = new double[numRows];
+		buffer.asDoubleBuffer().get(values);
+		return values;
+	}
+}
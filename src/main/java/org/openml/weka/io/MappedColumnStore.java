@@ -0,0 +1,151 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.openml.weka.algorithm.ColumnStore;
+import org.openml.weka.algorithm.StoredInstance;
+
+import weka.core.Instances;
+
+/**
+ * Column store over a dense file in the {@link BinaryInstancesFormat}, which
+ * is memory-mapped rather than read. Only the pages that are actually touched
+ * are loaded, they live outside of the Java heap, and the operating system
+ * shares them between all processes that map the same file. 
+ * 
+ * The file is mapped in chunks of at most 1 GB, so there is no limit on the 
+ * size of the dataset other than the address space. 
+ */
+public class MappedColumnStore implements ColumnStore {
+	
+	private static final int CHUNK_BITS = 30;
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+	
+	private final int numRows;
+	private final int numColumns;
+	private final boolean hasWeights;
+	private final ByteBuffer[] chunks;
+	
+	/**
+	 * Maps a dense binary instances file. 
+	 * 
+	 * @param file - a file written by {@link BinaryInstancesFormat#write(Instances, File)}
+	 * @param header - the header of this file
+	 * @throws IOException - when the file could not be mapped
+	 */
+	protected MappedColumnStore(File file, BinaryInstancesFormat.Header header) throws IOException {
+		if (header.isSparse()) {
+			throw new IOException("Sparse data can not be memory-mapped: " + file.getAbsolutePath());
+		}
+		numRows = header.getNumInstances();
+		numColumns = header.getStructure().numAttributes();
+		hasWeights = header.hasWeights();
+		
+		long start = header.getDataOffset();
+		long length = (long) numRows * 8 * (numColumns + (hasWeights ? 1 : 0));
+		chunks = new ByteBuffer[(int) ((length + CHUNK_MASK) >> CHUNK_BITS)];
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			for (int i = 0; i < chunks.length; ++i) {
+				long position = ((long) i) << CHUNK_BITS;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start + position, Math.min(CHUNK_MASK + 1, length - position));
+			}
+		} finally {
+			// mappings stay valid after the channel is closed
+			raf.close();
+		}
+	}
+	
+	/**
+	 * Opens a binary instances file as a dataset whose instances read their 
+	 * values from the memory-mapped file. The class index is not set.
+	 * 
+	 * @param file - a dense file written by {@link BinaryInstancesFormat#write(Instances, File)}
+	 * @return the dataset, consisting of {@link StoredInstance}s
+	 * @throws IOException - when the file could not be read, or is sparse
+	 */
+	public static Instances load(File file) throws IOException {
+		BinaryInstancesFormat.Header header;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			header = BinaryInstancesFormat.readHeader(in);
+		} finally {
+			in.close();
+		}
+		MappedColumnStore store = new MappedColumnStore(file, header);
+		Instances instances = header.getStructure();
+		for (int i = 0; i < store.numRows(); ++i) {
+			instances.add(new StoredInstance(store, i));
+		}
+		return instances;
+	}
+
+	@Override
+	public int numRows() {
+		return numRows;
+	}
+
+	@Override
+	public int numColumns() {
+		return numColumns;
+	}
+
+	@Override
+	public double value(int row, int column) {
+		return get(((long) (hasWeights ? column + 1 : column) * numRows + row) * 8);
+	}
+
+	@Override
+	public double weight(int row) {
+		return hasWeights ? get((long) row * 8) : 1.0;
+	}
+	
+	@Override
+	public void close() {
+		// the values are released by the garbage collector
+	}
+	
+	private double get(long position) {
+		// values are 8 byte aligned relative to the start of the data, so never span two chunks
+		return chunks[(int) (position >>> CHUNK_BITS)].getDouble((int) (position & CHUNK_MASK));
+	}
+}
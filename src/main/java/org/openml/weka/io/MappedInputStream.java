@@ -0,0 +1,137 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a region of a local file through memory mapping, so the data is 
+ * read from the page cache without copying it through a stream buffer. 
+ * Regions larger than a gigabyte are mapped one segment at a time. 
+ */
+public class MappedInputStream extends InputStream {
+	
+	private static final long SEGMENT_SIZE = 1L << 30;
+	
+	private final FileChannel channel;
+	private final long end;
+	private long position;
+	private MappedByteBuffer buffer;
+	
+	/**
+	 * @param file - the file to read completely
+	 * @throws IOException - when the file can not be opened
+	 */
+	public MappedInputStream(File file) throws IOException {
+		this(file, 0, file.length());
+	}
+	
+	/**
+	 * @param file - the file to read
+	 * @param start - offset of the first byte to read
+	 * @param end - offset after the last byte to read
+	 * @throws IOException - when the file can not be opened
+	 */
+	public MappedInputStream(File file, long start, long end) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		this.channel = raf.getChannel();
+		this.position = start;
+		this.end = Math.min(end, channel.size());
+	}
+	
+	/**
+	 * @return whether there is data left, after mapping the next segment if needed
+	 */
+	private boolean fill() throws IOException {
+		if (buffer != null && buffer.hasRemaining()) {
+			return true;
+		}
+		if (position >= end) {
+			return false;
+		}
+		long size = Math.min(SEGMENT_SIZE, end - position);
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+		position += size;
+		return true;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return buffer.get() & 0xff;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!fill()) {
+			return -1;
+		}
+		int read = Math.min(len, buffer.remaining());
+		buffer.get(b, off, read);
+		return read;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		if (buffer != null) {
+			int inBuffer = (int) Math.min(n, buffer.remaining());
+			buffer.position(buffer.position() + inBuffer);
+			skipped = inBuffer;
+		}
+		long inFile = Math.max(0, Math.min(n - skipped, end - position));
+		position += inFile;
+		return skipped + inFile;
+	}
+	
+	@Override
+	public int available() throws IOException {
+		long remaining = end - position + (buffer == null ? 0 : buffer.remaining());
+		return (int) Math.min(Integer.MAX_VALUE, remaining);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		buffer = null;
+		channel.close();
+	}
+}
@@ -0,0 +1,290 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.openml.apiconnector.algorithms.Conversion;
+import org.openml.apiconnector.xstream.XstreamXmlMapping;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * Cache for metadata objects from the OpenML API, such as tasks, data set 
+ * descriptions, data features, estimation procedures and flows. Objects are kept in memory,
+ * and optionally stored as xml in a directory, so subsequent runs can use 
+ * them as well. The persistent entries of each server are kept in a separate
+ * subdirectory, as ids are only unique per server. Entries expire after a 
+ * time to live; an expired entry is removed when it is requested, and all
+ * expired entries are removed from memory when the maximum number of entries
+ * is reached, before the least recently used ones. Reading and writing the
+ * persistent tier happens outside of the lock, so lookups of other threads
+ * never wait for disk. The returned objects are shared, and should not be 
+ * modified. 
+ */
+public class MetadataCache {
+	
+	/** Default maximum number of entries held in memory **/
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+	
+	private final long ttlMillis;
+	private final int maxEntries;
+	private final File directory;
+	private final XStream xstream;
+	
+	/** Entries by key, in order of last use **/
+	private final Map<String, Entry> entries;
+	private long hits = 0;
+	private long misses = 0;
+	
+	private static class Entry {
+		private final Object value;
+		private final long created;
+		
+		private Entry(Object value, long created) {
+			this.value = value;
+			this.created = created;
+		}
+	}
+	
+	/**
+	 * @param ttlMillis - time to live of entries, in milliseconds
+	 * @param directory - directory of the persistent tier, null to only cache in memory
+	 */
+	public MetadataCache(long ttlMillis, File directory) {
+		this(null, ttlMillis, directory, DEFAULT_MAX_ENTRIES);
+	}
+	
+	/**
+	 * @param server - the url of the server the objects are obtained from, 
+	 *                 null when the objects of only one server are cached
+	 * @param ttlMillis - time to live of entries, in milliseconds
+	 * @param directory - directory of the persistent tier, null to only cache in memory
+	 * @param maxEntries - maximum number of entries held in memory
+	 */
+	public MetadataCache(String server, long ttlMillis, File directory, final int maxEntries) {
+		this.ttlMillis = ttlMillis;
+		this.maxEntries = maxEntries;
+		this.directory = directory == null || server == null ? directory : new File(directory, getDirectoryName(server));
+		this.xstream = directory == null ? null : XstreamXmlMapping.getInstance();
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+	
+	/**
+	 * @param server - the url of a server
+	 * @return the name of the subdirectory with the persistent entries of 
+	 *         the server, based on its host and port
+	 */
+	public static String getDirectoryName(String server) {
+		String name;
+		try {
+			URL url = new URL(server);
+			name = url.getHost() + (url.getPort() < 0 ? "" : "_" + url.getPort());
+		} catch (MalformedURLException e) {
+			name = server;
+		}
+		return name.replaceAll("[^A-Za-z0-9.-]", "_");
+	}
+	
+	/**
+	 * @return the directory of the persistent tier, null if there is none
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * Obtains an object from the cache, or from the loader when it is not 
+	 * cached or expired. The loader is invoked outside of any lock, so 
+	 * concurrent requests for the same object may load it twice. 
+	 * 
+	 * @param type - the type of object, used as part of the key
+	 * @param id - the id of the object
+	 * @param loader - obtains the object from the server
+	 * @return the object
+	 * @throws Exception - when the object is not cached and the loader fails
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(String type, int id, Callable<T> loader) throws Exception {
+		String key = type + "_" + id;
+		long now = System.currentTimeMillis();
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null && now - entry.created <= ttlMillis) {
+				++hits;
+				return (T) entry.value;
+			} else if (entry != null) {
+				entries.remove(key);
+			}
+		}
+		
+		Entry entry = readPersistent(key, now);
+		if (entry != null) {
+			synchronized (this) {
+				++hits;
+				put(key, entry, now);
+			}
+			return (T) entry.value;
+		}
+		synchronized (this) {
+			++misses;
+		}
+		
+		T value = loader.call();
+		writePersistent(key, value);
+		synchronized (this) {
+			put(key, new Entry(value, now), now);
+		}
+		return value;
+	}
+	
+	/**
+	 * @return the number of entries held in memory
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * @return the number of requests that were answered from the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * @return the number of requests that needed to be loaded from the server
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * Removes all entries from memory. The persistent tier is not touched.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+	
+	private void put(String key, Entry entry, long now) {
+		if (entries.size() >= maxEntries) {
+			// only when full, so the entries are not scanned on every miss
+			removeExpired(now);
+		}
+		entries.put(key, entry);
+	}
+	
+	private void removeExpired(long now) {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			if (now - iterator.next().created > ttlMillis) {
+				iterator.remove();
+			}
+		}
+	}
+	
+	private File getFile(String key) {
+		return new File(directory, key + ".xml");
+	}
+	
+	private Entry readPersistent(String key, long now) {
+		if (directory == null) {
+			return null;
+		}
+		File file = getFile(key);
+		if (!file.exists()) {
+			return null;
+		} else if (now - file.lastModified() > ttlMillis) {
+			file.delete();
+			return null;
+		}
+		try {
+			Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			try {
+				return new Entry(xstream.fromXML(reader), file.lastModified());
+			} finally {
+				reader.close();
+			}
+		} catch (Exception e) {
+			Conversion.log("WARNING", "Metadata Cache", "Could not read " + file.getAbsolutePath() + ": " + e.getMessage());
+			file.delete();
+			return null;
+		}
+	}
+	
+	private void writePersistent(String key, Object value) {
+		if (directory == null) {
+			return;
+		}
+		File file = getFile(key);
+		try {
+			directory.mkdirs();
+			// write to a temporary file first, so that concurrent readers never see partial entries
+			File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+			try {
+				Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+				try {
+					xstream.toXML(value, writer);
+				} finally {
+					writer.close();
+				}
+				if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+					throw new IOException("Could not move " + tmp.getAbsolutePath() + " to " + file.getAbsolutePath());
+				}
+			} finally {
+				tmp.delete();
+			}
+		} catch (Exception e) {
+			Conversion.log("WARNING", "Metadata Cache", "Could not store " + file.getAbsolutePath() + ": " + e.getMessage());
+		}
+	}
+}
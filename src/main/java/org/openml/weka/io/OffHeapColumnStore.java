@@ -0,0 +1,241 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.openml.weka.algorithm.ColumnStore;
+import org.openml.weka.algorithm.StoredInstance;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+/**
+ * Column store that holds the values of a dense dataset in direct byte 
+ * buffers, outside of the Java heap. The garbage collector does not scan or 
+ * move the values, so datasets of several gigabytes neither count against 
+ * the heap nor lengthen GC pauses. The total size is bounded by the JVM 
+ * option -XX:MaxDirectMemorySize (by default the maximum heap size). 
+ * 
+ * Values are stored column by column in chunks of at most 1 GB, with the 
+ * same layout as a dense file in the {@link BinaryInstancesFormat}. The 
+ * memory is released when the store is garbage collected. 
+ */
+public class OffHeapColumnStore implements ColumnStore {
+	
+	private static final int CHUNK_BITS = 30;
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+	
+	private final int numRows;
+	private final int numColumns;
+	private final boolean hasWeights;
+	private final ByteBuffer[] chunks;
+	
+	private OffHeapColumnStore(int numRows, int numColumns, boolean hasWeights) {
+		this.numRows = numRows;
+		this.numColumns = numColumns;
+		this.hasWeights = hasWeights;
+		
+		long length = (long) numRows * 8 * (numColumns + (hasWeights ? 1 : 0));
+		chunks = new ByteBuffer[(int) ((length + CHUNK_MASK) >> CHUNK_BITS)];
+		for (int i = 0; i < chunks.length; ++i) {
+			long position = ((long) i) << CHUNK_BITS;
+			chunks[i] = ByteBuffer.allocateDirect((int) Math.min(CHUNK_MASK + 1, length - position));
+		}
+	}
+	
+	/**
+	 * Copies the values of a dataset into off-heap memory. 
+	 * 
+	 * @param instances - the dataset
+	 */
+	public OffHeapColumnStore(Instances instances) {
+		this(instances.numInstances(), instances.numAttributes(), hasWeights(instances));
+		for (int i = 0; i < numRows; ++i) {
+			Instance instance = instances.instance(i);
+			if (hasWeights) {
+				put((long) i * 8, instance.weight());
+			}
+			for (int j = 0; j < numColumns; ++j) {
+				put(position(i, j), instance.value(j));
+			}
+		}
+	}
+	
+	/**
+	 * Reads a dense binary instances file into off-heap memory, without 
+	 * passing the values through the heap. 
+	 * 
+	 * @param file - a file written by {@link BinaryInstancesFormat#write(Instances, File)}
+	 * @param header - the header of this file
+	 * @throws IOException - when the file could not be read, or is sparse
+	 */
+	protected OffHeapColumnStore(File file, BinaryInstancesFormat.Header header) throws IOException {
+		this(requireDense(file, header).getNumInstances(), header.getStructure().numAttributes(), header.hasWeights());
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long position = header.getDataOffset();
+			for (ByteBuffer chunk : chunks) {
+				while (chunk.hasRemaining()) {
+					int read = channel.read(chunk, position);
+					if (read < 0) {
+						throw new EOFException("Unexpected end of file: " + file.getAbsolutePath());
+					}
+					position += read;
+				}
+			}
+		} finally {
+			raf.close();
+		}
+	}
+	
+	/**
+	 * Rejects sparse files before the constructor allocates direct memory, 
+	 * which is only released by the garbage collector. 
+	 */
+	private static BinaryInstancesFormat.Header requireDense(File file, BinaryInstancesFormat.Header header) throws IOException {
+		if (header.isSparse()) {
+			throw new IOException("Sparse data can not be stored off-heap: " + file.getAbsolutePath());
+		}
+		return header;
+	}
+	
+	/**
+	 * Opens a binary instances file as a dataset whose instances read their 
+	 * values from off-heap memory. The class index is not set.
+	 * 
+	 * @param file - a dense file written by {@link BinaryInstancesFormat#write(Instances, File)}
+	 * @return the dataset, consisting of {@link StoredInstance}s
+	 * @throws IOException - when the file could not be read, or is sparse
+	 */
+	public static Instances load(File file) throws IOException {
+		BinaryInstancesFormat.Header header;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			header = BinaryInstancesFormat.readHeader(in);
+		} finally {
+			in.close();
+		}
+		OffHeapColumnStore store = new OffHeapColumnStore(file, header);
+		Instances instances = header.getStructure();
+		for (int i = 0; i < store.numRows(); ++i) {
+			instances.add(new StoredInstance(store, i));
+		}
+		return instances;
+	}
+	
+	/**
+	 * Replaces the instances of a dense dataset by instances that read their 
+	 * values from off-heap memory. Sparse datasets are not changed. 
+	 * 
+	 * @param instances - the dataset, which is modified
+	 * @return the same dataset
+	 */
+	public static Instances store(Instances instances) {
+		if (instances.numInstances() == 0 || instances.instance(0) instanceof SparseInstance) {
+			return instances;
+		}
+		OffHeapColumnStore store = new OffHeapColumnStore(instances);
+		for (int i = 0; i < store.numRows(); ++i) {
+			instances.set(i, new StoredInstance(store, i));
+		}
+		return instances;
+	}
+	
+	private static boolean hasWeights(Instances instances) {
+		for (Instance instance : instances) {
+			if (instance.weight() != 1.0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int numRows() {
+		return numRows;
+	}
+
+	@Override
+	public int numColumns() {
+		return numColumns;
+	}
+
+	@Override
+	public double value(int row, int column) {
+		return get(position(row, column));
+	}
+
+	@Override
+	public double weight(int row) {
+		return hasWeights ? get((long) row * 8) : 1.0;
+	}
+	
+	@Override
+	public void close() {
+		// the values are released by the garbage collector
+	}
+	
+	/**
+	 * @return the number of bytes of off-heap memory held by this store
+	 */
+	public long sizeInBytes() {
+		long size = 0;
+		for (ByteBuffer chunk : chunks) {
+			size += chunk.capacity();
+		}
+		return size;
+	}
+	
+	private long position(int row, int column) {
+		return ((long) (hasWeights ? column + 1 : column) * numRows + row) * 8;
+	}
+	
+	private double get(long position) {
+		// values are 8 byte aligned, so never span two chunks
+		return chunks[(int) (position >>> CHUNK_BITS)].getDouble((int) (position & CHUNK_MASK));
+	}
+	
+	private void put(long position, double value) {
+		chunks[(int) (position >>> CHUNK_BITS)].putDouble((int) (position & CHUNK_MASK), value);
+	}
+}
@@ -1,17 +1,29 @@
 package org.openml.weka.io;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import org.openml.apiconnector.algorithms.Conversion;
 import org.openml.apiconnector.algorithms.TaskInformation;
+import org.openml.apiconnector.io.HttpCacheController;
 import org.openml.apiconnector.io.OpenmlConnector;
+import org.openml.apiconnector.settings.Settings;
+import org.openml.apiconnector.xml.DataFeature;
+import org.openml.apiconnector.xml.DataFeature.Feature;
 import org.openml.apiconnector.xml.DataSetDescription;
+import org.openml.apiconnector.xml.EstimationProcedure;
+import org.openml.apiconnector.xml.Flow;
 import org.openml.apiconnector.xml.Task;
+import org.openml.weka.algorithm.AttributeProjection;
+import org.openml.weka.algorithm.WekaConfig;
 
 import weka.core.Instances;
 
@@ -19,6 +31,16 @@ public class OpenmlWekaConnector extends OpenmlConnector {
 	
 	private static final long serialVersionUID = -2963321362833051576L;
 	
+	/** Client for all downloads of this connector, the shared default client if null **/
+	private transient DownloadClient downloadClient;
+	
+	/** Location of Parquet versions of datasets, with {id} as placeholder, null if disabled **/
+	private String parquetUrl;
+	
+	/** Cache of tasks, data set descriptions, estimation procedures and flows, null if disabled **/
+	private transient MetadataCache metadataCache;
+	private int arffParseThreads = 1;
+	private File spoolDirectory;
 
 	public OpenmlWekaConnector() {
 		super();
@@ -28,6 +50,127 @@ public class OpenmlWekaConnector extends OpenmlConnector {
 		super(url, api_key);
 	}
 	
+	public OpenmlWekaConnector(String api_key) {
+		super(api_key);
+	}
+	
+	/**
+	 * @param api_key - the api key
+	 * @param config - configuration for the download connection pool and timeouts
+	 */
+	public OpenmlWekaConnector(String api_key, WekaConfig config) {
+		super(api_key);
+		this.downloadClient = new DownloadClient(config);
+		this.parquetUrl = config.getParquetUrl();
+		this.metadataCache = createMetadataCache(config, openmlUrl);
+		this.arffParseThreads = config.getArffParseThreads();
+		this.spoolDirectory = config.getSpoolDownloads() ? new File(config.getSpoolDirectory()) : null;
+	}
+	
+	/**
+	 * @param url - the server url
+	 * @param api_key - the api key
+	 * @param config - configuration for the download connection pool and timeouts
+	 */
+	public OpenmlWekaConnector(String url, String api_key, WekaConfig config) {
+		super(url, api_key);
+		this.downloadClient = new DownloadClient(config);
+		this.parquetUrl = config.getParquetUrl();
+		this.metadataCache = createMetadataCache(config, openmlUrl);
+		this.arffParseThreads = config.getArffParseThreads();
+		this.spoolDirectory = config.getSpoolDownloads() ? new File(config.getSpoolDirectory()) : null;
+	}
+	
+	/**
+	 * @return the client that is used for all downloads of this connector
+	 */
+	public DownloadClient getDownloadClient() {
+		if (downloadClient == null) {
+			return DownloadClient.getDefault();
+		}
+		return downloadClient;
+	}
+	
+	private static MetadataCache createMetadataCache(WekaConfig config, String server) {
+		if (config.getMetadataCacheTtl() <= 0) {
+			return null;
+		}
+		File directory = config.getMetadataCachePersistent() ? new File(config.getMetadataCacheDirectory()) : null;
+		return new MetadataCache(server, config.getMetadataCacheTtl() * 1000, directory, config.getMetadataCacheSize());
+	}
+	
+	/**
+	 * @return the cache of metadata objects, or null if it is disabled
+	 */
+	public MetadataCache getMetadataCache() {
+		return metadataCache;
+	}
+	
+	@Override
+	public Task taskGet(final int task_id) throws Exception {
+		if (metadataCache == null) {
+			return super.taskGet(task_id);
+		}
+		return metadataCache.get("task", task_id, new Callable<Task>() {
+			@Override
+			public Task call() throws Exception {
+				return OpenmlWekaConnector.super.taskGet(task_id);
+			}
+		});
+	}
+	
+	@Override
+	public DataSetDescription dataGet(final int did) throws Exception {
+		if (metadataCache == null) {
+			return super.dataGet(did);
+		}
+		return metadataCache.get("data", did, new Callable<DataSetDescription>() {
+			@Override
+			public DataSetDescription call() throws Exception {
+				return OpenmlWekaConnector.super.dataGet(did);
+			}
+		});
+	}
+	
+	@Override
+	public DataFeature dataFeatures(final int did) throws Exception {
+		if (metadataCache == null) {
+			return super.dataFeatures(did);
+		}
+		return metadataCache.get("datafeatures", did, new Callable<DataFeature>() {
+			@Override
+			public DataFeature call() throws Exception {
+				return OpenmlWekaConnector.super.dataFeatures(did);
+			}
+		});
+	}
+	
+	@Override
+	public EstimationProcedure estimationProcedureGet(final int ep_id) throws Exception {
+		if (metadataCache == null) {
+			return super.estimationProcedureGet(ep_id);
+		}
+		return metadataCache.get("estimationprocedure", ep_id, new Callable<EstimationProcedure>() {
+			@Override
+			public EstimationProcedure call() throws Exception {
+				return OpenmlWekaConnector.super.estimationProcedureGet(ep_id);
+			}
+		});
+	}
+	
+	@Override
+	public Flow flowGet(final int flow_id) throws Exception {
+		if (metadataCache == null) {
+			return super.flowGet(flow_id);
+		}
+		return metadataCache.get("flow", flow_id, new Callable<Flow>() {
+			@Override
+			public Flow call() throws Exception {
+				return OpenmlWekaConnector.super.flowGet(flow_id);
+			}
+		});
+	}
+	
 	/**
 	 * Open a http connection to a openML dataset file and return a file reader.
 	 * The resulting file reader can be wrapped by a Weka ArffReader. Alternatively, it can be wrapped by a Weka
@@ -44,6 +187,209 @@ public class OpenmlWekaConnector extends OpenmlConnector {
 		return urlToStreamReader(url);
 	}
 	
+	/**
+	 * Obtains the dataset file in the OpenML cache, and downloads it there if 
+	 * it is not present yet. Interrupted downloads are resumed, and the file
+	 * is verified against the md5 checksum of the data set description before
+	 * it is moved into the cache. 
+	 * 
+	 * @param dsd - the data set description object, as downloaded from openml
+	 * @return the cached dataset file, either plain arff or gzip compressed
+	 * @throws Exception - when the download fails or the checksum does not match
+	 */
+	public File getDatasetFile(DataSetDescription dsd) throws Exception {
+		File cached = getCachedDatasetFile(dsd);
+		if (cached != null) {
+			return cached;
+		}
+		URL url = super.getOpenmlFileUrl(dsd.getFile_id(), dsd.getName() + ".arff");
+		return getDownloadClient().download(url, getDatasetCacheLocation(url, dsd), dsd.getMd5_checksum());
+	}
+	
+	private File getDatasetCacheLocation(URL url, DataSetDescription dsd) throws Exception {
+		return HttpCacheController.getCacheLocation(url, "datasets/" + dsd.getId() + "/dataset.arff");
+	}
+	
+	/**
+	 * @return the dataset file in the OpenML cache, either plain arff or gzip
+	 *         compressed, or null if it was not downloaded yet
+	 */
+	private File getCachedDatasetFile(DataSetDescription dsd) throws Exception {
+		URL url = super.getOpenmlFileUrl(dsd.getFile_id(), dsd.getName() + ".arff");
+		File cached = getDatasetCacheLocation(url, dsd);
+		File cachedCompressed = new File(cached.getAbsolutePath() + ".gz");
+		if (cached.exists()) {
+			return cached;
+		} else if (cachedCompressed.exists()) {
+			return cachedCompressed;
+		}
+		return null;
+	}
+	
+	/**
+	 * Obtains the Parquet version of a dataset from the OpenML cache. When it 
+	 * is not cached and a Parquet url is configured, it is downloaded first. 
+	 * The cached file is named after the file id of the dataset, so a dataset
+	 * that is uploaded again is downloaded again. 
+	 * 
+	 * @param dsd - the data set description object, as downloaded from openml
+	 * @return the Parquet file, or null if it is not available
+	 * @throws Exception - when the cache location can not be determined
+	 */
+	public File getParquetFile(DataSetDescription dsd) throws Exception {
+		URL url = super.getOpenmlFileUrl(dsd.getFile_id(), dsd.getName() + ".arff");
+		File cached = HttpCacheController.getCacheLocation(url, "datasets/" + dsd.getId() + "/dataset_" + dsd.getFile_id() + ".pq");
+		if (cached.exists()) {
+			return cached;
+		}
+		if (parquetUrl == null || !Settings.CACHE_ALLOWED) {
+			return null;
+		}
+		try {
+			// no checksum is known for the Parquet version
+			return getDownloadClient().download(new URL(parquetUrl.replace("{id}", "" + dsd.getId())), cached, null, false);
+		} catch (IOException e) {
+			Conversion.log("INFO", "Parquet", "No Parquet version of dataset " + dsd.getId() + " available: " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * The features are obtained through the metadata cache, when enabled. 
+	 * 
+	 * @param dsd - the data set description object, as downloaded from openml
+	 * @return for every nominal feature of the dataset, its values in order
+	 * @throws Exception - when the features can not be obtained
+	 */
+	public Map<String, String[]> getNominalValues(DataSetDescription dsd) throws Exception {
+		Map<String, String[]> nominalValues = new HashMap<String, String[]>();
+		for (Feature feature : dataFeatures(dsd.getId()).getFeatures()) {
+			if ("nominal".equals(feature.getDataType()) && feature.getNominalValues() != null) {
+				nominalValues.put(feature.getName(), feature.getNominalValues());
+			}
+		}
+		return nominalValues;
+	}
+	
+	/**
+	 * Obtains a dataset as Weka Instances object, without the ignore and row id
+	 * attributes. The attributes are removed from each row as soon as it is 
+	 * parsed, so the complete dataset is never held in memory twice. When 
+	 * caching is allowed and the file is cached already, either plain or as 
+	 * dataset.arff.gz, a plain file is parsed on the configured number of 
+	 * threads. A file that is not cached yet is parsed while it is being 
+	 * downloaded into the cache, and only kept when it matches the md5 
+	 * checksum; when that fails, it is downloaded through getDatasetFile, 
+	 * which resumes interrupted downloads, and parsed afterwards. Without 
+	 * caching, the file is parsed while it is being downloaded, or, when 
+	 * spooling is enabled, it is downloaded to a temporary file first. The 
+	 * download then does not wait for the parser, and the parser is not 
+	 * subject to the http read timeout. 
+	 * 
+	 * @param dsd - the data set description object, as downloaded from openml
+	 * @return the projected dataset, without class index
+	 * @throws Exception - Can be various things, but most notably a 
+	 * 					   parsing exception when the file is not
+	 *                     valid arff
+	 */
+	public Instances getDatasetInstances(DataSetDescription dsd) throws Exception {
+		List<String> removeAttributes = AttributeProjection.getRemovedAttributes(dsd);
+		URL url = super.getOpenmlFileUrl(dsd.getFile_id(), dsd.getName() + ".arff");
+		if (Settings.CACHE_ALLOWED) {
+			File cached = getCachedDatasetFile(dsd);
+			if (cached == null) {
+				return streamIntoCache(url, dsd, removeAttributes);
+			}
+			return ParallelArffLoader.load(cached, removeAttributes, arffParseThreads);
+		}
+		if (spoolDirectory != null) {
+			return spoolAndLoad(url, dsd, removeAttributes);
+		}
+		Reader reader = urlToStreamReader(url);
+		try {
+			return StreamingArffLoader.load(reader, removeAttributes);
+		} finally {
+			reader.close();
+		}
+	}
+	
+	private Instances streamIntoCache(URL url, DataSetDescription dsd, List<String> removeAttributes) throws Exception {
+		try {
+			Instances instances;
+			Reader reader = new BufferedReader(new InputStreamReader(getDownloadClient().openAndStore(url, getDatasetCacheLocation(url, dsd), dsd.getMd5_checksum())));
+			try {
+				instances = StreamingArffLoader.load(reader, removeAttributes);
+			} finally {
+				// completes and verifies the cached file
+				reader.close();
+			}
+			return instances;
+		} catch (IOException e) {
+			Conversion.log("WARNING", "Download", "Could not parse " + url + " while downloading it, downloading it first: " + e.getMessage());
+			return ParallelArffLoader.load(getDatasetFile(dsd), removeAttributes, arffParseThreads);
+		}
+	}
+	
+	private Instances spoolAndLoad(URL url, DataSetDescription dsd, List<String> removeAttributes) throws Exception {
+		spoolDirectory.mkdirs();
+		File target = File.createTempFile("dataset_" + dsd.getId() + "_", ".arff", spoolDirectory);
+		File spooled = null;
+		try {
+			spooled = getDownloadClient().download(url, target, dsd.getMd5_checksum());
+			return ParallelArffLoader.load(spooled, removeAttributes, arffParseThreads);
+		} finally {
+			deleteSpooled(target);
+			deleteSpooled(new File(target.getAbsolutePath() + ".part"));
+			deleteSpooled(new File(target.getAbsolutePath() + ".lock"));
+			if (spooled != null) {
+				deleteSpooled(spooled);
+			}
+		}
+	}
+	
+	private static void deleteSpooled(File file) {
+		if (file.exists() && !file.delete()) {
+			// e.g., a mapped file on Windows
+			file.deleteOnExit();
+		}
+	}
+	
+	/**
+	 * Obtains the splits file of a task through the pooled download client. 
+	 * When caching is allowed, the file is kept in the OpenML cache, either
+	 * plain or as datasplits.arff.gz. Otherwise it is downloaded to a 
+	 * temporary file that is deleted on exit. 
+	 * 
+	 * @param task - the downloaded task object, as downloaded from openml
+	 * @return the splits file, either plain arff or gzip compressed
+	 * @throws Exception - when the download fails
+	 */
+	@Override
+	public File taskSplitsGet(Task task) throws Exception {
+		URL url = TaskInformation.getEstimationProcedure(task).getData_splits_url();
+		if (!Settings.CACHE_ALLOWED) {
+			File target = File.createTempFile("datasplits_" + task.getTask_id() + "_", ".arff");
+			File downloaded = getDownloadClient().download(url, target, null);
+			downloaded.deleteOnExit();
+			for (String suffix : new String[] {SplitIndexFormat.INDEX_SUFFIX, SplitIndexFormat.TEST_INDEX_SUFFIX}) {
+				new File(downloaded.getPath() + suffix).deleteOnExit();
+			}
+			if (!downloaded.equals(target)) {
+				target.delete();
+			}
+			new File(target.getAbsolutePath() + ".lock").delete();
+			return downloaded;
+		}
+		File cached = HttpCacheController.getCacheLocation(url, "tasks/" + task.getTask_id() + "/datasplits.arff");
+		File cachedCompressed = new File(cached.getAbsolutePath() + ".gz");
+		if (cached.exists()) {
+			return cached;
+		} else if (cachedCompressed.exists()) {
+			return cachedCompressed;
+		}
+		return getDownloadClient().download(url, cached, null);
+	}
+	
 	/**
 	 * Open a http connection to a openML splits file and return a file reader.
 	 * The resulting file reader can be wrapped by a Weka ArffReader. Alternatively, it can be wrapped by a Weka
@@ -76,17 +422,7 @@ public class OpenmlWekaConnector extends OpenmlConnector {
 		return urlToStreamReader(url);
 	}
 
-	private static Reader urlToStreamReader(URL url) throws IOException {
-		// JvR: please note that not all redirects are being respected.
-		// Forwards that change protocol (such as http - https) are not respected (safety, documented)
-		// please ensure to only use https calls
-		HttpURLConnection urlConnection = (HttpURLConnection) (url.openConnection());
-		urlConnection.setInstanceFollowRedirects(true);
-		urlConnection.setConnectTimeout(1000);
-		urlConnection.setReadTimeout(30000);
-		urlConnection.connect();
-		int responseCode = urlConnection.getResponseCode();
-		Conversion.log("OK", "URL", "HTTP request status code [" + responseCode + "] URL [" + url + "]");
-		return new BufferedReader(new InputStreamReader(urlConnection.getInputStream()));
+	private Reader urlToStreamReader(URL url) throws IOException {
+		return new BufferedReader(new InputStreamReader(getDownloadClient().open(url)));
 	}
 }
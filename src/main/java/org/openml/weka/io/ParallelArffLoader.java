@@ -0,0 +1,295 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.openml.weka.algorithm.AttributeProjection;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.converters.ArffLoader.ArffReader;
+
+/**
+ * Parses a local ARFF file on multiple threads. The data section is split 
+ * into line-aligned chunks, which are parsed independently on a fork/join 
+ * pool, each by its own ArffReader (date formats and the nominal value 
+ * tables of a reader are not thread-safe). The chunks are merged in their 
+ * original order, so the result equals that of the StreamingArffLoader.
+ * Compressed and small files are parsed sequentially, as are files with 
+ * string or relational attributes, of which quoted values may span lines 
+ * and can therefore not be split at line ends. Plain files are read 
+ * through memory mapping. 
+ */
+public class ParallelArffLoader {
+	
+	/**
+	 * Files smaller than this are parsed sequentially
+	 */
+	public static final long DEFAULT_MIN_CHUNK_BYTES = 4 * 1024 * 1024;
+	
+	private static final int CHUNKS_PER_THREAD = 4;
+	
+	/**
+	 * @param file - a local ARFF file, plain or gzip compressed
+	 * @param removeAttributes - names of attributes that are dropped from the 
+	 *                           result, may be null
+	 * @param parallelism - the number of threads, 1 to parse sequentially
+	 * @return the parsed dataset, without the removed attributes and without
+	 *         class index
+	 * @throws IOException - when the ARFF can not be parsed or one of the 
+	 *                       attributes to remove does not exist
+	 */
+	public static Instances load(File file, Collection<String> removeAttributes, int parallelism) throws IOException {
+		return load(file, removeAttributes, parallelism, DEFAULT_MIN_CHUNK_BYTES);
+	}
+	
+	/**
+	 * @param file - a local ARFF file, plain or gzip compressed
+	 * @param removeAttributes - names of attributes that are dropped from the 
+	 *                           result, may be null
+	 * @param parallelism - the number of threads, 1 to parse sequentially
+	 * @param minChunkBytes - the minimal size of a chunk of the data section
+	 * @return the parsed dataset, without the removed attributes and without
+	 *         class index
+	 * @throws IOException - when the ARFF can not be parsed or one of the 
+	 *                       attributes to remove does not exist
+	 */
+	public static Instances load(File file, Collection<String> removeAttributes, int parallelism, long minChunkBytes) throws IOException {
+		long dataStart = -1;
+		if (parallelism > 1 && file.length() >= 2 * minChunkBytes && !CompressedStreams.isCompressed(file)) {
+			dataStart = findDataSection(file);
+		}
+		if (dataStart < 0) {
+			return loadSequential(file, removeAttributes);
+		}
+		
+		byte[] header = readHeader(file, dataStart);
+		Instances structure = new ArffReader(new InputStreamReader(new ByteArrayInputStream(header)), 0, false).getStructure();
+		for (int i = 0; i < structure.numAttributes(); ++i) {
+			// also when the attribute is removed, as its values are still in the file
+			if (structure.attribute(i).isString() || structure.attribute(i).isRelationValued()) {
+				return loadSequential(file, removeAttributes);
+			}
+		}
+		final AttributeProjection projection;
+		try {
+			projection = new AttributeProjection(structure, removeAttributes);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+		
+		List<Callable<Instances>> chunks = new ArrayList<Callable<Instances>>();
+		long[] boundaries = getChunkBoundaries(file, dataStart, parallelism * CHUNKS_PER_THREAD, minChunkBytes);
+		for (int i = 0; i + 1 < boundaries.length; ++i) {
+			chunks.add(new ChunkParser(file, header, boundaries[i], boundaries[i + 1], projection));
+		}
+		
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		List<Instances> parsed = new ArrayList<Instances>(chunks.size());
+		try {
+			for (Future<Instances> chunk : pool.invokeAll(chunks)) {
+				parsed.add(chunk.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while parsing " + file.getAbsolutePath(), e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause().getMessage(), e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		
+		int numInstances = 0;
+		for (Instances chunk : parsed) {
+			numInstances += chunk.numInstances();
+		}
+		Instances result = projection.createHeader(numInstances);
+		for (int i = 0; i < parsed.size(); ++i) {
+			Instances chunk = parsed.get(i);
+			for (int j = 0; j < chunk.numInstances(); ++j) {
+				result.add(chunk.instance(j));
+			}
+			// the chunk is not needed anymore
+			parsed.set(i, null);
+		}
+		result.compactify();
+		return result;
+	}
+	
+	private static Instances loadSequential(File file, Collection<String> removeAttributes) throws IOException {
+		InputStream in = CompressedStreams.isCompressed(file) ? CompressedStreams.open(file) : new MappedInputStream(file);
+		Reader reader = new BufferedReader(new InputStreamReader(in));
+		try {
+			return StreamingArffLoader.load(reader, removeAttributes);
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * @return the byte offset of the first line after the @data declaration, 
+	 *         or -1 if there is none, or if the declaration is followed by 
+	 *         data on the same line
+	 */
+	private static long findDataSection(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			long position = 0;
+			int b;
+			while ((b = in.read()) >= 0) {
+				++position;
+				if (b != '\n') {
+					line.write(b);
+					continue;
+				}
+				String trimmed = line.toString().trim();
+				line.reset();
+				if (trimmed.toLowerCase().startsWith("@data")) {
+					return trimmed.length() == "@data".length() ? position : -1;
+				}
+			}
+			return -1;
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static byte[] readHeader(File file, long dataStart) throws IOException {
+		byte[] header = new byte[(int) dataStart];
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			raf.readFully(header);
+		} finally {
+			raf.close();
+		}
+		return header;
+	}
+	
+	/**
+	 * @return the start offsets of all chunks, followed by the file size. 
+	 *         Every chunk starts at the beginning of a line. 
+	 */
+	private static long[] getChunkBoundaries(File file, long dataStart, int numChunks, long minChunkBytes) throws IOException {
+		long length = file.length();
+		long chunkSize = Math.max(minChunkBytes, (length - dataStart) / numChunks + 1);
+		List<Long> boundaries = new ArrayList<Long>();
+		boundaries.add(dataStart);
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			long position = dataStart + chunkSize;
+			while (position < length) {
+				// advance to the start of the next line
+				raf.seek(position - 1);
+				int b;
+				while ((b = raf.read()) >= 0 && b != '\n') {
+				}
+				position = raf.getFilePointer();
+				if (b < 0 || position >= length) {
+					break;
+				}
+				boundaries.add(position);
+				position += chunkSize;
+			}
+		} finally {
+			raf.close();
+		}
+		boundaries.add(length);
+		
+		long[] result = new long[boundaries.size()];
+		for (int i = 0; i < result.length; ++i) {
+			result[i] = boundaries.get(i);
+		}
+		return result;
+	}
+	
+	/**
+	 * Parses the rows between two offsets, prefixed with the header, into a 
+	 * dataset of its own. 
+	 */
+	private static class ChunkParser implements Callable<Instances> {
+		
+		private final File file;
+		private final byte[] header;
+		private final long start;
+		private final long end;
+		private final AttributeProjection projection;
+		
+		private ChunkParser(File file, byte[] header, long start, long end, AttributeProjection projection) {
+			this.file = file;
+			this.header = header;
+			this.start = start;
+			this.end = end;
+			this.projection = projection;
+		}
+		
+		@Override
+		public Instances call() throws IOException {
+			InputStream data = new MappedInputStream(file, start, end);
+			Reader reader = new BufferedReader(new InputStreamReader(new SequenceInputStream(new ByteArrayInputStream(header), data)));
+			try {
+				ArffReader arff = new ArffReader(reader, 0, false);
+				Instances structure = arff.getStructure();
+				Instances result = projection.createHeader(0);
+				Instance row;
+				while ((row = arff.readInstance(structure)) != null) {
+					result.add(projection.project(row, result));
+				}
+				return result;
+			} finally {
+				reader.close();
+			}
+		}
+	}
+}
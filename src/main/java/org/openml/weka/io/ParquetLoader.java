@@ -0,0 +1,506 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.openml.apiconnector.algorithms.Conversion;
+import org.openml.weka.algorithm.ValueDictionary;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Reads a flat Parquet file into a Weka Instances object. Columns of 
+ * removed attributes are never read from disk, nor decoded. Supports the 
+ * PLAIN and dictionary encodings, data pages of version 1 and 2, and 
+ * uncompressed, snappy and gzip compressed pages. Numeric and boolean 
+ * columns become numeric attributes. Byte array columns become nominal 
+ * attributes when nominal values are given for them, and string attributes 
+ * otherwise. Dictionary values are converted to attribute values only once. 
+ * 
+ * Experimental: only tested against files of the fixture generator in the 
+ * test resources, not against files written by pyarrow or parquet-mr. 
+ */
+public class ParquetLoader {
+	
+	private static final byte[] MAGIC = {'P', 'A', 'R', '1'};
+	
+	// physical types
+	private static final int TYPE_BOOLEAN = 0;
+	private static final int TYPE_INT32 = 1;
+	private static final int TYPE_INT64 = 2;
+	private static final int TYPE_FLOAT = 4;
+	private static final int TYPE_DOUBLE = 5;
+	private static final int TYPE_BYTE_ARRAY = 6;
+	
+	// repetition types
+	private static final int REPETITION_OPTIONAL = 1;
+	private static final int REPETITION_REPEATED = 2;
+	
+	// codecs
+	private static final int CODEC_UNCOMPRESSED = 0;
+	private static final int CODEC_SNAPPY = 1;
+	private static final int CODEC_GZIP = 2;
+	
+	// page types
+	private static final int PAGE_DATA = 0;
+	private static final int PAGE_DICTIONARY = 2;
+	private static final int PAGE_DATA_V2 = 3;
+	
+	// encodings
+	private static final int ENCODING_PLAIN = 0;
+	private static final int ENCODING_PLAIN_DICTIONARY = 2;
+	private static final int ENCODING_RLE_DICTIONARY = 8;
+	
+	/**
+	 * A leaf column of the Parquet schema, and the attribute it is read into.
+	 */
+	private static class Column {
+		private final String name;
+		private final int type;
+		private final boolean optional;
+		private final int index;
+		private Attribute attribute;
+		
+		private Column(String name, int type, boolean optional, int index) {
+			this.name = name;
+			this.type = type;
+			this.optional = optional;
+			this.index = index;
+		}
+	}
+	
+	/**
+	 * @param file - the Parquet file
+	 * @param removeAttributes - names of columns that are not read, may be null
+	 * @param nominalValues - for every nominal attribute, its values in order, may be null
+	 * @param relationName - the relation name of the result
+	 * @return the dataset, without the removed attributes and without class index
+	 * @throws IOException - when the file is not valid Parquet, or uses features
+	 *                       that are not supported
+	 */
+	public static Instances load(File file, Collection<String> removeAttributes, Map<String, String[]> nominalValues, String relationName) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			Map<Integer, Object> metadata = readFooter(raf);
+			
+			Set<String> removed = new HashSet<String>();
+			if (removeAttributes != null) {
+				removed.addAll(removeAttributes);
+			}
+			List<Column> columns = readSchema(ThriftCompactReader.getList(metadata, 2));
+			List<Column> kept = new ArrayList<Column>();
+			ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+			for (Column column : columns) {
+				if (removed.remove(column.name)) {
+					continue;
+				}
+				// nominal values are looked up in the value map of the (shared) attribute
+				column.attribute = createAttribute(column, nominalValues);
+				attributes.add(column.attribute);
+				kept.add(column);
+			}
+			if (!removed.isEmpty()) {
+				throw new IOException("Attribute " + removed.iterator().next() + " non-existant on dataset. ");
+			}
+			
+			long numRows = ThriftCompactReader.getLong(metadata, 3, 0);
+			Instances instances = new Instances(relationName, attributes, (int) numRows);
+			for (Object rowGroupObject : ThriftCompactReader.getList(metadata, 4)) {
+				@SuppressWarnings("unchecked")
+				Map<Integer, Object> rowGroup = (Map<Integer, Object>) rowGroupObject;
+				List<Object> chunks = ThriftCompactReader.getList(rowGroup, 1);
+				int rowGroupRows = (int) ThriftCompactReader.getLong(rowGroup, 3, 0);
+				
+				// decode column by column, only the kept ones
+				double[][] values = new double[kept.size()][];
+				for (int j = 0; j < kept.size(); ++j) {
+					@SuppressWarnings("unchecked")
+					Map<Integer, Object> chunk = (Map<Integer, Object>) chunks.get(kept.get(j).index);
+					values[j] = readColumnChunk(raf, ThriftCompactReader.getStruct(chunk, 3), kept.get(j), rowGroupRows);
+				}
+				for (int i = 0; i < rowGroupRows; ++i) {
+					double[] row = new double[kept.size()];
+					for (int j = 0; j < kept.size(); ++j) {
+						row[j] = values[j][i];
+					}
+					instances.add(new DenseInstance(1.0, row));
+				}
+			}
+			Conversion.log("OK", "Parquet", "Read " + instances.numInstances() + " rows and " + kept.size() + " of " + columns.size() + " columns from " + file.getName());
+			return instances;
+		} catch (RuntimeException e) {
+			// buffer under- and overflows on corrupt files
+			throw new IOException("Invalid Parquet file " + file.getAbsolutePath() + ": " + e, e);
+		} finally {
+			raf.close();
+		}
+	}
+	
+	private static Map<Integer, Object> readFooter(RandomAccessFile raf) throws IOException {
+		long length = raf.length();
+		if (length < 12) {
+			throw new IOException("Not a Parquet file");
+		}
+		byte[] tail = new byte[8];
+		raf.seek(length - 8);
+		raf.readFully(tail);
+		if (!Arrays.equals(Arrays.copyOfRange(tail, 4, 8), MAGIC)) {
+			throw new IOException("Not a Parquet file");
+		}
+		int footerLength = ByteBuffer.wrap(tail, 0, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+		if (footerLength <= 0 || footerLength > length - 12) {
+			throw new IOException("Invalid Parquet footer length: " + footerLength);
+		}
+		byte[] footer = new byte[footerLength];
+		raf.seek(length - 8 - footerLength);
+		raf.readFully(footer);
+		return ThriftCompactReader.readStruct(ByteBuffer.wrap(footer).order(ByteOrder.LITTLE_ENDIAN));
+	}
+	
+	private static List<Column> readSchema(List<Object> schema) throws IOException {
+		List<Column> columns = new ArrayList<Column>();
+		// the first element is the root, all others need to be leaves
+		for (int i = 1; i < schema.size(); ++i) {
+			@SuppressWarnings("unchecked")
+			Map<Integer, Object> element = (Map<Integer, Object>) schema.get(i);
+			String name = ThriftCompactReader.getString(element, 4);
+			if (ThriftCompactReader.getLong(element, 5, 0) > 0 || !element.containsKey(1)) {
+				throw new IOException("Nested Parquet column not supported: " + name);
+			}
+			int repetition = (int) ThriftCompactReader.getLong(element, 3, 0);
+			if (repetition == REPETITION_REPEATED) {
+				throw new IOException("Repeated Parquet column not supported: " + name);
+			}
+			columns.add(new Column(name, (int) ThriftCompactReader.getLong(element, 1, -1), repetition == REPETITION_OPTIONAL, i - 1));
+		}
+		return columns;
+	}
+	
+	private static Attribute createAttribute(Column column, Map<String, String[]> nominalValues) throws IOException {
+		String[] values = nominalValues == null ? null : nominalValues.get(column.name);
+		if (values != null) {
+			return ValueDictionary.getShared().nominal(column.name, Arrays.asList(values));
+		}
+		switch (column.type) {
+			case TYPE_BOOLEAN:
+			case TYPE_INT32:
+			case TYPE_INT64:
+			case TYPE_FLOAT:
+			case TYPE_DOUBLE:
+				return new Attribute(column.name);
+			case TYPE_BYTE_ARRAY:
+				return new Attribute(column.name, (List<String>) null);
+			default:
+				throw new IOException("Parquet type " + column.type + " of column " + column.name + " not supported");
+		}
+	}
+	
+	private static double[] readColumnChunk(RandomAccessFile raf, Map<Integer, Object> meta, Column column, int numRows) throws IOException {
+		int codec = (int) ThriftCompactReader.getLong(meta, 4, CODEC_UNCOMPRESSED);
+		long numValues = ThriftCompactReader.getLong(meta, 5, 0);
+		long compressedSize = ThriftCompactReader.getLong(meta, 7, 0);
+		long dataPageOffset = ThriftCompactReader.getLong(meta, 9, 0);
+		long dictionaryPageOffset = ThriftCompactReader.getLong(meta, 11, -1);
+		long start = dictionaryPageOffset > 0 && dictionaryPageOffset < dataPageOffset ? dictionaryPageOffset : dataPageOffset;
+		
+		byte[] bytes = new byte[(int) compressedSize];
+		raf.seek(start);
+		raf.readFully(bytes);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		
+		double[] result = new double[numRows];
+		double[] dictionary = null;
+		int filled = 0;
+		while (filled < numValues) {
+			Map<Integer, Object> header = ThriftCompactReader.readStruct(buffer);
+			int pageType = (int) ThriftCompactReader.getLong(header, 1, -1);
+			int uncompressedSize = (int) ThriftCompactReader.getLong(header, 2, 0);
+			int pageSize = (int) ThriftCompactReader.getLong(header, 3, 0);
+			int pageStart = buffer.position();
+			buffer.position(pageStart + pageSize);
+			
+			if (pageType == PAGE_DICTIONARY) {
+				Map<Integer, Object> dictionaryHeader = ThriftCompactReader.getStruct(header, 7);
+				int count = (int) ThriftCompactReader.getLong(dictionaryHeader, 1, 0);
+				ByteBuffer page = decompress(bytes, pageStart, pageSize, uncompressedSize, codec);
+				dictionary = new double[count];
+				decodePlain(page, column, dictionary, 0, count);
+			} else if (pageType == PAGE_DATA || pageType == PAGE_DATA_V2) {
+				int count;
+				int encoding;
+				boolean[] defined = null;
+				ByteBuffer page;
+				if (pageType == PAGE_DATA) {
+					Map<Integer, Object> dataHeader = ThriftCompactReader.getStruct(header, 5);
+					count = (int) ThriftCompactReader.getLong(dataHeader, 1, 0);
+					encoding = (int) ThriftCompactReader.getLong(dataHeader, 2, ENCODING_PLAIN);
+					page = decompress(bytes, pageStart, pageSize, uncompressedSize, codec);
+					if (column.optional) {
+						// definition levels, prefixed by their length
+						int levelsLength = page.getInt();
+						defined = decodeLevels(page, page.position(), levelsLength, count);
+						page.position(page.position() + levelsLength);
+					}
+				} else {
+					Map<Integer, Object> dataHeader = ThriftCompactReader.getStruct(header, 8);
+					count = (int) ThriftCompactReader.getLong(dataHeader, 1, 0);
+					encoding = (int) ThriftCompactReader.getLong(dataHeader, 4, ENCODING_PLAIN);
+					int definitionLength = (int) ThriftCompactReader.getLong(dataHeader, 5, 0);
+					int repetitionLength = (int) ThriftCompactReader.getLong(dataHeader, 6, 0);
+					Object compressed = dataHeader.get(7);
+					// levels are never compressed in version 2 pages
+					int levelsStart = pageStart + repetitionLength;
+					if (column.optional) {
+						defined = decodeLevels(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN), levelsStart, definitionLength, count);
+					}
+					int valuesStart = levelsStart + definitionLength;
+					int valuesLength = pageSize - repetitionLength - definitionLength;
+					page = decompress(bytes, valuesStart, valuesLength, uncompressedSize - repetitionLength - definitionLength, 
+							compressed == null || (Boolean) compressed ? codec : CODEC_UNCOMPRESSED);
+				}
+				if (filled + count > numRows) {
+					throw new IOException("Column " + column.name + " has more values than rows");
+				}
+				
+				int nonNull = count;
+				if (defined != null) {
+					nonNull = 0;
+					for (boolean d : defined) {
+						nonNull += d ? 1 : 0;
+					}
+				}
+				double[] decoded = new double[nonNull];
+				if (encoding == ENCODING_PLAIN) {
+					decodePlain(page, column, decoded, 0, nonNull);
+				} else if (encoding == ENCODING_PLAIN_DICTIONARY || encoding == ENCODING_RLE_DICTIONARY) {
+					if (dictionary == null) {
+						throw new IOException("Dictionary page missing for column " + column.name);
+					}
+					int bitWidth = page.get() & 0xff;
+					int[] indices = decodeHybrid(page, page.position(), page.limit(), bitWidth, nonNull);
+					for (int i = 0; i < nonNull; ++i) {
+						decoded[i] = dictionary[indices[i]];
+					}
+				} else {
+					throw new IOException("Parquet encoding " + encoding + " of column " + column.name + " not supported");
+				}
+				
+				for (int i = 0, k = 0; i < count; ++i) {
+					result[filled + i] = defined == null || defined[i] ? decoded[k++] : Utils.missingValue();
+				}
+				filled += count;
+			}
+			// index pages and unknown pages are skipped
+		}
+		return result;
+	}
+	
+	private static ByteBuffer decompress(byte[] bytes, int offset, int length, int uncompressedLength, int codec) throws IOException {
+		byte[] result;
+		switch (codec) {
+			case CODEC_UNCOMPRESSED:
+				return ByteBuffer.wrap(bytes, offset, length).slice().order(ByteOrder.LITTLE_ENDIAN);
+			case CODEC_SNAPPY:
+				result = SnappyDecompressor.decompress(bytes, offset, length);
+				break;
+			case CODEC_GZIP: {
+				InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes, offset, length));
+				ByteArrayOutputStream out = new ByteArrayOutputStream(uncompressedLength);
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) > 0) {
+					out.write(buffer, 0, read);
+				}
+				in.close();
+				result = out.toByteArray();
+				break;
+			}
+			default:
+				throw new IOException("Parquet compression codec " + codec + " not supported");
+		}
+		if (result.length != uncompressedLength) {
+			throw new IOException("Invalid Parquet page: expected " + uncompressedLength + " bytes, got " + result.length);
+		}
+		return ByteBuffer.wrap(result).order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	private static boolean[] decodeLevels(ByteBuffer buffer, int offset, int length, int count) throws IOException {
+		int[] levels = decodeHybrid(buffer, offset, offset + length, 1, count);
+		boolean[] defined = new boolean[count];
+		for (int i = 0; i < count; ++i) {
+			defined[i] = levels[i] == 1;
+		}
+		return defined;
+	}
+	
+	/**
+	 * Decodes the RLE / bit-packing hybrid encoding. 
+	 */
+	private static int[] decodeHybrid(ByteBuffer buffer, int offset, int end, int bitWidth, int count) throws IOException {
+		int[] result = new int[count];
+		int pos = offset;
+		int n = 0;
+		int byteWidth = (bitWidth + 7) / 8;
+		while (n < count) {
+			if (pos >= end) {
+				throw new IOException("Unexpected end of RLE data");
+			}
+			// varint header
+			int header = 0;
+			for (int shift = 0; ; shift += 7) {
+				int b = buffer.get(pos++) & 0xff;
+				header |= (b & 0x7f) << shift;
+				if ((b & 0x80) == 0) {
+					break;
+				}
+			}
+			if ((header & 1) == 0) {
+				// run of a single value
+				int runLength = header >>> 1;
+				int value = 0;
+				for (int i = 0; i < byteWidth; ++i) {
+					value |= (buffer.get(pos++) & 0xff) << (8 * i);
+				}
+				for (int i = 0; i < runLength && n < count; ++i) {
+					result[n++] = value;
+				}
+			} else {
+				// groups of 8 bit-packed values, least significant bit first
+				int numValues = (header >>> 1) * 8;
+				long bits = 0;
+				int available = 0;
+				int mask = bitWidth == 32 ? -1 : (1 << bitWidth) - 1;
+				for (int i = 0; i < numValues; ++i) {
+					while (available < bitWidth) {
+						bits |= (long) (buffer.get(pos++) & 0xff) << available;
+						available += 8;
+					}
+					if (n < count) {
+						result[n++] = (int) (bits & mask);
+					}
+					bits >>>= bitWidth;
+					available -= bitWidth;
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Decodes plain encoded values into attribute values. 
+	 */
+	private static void decodePlain(ByteBuffer buffer, Column column, double[] target, int offset, int count) throws IOException {
+		switch (column.type) {
+			case TYPE_BOOLEAN: {
+				int start = buffer.position();
+				for (int i = 0; i < count; ++i) {
+					int bit = (buffer.get(start + i / 8) >>> (i % 8)) & 1;
+					target[offset + i] = toAttributeValue(column, bit, bit == 1 ? "true" : "false");
+				}
+				buffer.position(start + (count + 7) / 8);
+				break;
+			}
+			case TYPE_INT32:
+				for (int i = 0; i < count; ++i) {
+					int value = buffer.getInt();
+					target[offset + i] = toAttributeValue(column, value, null);
+				}
+				break;
+			case TYPE_INT64:
+				for (int i = 0; i < count; ++i) {
+					long value = buffer.getLong();
+					target[offset + i] = toAttributeValue(column, value, null);
+				}
+				break;
+			case TYPE_FLOAT:
+				for (int i = 0; i < count; ++i) {
+					target[offset + i] = toAttributeValue(column, buffer.getFloat(), null);
+				}
+				break;
+			case TYPE_DOUBLE:
+				for (int i = 0; i < count; ++i) {
+					target[offset + i] = toAttributeValue(column, buffer.getDouble(), null);
+				}
+				break;
+			case TYPE_BYTE_ARRAY:
+				for (int i = 0; i < count; ++i) {
+					byte[] bytes = new byte[buffer.getInt()];
+					buffer.get(bytes);
+					target[offset + i] = toAttributeValue(column, Double.NaN, new String(bytes, "UTF-8"));
+				}
+				break;
+			default:
+				throw new IOException("Parquet type " + column.type + " of column " + column.name + " not supported");
+		}
+	}
+	
+	private static double toAttributeValue(Column column, double number, String string) throws IOException {
+		Attribute attribute = column.attribute;
+		if (attribute.isNumeric()) {
+			if (string != null && column.type == TYPE_BYTE_ARRAY) {
+				throw new IOException("Column " + column.name + " contains text, but is declared numeric");
+			}
+			return number;
+		}
+		if (string == null) {
+			// integer coded nominal values
+			string = number == Math.rint(number) ? Long.toString((long) number) : Double.toString(number);
+		}
+		if (attribute.isString()) {
+			return attribute.addStringValue(ValueDictionary.getShared().intern(string));
+		}
+		int index = attribute.indexOfValue(string);
+		if (index < 0) {
+			throw new IOException("Value " + string + " not declared for nominal attribute " + column.name);
+		}
+		return index;
+	}
+}
@@ -0,0 +1,129 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.IOException;
+
+/**
+ * Decompressor for the raw Snappy block format, which Parquet uses for 
+ * compressed pages. 
+ */
+class SnappyDecompressor {
+	
+	/**
+	 * @param input - the compressed data
+	 * @param offset - position of the compressed block in input
+	 * @param length - length of the compressed block
+	 * @return the decompressed data
+	 * @throws IOException - when the data is not a valid snappy block
+	 */
+	static byte[] decompress(byte[] input, int offset, int length) throws IOException {
+		int end = offset + length;
+		int pos = offset;
+		
+		// preamble: uncompressed length as varint
+		long uncompressedLength = 0;
+		for (int shift = 0; ; shift += 7) {
+			if (pos >= end || shift > 28) {
+				throw new IOException("Invalid snappy preamble");
+			}
+			int b = input[pos++] & 0xff;
+			uncompressedLength |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+		}
+		
+		byte[] output = new byte[(int) uncompressedLength];
+		int out = 0;
+		try {
+			while (pos < end) {
+				int tag = input[pos++] & 0xff;
+				switch (tag & 0x03) {
+					case 0: {
+						// literal, length is stored in the tag or in the next 1-4 bytes
+						int literalLength = tag >>> 2;
+						if (literalLength >= 60) {
+							int bytes = literalLength - 59;
+							literalLength = 0;
+							for (int i = 0; i < bytes; ++i) {
+								literalLength |= (input[pos++] & 0xff) << (8 * i);
+							}
+						}
+						literalLength += 1;
+						System.arraycopy(input, pos, output, out, literalLength);
+						pos += literalLength;
+						out += literalLength;
+						break;
+					}
+					case 1: {
+						int copyLength = ((tag >>> 2) & 0x07) + 4;
+						int copyOffset = ((tag >>> 5) << 8) | (input[pos++] & 0xff);
+						out = copy(output, out, copyOffset, copyLength);
+						break;
+					}
+					case 2: {
+						int copyLength = (tag >>> 2) + 1;
+						int copyOffset = (input[pos] & 0xff) | ((input[pos + 1] & 0xff) << 8);
+						pos += 2;
+						out = copy(output, out, copyOffset, copyLength);
+						break;
+					}
+					default: {
+						int copyLength = (tag >>> 2) + 1;
+						int copyOffset = (input[pos] & 0xff) | ((input[pos + 1] & 0xff) << 8) | ((input[pos + 2] & 0xff) << 16) | ((input[pos + 3] & 0xff) << 24);
+						pos += 4;
+						out = copy(output, out, copyOffset, copyLength);
+						break;
+					}
+				}
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Invalid snappy data", e);
+		}
+		if (out != output.length) {
+			throw new IOException("Invalid snappy data: expected " + output.length + " bytes, got " + out);
+		}
+		return output;
+	}
+	
+	private static int copy(byte[] output, int out, int offset, int length) throws IOException {
+		if (offset <= 0 || offset > out) {
+			throw new IOException("Invalid snappy copy offset: " + offset);
+		}
+		// byte by byte, as source and destination may overlap
+		for (int i = 0; i < length; ++i) {
+			output[out + i] = output[out - offset + i];
+		}
+		return out + length;
+	}
+}
@@ -0,0 +1,385 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openml.apiconnector.algorithms.Conversion;
+import org.openml.weka.algorithm.SplitIndex;
+
+/**
+ * Reads the splits file of a task directly into a SplitIndex. The file is 
+ * read line by line, and only the type, rowid, repeat, fold and sample 
+ * columns are decoded, without creating Instances. Parsed splits are stored
+ * next to the splits file in a binary form, which is used on subsequent 
+ * loads:
+ * <pre>
+ * int     magic, int version
+ * int     repeats, int folds, int samples
+ * int     number of rows if the training sets are implicit, otherwise -1
+ * per repeat, fold and sample: int number of train rows, int[] train rows
+ *                              (only if explicit), 
+ *                              int number of test rows, int[] test rows
+ * </pre>
+ * For leave-one-out, only the test sets are kept, see SplitIndex.
+ */
+public class SplitIndexFormat {
+	
+	public static final int MAGIC = 0x4F4D4C53; // "OMLS"
+	public static final int VERSION = 2;
+	
+	/**
+	 * Suffix of the binary form, appended to the name of the splits file
+	 */
+	public static final String INDEX_SUFFIX = ".idx";
+	
+	/**
+	 * Suffix of the binary form that only contains the test sets
+	 */
+	public static final String TEST_INDEX_SUFFIX = ".test.idx";
+	
+	private static final String[] COLUMNS = {"type", "rowid", "repeat", "fold", "sample"};
+	private static final int TYPE = 0;
+	private static final int ROWID = 1;
+	private static final int REPEAT = 2;
+	private static final int FOLD = 3;
+	private static final int SAMPLE = 4;
+	
+	/**
+	 * Obtains the index of a splits file, from its binary form if that is 
+	 * present and up to date, otherwise by parsing the file. In the latter 
+	 * case the binary form is written, if the directory is writable. 
+	 * 
+	 * @param splitsFile - the splits file, plain or gzip compressed
+	 * @return the index of the splits
+	 * @throws IOException - when the splits file can not be read or parsed
+	 */
+	public static SplitIndex load(File splitsFile) throws IOException {
+		return load(splitsFile, false);
+	}
+	
+	/**
+	 * As load(File), but optionally only keeps the test sets. 
+	 * 
+	 * @param splitsFile - the splits file, plain or gzip compressed
+	 * @param testOnly - whether the training sets are derived from the test
+	 *                   sets rather than stored, e.g. for leave-one-out
+	 * @return the index of the splits
+	 * @throws IOException - when the splits file can not be read or parsed
+	 */
+	public static SplitIndex load(File splitsFile, boolean testOnly) throws IOException {
+		File indexFile = new File(splitsFile.getPath() + (testOnly ? TEST_INDEX_SUFFIX : INDEX_SUFFIX));
+		if (indexFile.exists() && indexFile.lastModified() >= splitsFile.lastModified()) {
+			try {
+				return read(indexFile);
+			} catch (IOException e) {
+				Conversion.log("WARNING", "Splits", "Could not read " + indexFile.getAbsolutePath() + ", parsing splits file: " + e.getMessage());
+			}
+		}
+		
+		SplitIndex index;
+		Reader reader = new BufferedReader(new InputStreamReader(CompressedStreams.open(splitsFile)));
+		try {
+			index = parse(reader, testOnly);
+		} finally {
+			reader.close();
+		}
+		
+		File tmp = new File(indexFile.getPath() + ".tmp");
+		try {
+			write(index, tmp);
+			Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			tmp.delete();
+			Conversion.log("WARNING", "Splits", "Could not store " + indexFile.getAbsolutePath() + ": " + e.getMessage());
+		}
+		return index;
+	}
+	
+	/**
+	 * Parses a splits file in ARFF format. 
+	 * 
+	 * @param reader - reader positioned at the start of the splits file
+	 * @return the index of the splits
+	 * @throws IOException - when the file can not be read, or is not a 
+	 *                       (dense) splits file
+	 */
+	public static SplitIndex parse(Reader reader) throws IOException {
+		return parse(reader, false);
+	}
+	
+	/**
+	 * As parse(Reader), but optionally only keeps the test sets. 
+	 * 
+	 * @param reader - reader positioned at the start of the splits file
+	 * @param testOnly - whether the training sets are derived from the test
+	 *                   sets rather than stored
+	 * @return the index of the splits
+	 * @throws IOException - when the file can not be read, or is not a 
+	 *                       (dense) splits file
+	 */
+	public static SplitIndex parse(Reader reader, boolean testOnly) throws IOException {
+		BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+		// position of each of the columns, -1 if absent
+		int[] columns = new int[COLUMNS.length];
+		int numAttributes = 0;
+		Map<String, Integer> names = new HashMap<String, Integer>();
+		for (int i = 0; i < COLUMNS.length; ++i) {
+			names.put(COLUMNS[i], i);
+			columns[i] = -1;
+		}
+		
+		String line;
+		int lineNumber = 0;
+		boolean data = false;
+		while (!data && (line = in.readLine()) != null) {
+			++lineNumber;
+			String trimmed = line.trim();
+			String lower = trimmed.toLowerCase();
+			if (lower.startsWith("@attribute")) {
+				String name = getAttributeName(trimmed.substring("@attribute".length()).trim());
+				Integer column = names.get(name);
+				if (column != null) {
+					columns[column] = numAttributes;
+				}
+				++numAttributes;
+			} else if (lower.startsWith("@data")) {
+				data = true;
+			}
+		}
+		if (!data || columns[TYPE] < 0 || columns[ROWID] < 0) {
+			throw new IOException("Not a splits file: no data section, or no type and rowid attributes");
+		}
+		
+		// value of each of the columns, per field
+		int[] fieldColumn = new int[numAttributes];
+		for (int i = 0; i < numAttributes; ++i) {
+			fieldColumn[i] = -1;
+		}
+		for (int i = 0; i < COLUMNS.length; ++i) {
+			if (columns[i] >= 0) {
+				fieldColumn[columns[i]] = i;
+			}
+		}
+		
+		SplitIndex.Builder builder = new SplitIndex.Builder(testOnly);
+		int[] values = new int[COLUMNS.length];
+		while ((line = in.readLine()) != null) {
+			++lineNumber;
+			int start = 0;
+			int end = line.length();
+			while (start < end && Character.isWhitespace(line.charAt(start))) {
+				++start;
+			}
+			if (start == end || line.charAt(start) == '%') {
+				continue;
+			}
+			if (line.charAt(start) == '{') {
+				throw new IOException("Sparse splits files are not supported, line " + lineNumber);
+			}
+			
+			boolean train = false;
+			int field = 0;
+			while (start <= end && field < numAttributes) {
+				int comma = line.indexOf(',', start);
+				int fieldEnd = comma < 0 ? end : comma;
+				int column = fieldColumn[field];
+				if (column == TYPE) {
+					train = isTrain(line, start, fieldEnd);
+				} else if (column >= 0) {
+					values[column] = parseInt(line, start, fieldEnd, lineNumber);
+				}
+				++field;
+				start = fieldEnd + 1;
+			}
+			if (field != numAttributes) {
+				throw new IOException("Expected " + numAttributes + " values, found " + field + ", line " + lineNumber);
+			}
+			try {
+				builder.add(
+					columns[REPEAT] < 0 ? 0 : values[REPEAT], 
+					columns[FOLD] < 0 ? 0 : values[FOLD], 
+					columns[SAMPLE] < 0 ? 0 : values[SAMPLE], 
+					train, values[ROWID]);
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage() + ", line " + lineNumber, e);
+			}
+		}
+		return builder.build();
+	}
+	
+	/**
+	 * @param index - the index to store
+	 * @param file - the destination file
+	 * @throws IOException - when the file can not be written
+	 */
+	public static void write(SplitIndex index, File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(index.getRepeats());
+			out.writeInt(index.getFolds());
+			out.writeInt(index.getSamples());
+			out.writeInt(index.getNumRows());
+			for (int r = 0; r < index.getRepeats(); ++r) {
+				for (int f = 0; f < index.getFolds(); ++f) {
+					for (int s = 0; s < index.getSamples(); ++s) {
+						if (!index.isTrainingImplicit()) {
+							writeRows(out, index.getRows(r, f, s, true));
+						}
+						writeRows(out, index.getRows(r, f, s, false));
+					}
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * @param file - a file that was written with {@link #write(SplitIndex, File)}
+	 * @return the index of the splits
+	 * @throws IOException - when the file can not be read or is not in the 
+	 *                       expected format
+	 */
+	public static SplitIndex read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a binary splits file");
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported binary splits version: " + version);
+			}
+			int[][][][][] rows = new int[in.readInt()][in.readInt()][in.readInt()][2][];
+			int numRows = in.readInt();
+			for (int[][][][] repeat : rows) {
+				for (int[][][] fold : repeat) {
+					for (int[][] sample : fold) {
+						if (numRows < 0) {
+							sample[0] = readRows(in);
+						}
+						sample[1] = readRows(in);
+					}
+				}
+			}
+			return new SplitIndex(rows, numRows);
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static void writeRows(DataOutputStream out, int[] rows) throws IOException {
+		out.writeInt(rows.length);
+		for (int row : rows) {
+			out.writeInt(row);
+		}
+	}
+	
+	private static int[] readRows(DataInputStream in) throws IOException {
+		int[] rows = new int[in.readInt()];
+		for (int i = 0; i < rows.length; ++i) {
+			rows[i] = in.readInt();
+		}
+		return rows;
+	}
+	
+	private static String getAttributeName(String declaration) {
+		if (declaration.startsWith("'") || declaration.startsWith("\"")) {
+			int end = declaration.indexOf(declaration.charAt(0), 1);
+			return end < 0 ? declaration.substring(1) : declaration.substring(1, end);
+		}
+		int end = 0;
+		while (end < declaration.length() && !Character.isWhitespace(declaration.charAt(end))) {
+			++end;
+		}
+		return declaration.substring(0, end);
+	}
+	
+	/**
+	 * @return whether the (possibly quoted) value between start and end is TRAIN
+	 */
+	private static boolean isTrain(String line, int start, int end) {
+		while (start < end && (Character.isWhitespace(line.charAt(start)) || line.charAt(start) == '\'' || line.charAt(start) == '"')) {
+			++start;
+		}
+		while (end > start && (Character.isWhitespace(line.charAt(end - 1)) || line.charAt(end - 1) == '\'' || line.charAt(end - 1) == '"')) {
+			--end;
+		}
+		return end - start == 5 && line.regionMatches(start, "TRAIN", 0, 5);
+	}
+	
+	/**
+	 * Parses an integer value, which may be written as a floating point number
+	 */
+	private static int parseInt(String line, int start, int end, int lineNumber) throws IOException {
+		while (start < end && Character.isWhitespace(line.charAt(start))) {
+			++start;
+		}
+		while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+			--end;
+		}
+		if (start == end) {
+			throw new IOException("Missing value, line " + lineNumber);
+		}
+		long value = 0;
+		for (int i = start; i < end; ++i) {
+			char c = line.charAt(i);
+			if (c < '0' || c > '9' || value > Integer.MAX_VALUE) {
+				// e.g. 1.0 or 1E1
+				try {
+					return (int) Double.parseDouble(line.substring(start, end));
+				} catch (NumberFormatException e) {
+					throw new IOException("Not a number: " + line.substring(start, end) + ", line " + lineNumber);
+				}
+			}
+			value = value * 10 + (c - '0');
+		}
+		return (int) value;
+	}
+}
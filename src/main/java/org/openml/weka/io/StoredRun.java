@@ -0,0 +1,302 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openml.apiconnector.io.OpenmlConnector;
+import org.openml.apiconnector.xml.EvaluationScore;
+import org.openml.apiconnector.xml.Flow;
+import org.openml.apiconnector.xml.Run;
+import org.openml.apiconnector.xml.Run.Parameter_setting;
+import org.openml.apiconnector.xstream.XstreamXmlMapping;
+import org.openml.weka.algorithm.WekaAlgorithm;
+
+import com.thoughtworks.xstream.XStream;
+
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * A run that was executed without network access (e.g., on a task bundle), 
+ * stored in a directory so it can be uploaded later. As the flow id can 
+ * only be obtained from the server, the run refers to its flow by the flow
+ * description; the flow id and the parameter settings are resolved on 
+ * upload. 
+ * 
+ * Layout of a stored run directory:
+ * <pre>
+ * description.xml   the run description, without flow id
+ * flow.xml          the flow description of the classifier
+ * &lt;name&gt;.arff       the output files, e.g., predictions.arff
+ * run_id.txt        the run id on the server, once the run is uploaded
+ * generated_splits  present if the run used locally generated splits, 
+ *                   which prevents it from being uploaded
+ * </pre>
+ * The description is written last, so a run is only recognized as such 
+ * after it was written completely. 
+ */
+public class StoredRun {
+	
+	public static final String DESCRIPTION_FILE = "description.xml";
+	public static final String FLOW_FILE = "flow.xml";
+	public static final String RUN_ID_FILE = "run_id.txt";
+	public static final String GENERATED_SPLITS_FILE = "generated_splits";
+	
+	private final File directory;
+	private final Run run;
+	private final Flow flow;
+	
+	/**
+	 * @param directory - the directory of a stored run
+	 * @throws IOException - when the directory is not a complete stored run
+	 */
+	public StoredRun(File directory) throws IOException {
+		if (!isStoredRun(directory)) {
+			throw new IOException("Not a stored run: " + directory.getAbsolutePath());
+		}
+		XStream xstream = XstreamXmlMapping.getInstance();
+		this.directory = directory;
+		this.run = (Run) readXml(xstream, new File(directory, DESCRIPTION_FILE));
+		this.flow = (Flow) readXml(xstream, new File(directory, FLOW_FILE));
+	}
+	
+	/**
+	 * @param directory - a directory
+	 * @return whether the directory holds a completely written run
+	 */
+	public static boolean isStoredRun(File directory) {
+		return new File(directory, DESCRIPTION_FILE).isFile();
+	}
+	
+	/**
+	 * Stores a run in a new subdirectory of the given directory. 
+	 * 
+	 * @param root - the directory to store the run in, created if it does not exist
+	 * @param run - the run description, the flow id is ignored
+	 * @param flow - the flow description of the classifier of the run
+	 * @param outputFiles - the output files of the run by name, such as 
+	 *                      predictions and trace
+	 * @return the stored run
+	 * @throws IOException - when one of the files can not be written
+	 */
+	public static StoredRun write(File root, Run run, Flow flow, Map<String, Instances> outputFiles) throws IOException {
+		return write(root, run, flow, outputFiles, false);
+	}
+	
+	/**
+	 * Stores a run in a new subdirectory of the given directory. 
+	 * 
+	 * @param root - the directory to store the run in, created if it does not exist
+	 * @param run - the run description, the flow id is ignored
+	 * @param flow - the flow description of the classifier of the run
+	 * @param outputFiles - the output files of the run by name, such as 
+	 *                      predictions and trace
+	 * @param generatedSplits - whether the run used locally generated 
+	 *                          splits, in which case it can not be uploaded
+	 * @return the stored run
+	 * @throws IOException - when one of the files can not be written
+	 */
+	public static StoredRun write(File root, Run run, Flow flow, Map<String, Instances> outputFiles, boolean generatedSplits) throws IOException {
+		root.mkdirs();
+		File directory;
+		for (int i = 1; ; ++i) {
+			directory = new File(root, "run_" + i);
+			try {
+				// atomic, so concurrent writers never share a directory
+				Files.createDirectory(directory.toPath());
+				break;
+			} catch (FileAlreadyExistsException e) {
+				continue;
+			}
+		}
+		
+		XStream xstream = XstreamXmlMapping.getInstance();
+		writeXml(xstream, flow, new File(directory, FLOW_FILE));
+		for (Map.Entry<String, Instances> output : outputFiles.entrySet()) {
+			writeString(output.getValue().toString(), new File(directory, output.getKey() + ".arff"));
+		}
+		if (generatedSplits) {
+			writeString("", new File(directory, GENERATED_SPLITS_FILE));
+		}
+		writeXml(xstream, run, new File(directory, DESCRIPTION_FILE));
+		return new StoredRun(directory);
+	}
+	
+	/**
+	 * @param root - a directory, such as a directory of task bundles
+	 * @return all stored runs in the directory and its subdirectories
+	 * @throws IOException - when a stored run can not be read
+	 */
+	public static List<StoredRun> find(File root) throws IOException {
+		List<StoredRun> runs = new ArrayList<StoredRun>();
+		if (isStoredRun(root)) {
+			runs.add(new StoredRun(root));
+		} else if (root.isDirectory()) {
+			File[] files = root.listFiles();
+			Arrays.sort(files);
+			for (File file : files) {
+				if (file.isDirectory()) {
+					runs.addAll(find(file));
+				}
+			}
+		}
+		return runs;
+	}
+	
+	public File getDirectory() {
+		return directory;
+	}
+	
+	public Run getRun() {
+		return run;
+	}
+	
+	public Flow getFlow() {
+		return flow;
+	}
+	
+	/**
+	 * @return the output files of the run by name
+	 */
+	public Map<String, File> getOutputFiles() {
+		Map<String, File> outputFiles = new TreeMap<String, File>();
+		for (File file : directory.listFiles()) {
+			if (file.isFile() && file.getName().endsWith(".arff")) {
+				outputFiles.put(file.getName().substring(0, file.getName().length() - ".arff".length()), file);
+			}
+		}
+		return outputFiles;
+	}
+	
+	/**
+	 * @return whether the run used locally generated splits, and can 
+	 *         therefore not be uploaded
+	 */
+	public boolean hasGeneratedSplits() {
+		return new File(directory, GENERATED_SPLITS_FILE).isFile();
+	}
+	
+	/**
+	 * @return the run id on the server, or null if the run was not uploaded
+	 * @throws IOException - when the run id file can not be read
+	 */
+	public Integer getUploadedRunId() throws IOException {
+		File file = new File(directory, RUN_ID_FILE);
+		if (!file.isFile()) {
+			return null;
+		}
+		return Integer.parseInt(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim());
+	}
+	
+	/**
+	 * Uploads the run. The flow is looked up on the server, and uploaded if 
+	 * it does not exist yet; the parameter settings are then obtained from
+	 * the setup string against the flow on the server. 
+	 * 
+	 * @param apiconnector - the connector to upload the run with
+	 * @return the run id on the server
+	 * @throws Exception - when the flow or the run can not be uploaded, or 
+	 *                     the run used locally generated splits
+	 */
+	public int upload(OpenmlConnector apiconnector) throws Exception {
+		if (hasGeneratedSplits()) {
+			throw new Exception("Run " + directory.getAbsolutePath() + " used locally generated splits, which differ from the splits of the task on OpenML, and can not be uploaded.");
+		}
+		int flowId = WekaAlgorithm.getImplementationId(flow, null, apiconnector);
+		Flow implementation = apiconnector.flowGet(flowId);
+		
+		// the setup string is the class name followed by the options
+		String setupString = run.getSetup_string();
+		int space = setupString.indexOf(' ');
+		String[] options = Utils.splitOptions(space < 0 ? "" : setupString.substring(space + 1));
+		List<Parameter_setting> settings = WekaAlgorithm.getParameterSetting(options, implementation);
+		String[] tags = run.getTag() == null ? new String[0] : run.getTag();
+		
+		Run resolved = new Run(run.getTask_id(), run.getError_message(), flowId, setupString, settings.toArray(new Parameter_setting[settings.size()]), tags);
+		if (run.getOutputEvaluation() != null) {
+			for (EvaluationScore score : run.getOutputEvaluation()) {
+				resolved.addOutputEvaluation(score);
+			}
+		}
+		int runId = apiconnector.runUpload(resolved, getOutputFiles());
+		writeString(runId + "\n", new File(directory, RUN_ID_FILE));
+		return runId;
+	}
+	
+	private static Object readXml(XStream xstream, File file) throws IOException {
+		Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+		try {
+			return xstream.fromXML(reader);
+		} catch (RuntimeException e) {
+			throw new IOException("Could not parse " + file.getAbsolutePath() + ": " + e.getMessage(), e);
+		} finally {
+			reader.close();
+		}
+	}
+	
+	private static void writeXml(XStream xstream, Object value, File file) throws IOException {
+		File tmp = new File(file.getAbsolutePath() + ".tmp");
+		OutputStream out = new FileOutputStream(tmp);
+		try {
+			Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+			xstream.toXML(value, writer);
+			writer.flush();
+		} finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	private static void writeString(String value, File file) throws IOException {
+		File tmp = new File(file.getAbsolutePath() + ".tmp");
+		Files.write(tmp.toPath(), value.getBytes(StandardCharsets.UTF_8));
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+}
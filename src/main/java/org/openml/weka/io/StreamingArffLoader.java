@@ -0,0 +1,83 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collection;
+
+import org.openml.weka.algorithm.AttributeProjection;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.converters.ArffLoader.ArffReader;
+
+/**
+ * Parses an ARFF file row by row, and removes a given set of attributes from
+ * every row as soon as it is parsed. Contrary to reading the complete file 
+ * into an Instances object and deleting attributes afterwards, the dataset 
+ * with all attributes is never held in memory, and every row is touched only
+ * once. When the reader is backed by a network stream, parsing overlaps with 
+ * the download. 
+ */
+public class StreamingArffLoader {
+	
+	/**
+	 * @param reader - reader positioned at the start of an ARFF file
+	 * @param removeAttributes - names of attributes that are dropped from the 
+	 *                           result, may be null
+	 * @return the parsed dataset, without the removed attributes and without
+	 *         class index
+	 * @throws IOException - when the ARFF can not be parsed or one of the 
+	 *                       attributes to remove does not exist
+	 */
+	public static Instances load(Reader reader, Collection<String> removeAttributes) throws IOException {
+		// incremental mode: only reads the header
+		ArffReader arff = new ArffReader(reader, 0, false);
+		Instances structure = arff.getStructure();
+		
+		AttributeProjection projection;
+		try {
+			projection = new AttributeProjection(structure, removeAttributes);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+		
+		Instances result = projection.createHeader(0);
+		Instance row;
+		while ((row = arff.readInstance(structure)) != null) {
+			result.add(projection.project(row, result));
+		}
+		result.compactify();
+		return result;
+	}
+}
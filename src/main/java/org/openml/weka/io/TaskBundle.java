@@ -0,0 +1,243 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.openml.apiconnector.algorithms.TaskInformation;
+import org.openml.apiconnector.io.OpenmlConnector;
+import org.openml.apiconnector.xml.DataSetDescription;
+import org.openml.apiconnector.xml.EstimationProcedure;
+import org.openml.apiconnector.xml.Task;
+import org.openml.apiconnector.xstream.XstreamXmlMapping;
+import org.openml.weka.algorithm.InstancesHelper;
+
+import com.thoughtworks.xstream.XStream;
+
+import weka.core.Instances;
+
+/**
+ * A directory with everything that is needed to run a task without network
+ * access: the task, its estimation procedure and data set description as 
+ * xml, the projected dataset in binary form and the splits file. Bundles are
+ * written on a machine with network access (see ExportTaskBundle) and read
+ * by the TaskBundleConnector.
+ * 
+ * Layout of a bundle directory:
+ * <pre>
+ * task.xml                  the task
+ * estimation_procedure.xml  the estimation procedure of the task
+ * data_set_description.xml  the data set description of the source data
+ * dataset.bin               the dataset without ignore and row id attributes,
+ *                           in BinaryInstancesFormat
+ * splits.arff               the splits file of the task, uncompressed
+ * runs/                     runs on the task that await upload, see StoredRun
+ * </pre>
+ * The task file is written last, so a bundle is only recognized as such 
+ * after it was written completely. 
+ */
+public class TaskBundle {
+	
+	public static final String TASK_FILE = "task.xml";
+	public static final String ESTIMATION_PROCEDURE_FILE = "estimation_procedure.xml";
+	public static final String DATA_SET_DESCRIPTION_FILE = "data_set_description.xml";
+	public static final String DATASET_FILE = "dataset.bin";
+	public static final String SPLITS_FILE = "splits.arff";
+	
+	private final File directory;
+	private final Task task;
+	private final EstimationProcedure estimationProcedure;
+	private final DataSetDescription dataSetDescription;
+	
+	/**
+	 * Reads the metadata of a bundle. The dataset and splits are only read
+	 * when requested. 
+	 * 
+	 * @param directory - the bundle directory
+	 * @throws IOException - when the directory is not a complete bundle
+	 */
+	public TaskBundle(File directory) throws IOException {
+		if (!isBundle(directory)) {
+			throw new IOException("Not a task bundle: " + directory.getAbsolutePath());
+		}
+		XStream xstream = XstreamXmlMapping.getInstance();
+		this.directory = directory;
+		this.task = (Task) readXml(xstream, new File(directory, TASK_FILE));
+		this.estimationProcedure = (EstimationProcedure) readXml(xstream, new File(directory, ESTIMATION_PROCEDURE_FILE));
+		this.dataSetDescription = (DataSetDescription) readXml(xstream, new File(directory, DATA_SET_DESCRIPTION_FILE));
+	}
+	
+	/**
+	 * @param directory - a directory
+	 * @return whether the directory holds a completely written bundle
+	 */
+	public static boolean isBundle(File directory) {
+		return new File(directory, TASK_FILE).isFile();
+	}
+	
+	/**
+	 * @param root - directory that holds a bundle per task
+	 * @param taskId - the task id
+	 * @return the directory of the bundle of the given task
+	 */
+	public static File getDirectory(File root, int taskId) {
+		return new File(root, "task_" + taskId);
+	}
+	
+	/**
+	 * Downloads everything that is needed to run a task, and writes it as a 
+	 * bundle into a subdirectory of the given root directory. 
+	 * 
+	 * @param apiconnector - the connector to obtain the task data with
+	 * @param task - the task to export
+	 * @param root - directory that holds a bundle per task
+	 * @return the written bundle
+	 * @throws Exception - when any of the task files can not be obtained
+	 */
+	public static TaskBundle export(OpenmlConnector apiconnector, Task task, File root) throws Exception {
+		DataSetDescription dsd = TaskInformation.getSourceData(task).getDataSetDescription(apiconnector);
+		EstimationProcedure ep = apiconnector.estimationProcedureGet(TaskInformation.getEstimationProcedure(task).getId());
+		Instances instances = InstancesHelper.getDatasetFromTask(apiconnector, task);
+		File splits = apiconnector.taskSplitsGet(task);
+		return write(getDirectory(root, task.getTask_id()), task, ep, dsd, instances, splits);
+	}
+	
+	/**
+	 * Writes a bundle. Existing files in the directory are replaced. 
+	 * 
+	 * @param directory - the bundle directory, created if it does not exist
+	 * @param task - the task
+	 * @param ep - the estimation procedure of the task
+	 * @param dsd - the data set description of the source data of the task
+	 * @param instances - the dataset, without ignore and row id attributes
+	 * @param splits - the splits file of the task, plain or gzip compressed
+	 * @return the written bundle
+	 * @throws IOException - when one of the files can not be written
+	 */
+	public static TaskBundle write(File directory, Task task, EstimationProcedure ep, DataSetDescription dsd, Instances instances, File splits) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create bundle directory " + directory.getAbsolutePath());
+		}
+		// an existing task file marks the bundle complete, so it goes first and last
+		Files.deleteIfExists(new File(directory, TASK_FILE).toPath());
+		
+		XStream xstream = XstreamXmlMapping.getInstance();
+		writeXml(xstream, ep, new File(directory, ESTIMATION_PROCEDURE_FILE));
+		writeXml(xstream, dsd, new File(directory, DATA_SET_DESCRIPTION_FILE));
+		
+		File dataset = new File(directory, DATASET_FILE);
+		File datasetTmp = new File(directory, DATASET_FILE + ".tmp");
+		BinaryInstancesFormat.write(instances, datasetTmp);
+		Files.move(datasetTmp.toPath(), dataset.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		
+		File splitsTarget = new File(directory, SPLITS_FILE);
+		File splitsTmp = new File(directory, SPLITS_FILE + ".tmp");
+		InputStream in = CompressedStreams.open(splits);
+		try {
+			Files.copy(in, splitsTmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			in.close();
+		}
+		Files.move(splitsTmp.toPath(), splitsTarget.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		
+		writeXml(xstream, task, new File(directory, TASK_FILE));
+		return new TaskBundle(directory);
+	}
+	
+	public File getDirectory() {
+		return directory;
+	}
+	
+	public Task getTask() {
+		return task;
+	}
+	
+	public EstimationProcedure getEstimationProcedure() {
+		return estimationProcedure;
+	}
+	
+	public DataSetDescription getDataSetDescription() {
+		return dataSetDescription;
+	}
+	
+	/**
+	 * @return the dataset, without ignore and row id attributes and without
+	 *         class index
+	 * @throws IOException - when the dataset file can not be read
+	 */
+	public Instances getInstances() throws IOException {
+		return BinaryInstancesFormat.read(new File(directory, DATASET_FILE));
+	}
+	
+	/**
+	 * @return the splits file of the task
+	 */
+	public File getSplitsFile() {
+		return new File(directory, SPLITS_FILE);
+	}
+	
+	private static Object readXml(XStream xstream, File file) throws IOException {
+		Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+		try {
+			return xstream.fromXML(reader);
+		} catch (RuntimeException e) {
+			throw new IOException("Could not parse " + file.getAbsolutePath() + ": " + e.getMessage(), e);
+		} finally {
+			reader.close();
+		}
+	}
+	
+	private static void writeXml(XStream xstream, Object value, File file) throws IOException {
+		File tmp = new File(file.getAbsolutePath() + ".tmp");
+		OutputStream out = new FileOutputStream(tmp);
+		try {
+			Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+			xstream.toXML(value, writer);
+			writer.flush();
+		} finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+}
@@ -0,0 +1,183 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openml.apiconnector.algorithms.Conversion;
+import org.openml.apiconnector.settings.Settings;
+import org.openml.apiconnector.xml.DataSetDescription;
+import org.openml.apiconnector.xml.EstimationProcedure;
+import org.openml.apiconnector.xml.Flow;
+import org.openml.apiconnector.xml.Run;
+import org.openml.apiconnector.xml.Task;
+import org.openml.weka.algorithm.WekaConfig;
+
+import weka.core.Instances;
+
+/**
+ * Connector that serves tasks, data set descriptions, estimation procedures,
+ * splits and datasets from task bundles on the local file system, and does 
+ * not perform any http request for these. The directory is either a single
+ * bundle, or holds a bundle per task (as written by ExportTaskBundle). Runs
+ * are not uploaded, but stored as {@link StoredRun}s in the runs directory 
+ * of the bundle of their task, to be uploaded later (see UploadStoredRuns).
+ */
+public class TaskBundleConnector extends OpenmlWekaConnector {
+	
+	private static final long serialVersionUID = 4437013538219946409L;
+	
+	public static final String RUN_DIRECTORY = "runs";
+	
+	private final File directory;
+	
+	private final Map<Integer, TaskBundle> tasks = new HashMap<Integer, TaskBundle>();
+	private final Map<Integer, TaskBundle> datasets = new HashMap<Integer, TaskBundle>();
+	private final Map<Integer, EstimationProcedure> estimationProcedures = new HashMap<Integer, EstimationProcedure>();
+	
+	/**
+	 * @param directory - a bundle directory, or a directory with a bundle per task
+	 * @param config - configuration for the server and api key that runs are
+	 *                 uploaded to
+	 * @throws IOException - when the directory does not contain any bundle
+	 */
+	public TaskBundleConnector(File directory, WekaConfig config) throws IOException {
+		super(config.getServer() == null ? Settings.BASE_URL : config.getServer(), config.getApiKey(), config);
+		this.directory = directory;
+		
+		if (TaskBundle.isBundle(directory)) {
+			add(new TaskBundle(directory));
+		} else if (directory.isDirectory()) {
+			for (File file : directory.listFiles()) {
+				if (file.isDirectory() && TaskBundle.isBundle(file)) {
+					add(new TaskBundle(file));
+				}
+			}
+		}
+		if (tasks.isEmpty()) {
+			throw new IOException("No task bundles found in " + directory.getAbsolutePath());
+		}
+		Conversion.log("OK", "Task Bundle", "Found " + tasks.size() + " task bundles in " + directory.getAbsolutePath());
+	}
+	
+	private void add(TaskBundle bundle) {
+		tasks.put(bundle.getTask().getTask_id(), bundle);
+		datasets.put(bundle.getDataSetDescription().getId(), bundle);
+		estimationProcedures.put(bundle.getEstimationProcedure().getId(), bundle.getEstimationProcedure());
+	}
+	
+	/**
+	 * @return the directory the bundles are read from
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * @param task_id - the task id
+	 * @return the directory that runs on the task are stored in
+	 * @throws Exception - when the task is not in the bundles
+	 */
+	public File getRunDirectory(int task_id) throws Exception {
+		return new File(getTaskBundle(task_id).getDirectory(), RUN_DIRECTORY);
+	}
+	
+	@Override
+	public Task taskGet(int task_id) throws Exception {
+		return getTaskBundle(task_id).getTask();
+	}
+	
+	@Override
+	public DataSetDescription dataGet(int did) throws Exception {
+		return getDatasetBundle(did).getDataSetDescription();
+	}
+	
+	@Override
+	public EstimationProcedure estimationProcedureGet(int ep_id) throws Exception {
+		if (!estimationProcedures.containsKey(ep_id)) {
+			throw new Exception("Estimation procedure " + ep_id + " not available in task bundles " + directory.getAbsolutePath());
+		}
+		return estimationProcedures.get(ep_id);
+	}
+	
+	@Override
+	public File taskSplitsGet(Task task) throws Exception {
+		return getTaskBundle(task.getTask_id()).getSplitsFile();
+	}
+	
+	@Override
+	public File datasetGet(DataSetDescription dsd) throws Exception {
+		throw new Exception("Task bundles only contain the projected dataset. Use getDatasetInstances instead. ");
+	}
+	
+	@Override
+	public File getDatasetFile(DataSetDescription dsd) throws Exception {
+		throw new Exception("Task bundles only contain the projected dataset. Use getDatasetInstances instead. ");
+	}
+	
+	@Override
+	public File getParquetFile(DataSetDescription dsd) throws Exception {
+		return null;
+	}
+	
+	@Override
+	public Instances getDatasetInstances(DataSetDescription dsd) throws Exception {
+		return getDatasetBundle(dsd.getId()).getInstances();
+	}
+	
+	@Override
+	public int flowUpload(Flow flow) throws Exception {
+		throw new Exception("Flows are not uploaded from task bundles. Upload the stored runs with UploadStoredRuns instead. ");
+	}
+	
+	@Override
+	public int runUpload(Run run, Map<String, File> outputFiles) throws Exception {
+		throw new Exception("Runs are not uploaded from task bundles. Upload the stored runs with UploadStoredRuns instead. ");
+	}
+	
+	private TaskBundle getTaskBundle(int task_id) throws Exception {
+		if (!tasks.containsKey(task_id)) {
+			throw new Exception("Task " + task_id + " not available in task bundles " + directory.getAbsolutePath());
+		}
+		return tasks.get(task_id);
+	}
+	
+	private TaskBundle getDatasetBundle(int did) throws Exception {
+		if (!datasets.containsKey(did)) {
+			throw new Exception("Dataset " + did + " not available in task bundles " + directory.getAbsolutePath());
+		}
+		return datasets.get(did);
+	}
+}
@@ -0,0 +1,181 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2017, Jan N. van Rijn <j.n.van.rijn@liacs.leidenuniv.nl>
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+* Neither the name of the copyright holder nor the names of its
+  contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.*/
+
+package org.openml.weka.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generic reader for the Thrift compact protocol, as used by the Parquet 
+ * file footer and page headers. Structs are returned as a map from field id 
+ * to value, lists as List, binaries as byte[], integers as Long, doubles as
+ * Double and booleans as Boolean. Maps and sets are skipped. 
+ */
+class ThriftCompactReader {
+	
+	private static final int TYPE_STOP = 0;
+	private static final int TYPE_BOOLEAN_TRUE = 1;
+	private static final int TYPE_BOOLEAN_FALSE = 2;
+	private static final int TYPE_BYTE = 3;
+	private static final int TYPE_I16 = 4;
+	private static final int TYPE_I32 = 5;
+	private static final int TYPE_I64 = 6;
+	private static final int TYPE_DOUBLE = 7;
+	private static final int TYPE_BINARY = 8;
+	private static final int TYPE_LIST = 9;
+	private static final int TYPE_SET = 10;
+	private static final int TYPE_MAP = 11;
+	private static final int TYPE_STRUCT = 12;
+	
+	/**
+	 * Reads a struct, starting at the current position of the buffer. 
+	 * Afterwards, the buffer is positioned directly after the struct.
+	 * 
+	 * @param buffer - the buffer to read from, in little endian byte order
+	 * @return map from field id to value
+	 * @throws IOException - when the data is not valid compact protocol
+	 */
+	static Map<Integer, Object> readStruct(ByteBuffer buffer) throws IOException {
+		Map<Integer, Object> struct = new HashMap<Integer, Object>();
+		int fieldId = 0;
+		while (true) {
+			int header = buffer.get() & 0xff;
+			int type = header & 0x0f;
+			if (type == TYPE_STOP) {
+				return struct;
+			}
+			int delta = header >>> 4;
+			fieldId = delta == 0 ? (int) zigzag(readVarint(buffer)) : fieldId + delta;
+			if (type == TYPE_BOOLEAN_TRUE || type == TYPE_BOOLEAN_FALSE) {
+				struct.put(fieldId, type == TYPE_BOOLEAN_TRUE);
+			} else {
+				struct.put(fieldId, readValue(buffer, type));
+			}
+		}
+	}
+	
+	private static Object readValue(ByteBuffer buffer, int type) throws IOException {
+		switch (type) {
+			case TYPE_BOOLEAN_TRUE:
+			case TYPE_BOOLEAN_FALSE:
+				// only occurs inside lists, where booleans take a full byte
+				return buffer.get() == TYPE_BOOLEAN_TRUE;
+			case TYPE_BYTE:
+				return (long) buffer.get();
+			case TYPE_I16:
+			case TYPE_I32:
+			case TYPE_I64:
+				return zigzag(readVarint(buffer));
+			case TYPE_DOUBLE:
+				return buffer.getDouble();
+			case TYPE_BINARY: {
+				byte[] bytes = new byte[(int) readVarint(buffer)];
+				buffer.get(bytes);
+				return bytes;
+			}
+			case TYPE_LIST:
+			case TYPE_SET: {
+				int header = buffer.get() & 0xff;
+				int size = header >>> 4;
+				if (size == 15) {
+					size = (int) readVarint(buffer);
+				}
+				List<Object> list = new ArrayList<Object>(size);
+				for (int i = 0; i < size; ++i) {
+					list.add(readValue(buffer, header & 0x0f));
+				}
+				return type == TYPE_LIST ? list : null;
+			}
+			case TYPE_MAP: {
+				int size = (int) readVarint(buffer);
+				if (size > 0) {
+					int types = buffer.get() & 0xff;
+					for (int i = 0; i < size; ++i) {
+						readValue(buffer, types >>> 4);
+						readValue(buffer, types & 0x0f);
+					}
+				}
+				return null;
+			}
+			case TYPE_STRUCT:
+				return readStruct(buffer);
+			default:
+				throw new IOException("Invalid thrift compact type: " + type);
+		}
+	}
+	
+	private static long readVarint(ByteBuffer buffer) throws IOException {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = buffer.get() & 0xff;
+			result |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("Invalid thrift varint");
+	}
+	
+	private static long zigzag(long n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+	
+	/**
+	 * @param struct - a struct as returned by readStruct
+	 * @param fieldId - the field id
+	 * @param defaultValue - value to return when the field is absent
+	 * @return the integer value of the field
+	 */
+	static long getLong(Map<Integer, Object> struct, int fieldId, long defaultValue) {
+		Object value = struct.get(fieldId);
+		return value == null ? defaultValue : (Long) value;
+	}
+	
+	@SuppressWarnings("unchecked")
+	static Map<Integer, Object> getStruct(Map<Integer, Object> struct, int fieldId) {
+		return (Map<Integer, Object>) struct.get(fieldId);
+	}
+	
+	@SuppressWarnings("unchecked")
+	static List<Object> getList(Map<Integer, Object> struct, int fieldId) {
+		return (List<Object>) struct.get(fieldId);
+	}
+	
+	static String getString(Map<Integer, Object> struct, int fieldId) throws IOException {
+		byte[] value = (byte[]) struct.get(fieldId);
+		return value == null ? null : new String(value, "UTF-8");
+	}
+}
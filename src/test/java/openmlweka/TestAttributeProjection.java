@@ -0,0 +1,50 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.openml.weka.algorithm.AttributeProjection;
+
+import weka.core.Instances;
+
+public class TestAttributeProjection extends BaseTestFramework {
+	
+	private static void doCheck(String arff, List<String> removeAttributes) throws Exception {
+		Instances expected = new Instances(new StringReader(arff));
+		for (String name : removeAttributes) {
+			expected.deleteAttributeAt(expected.attribute(name).index());
+		}
+		
+		Instances dataset = new Instances(new StringReader(arff));
+		AttributeProjection projection = new AttributeProjection(dataset, removeAttributes);
+		assertEquals(expected.numAttributes(), projection.numAttributes());
+		Instances projected = projection.project(dataset);
+		assertEquals(expected.toString(), projected.toString());
+		
+		// projecting twice should not share string values between the results
+		assertEquals(expected.toString(), projection.project(dataset).toString());
+	}
+	
+	@Test
+	public void testDense() throws Exception {
+		doCheck(TestDatasetCache.ARFF_DENSE, Arrays.asList("num", "str"));
+		doCheck(TestDatasetCache.ARFF_DENSE, Arrays.asList("class", "nom"));
+		doCheck(TestDatasetCache.ARFF_DENSE, Arrays.<String>asList());
+	}
+	
+	@Test
+	public void testSparse() throws Exception {
+		doCheck(TestDatasetCache.ARFF_SPARSE, Arrays.asList("w2"));
+		doCheck(TestDatasetCache.ARFF_SPARSE, Arrays.asList("w3", "w1"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testNonExistingAttribute() throws Exception {
+		Instances dataset = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		new AttributeProjection(dataset, Arrays.asList("does_not_exist"));
+	}
+}
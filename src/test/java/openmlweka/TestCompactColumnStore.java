@@ -0,0 +1,103 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.openml.apiconnector.xml.DataSetDescription;
+import org.openml.apiconnector.xml.EstimationProcedure;
+import org.openml.apiconnector.xml.EstimationProcedureType;
+import org.openml.weka.algorithm.CompactColumnStore;
+import org.openml.weka.algorithm.DataSplits;
+import org.openml.weka.algorithm.DatasetStorage;
+import org.openml.weka.algorithm.StoredInstance;
+import org.openml.weka.io.DatasetCache;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+public class TestCompactColumnStore extends BaseTestFramework {
+	
+	private static Instances getNominal(int numValues) {
+		ArrayList<String> labels = new ArrayList<String>();
+		for (int k = 0; k < numValues; ++k) {
+			labels.add("v" + k);
+		}
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("small", Arrays.asList("a", "b")));
+		attributes.add(new Attribute("large", labels));
+		Instances instances = new Instances("nominal", attributes, 50);
+		for (int i = 0; i < 50; ++i) {
+			double large = i % 7 == 0 ? Double.NaN : numValues - 1 - i;
+			instances.add(new DenseInstance(i % 3 == 0 ? 2.0 : 1.0, new double[] {i % 11 == 0 ? Double.NaN : i % 2, large}));
+		}
+		return instances;
+	}
+	
+	@Test
+	public void testNominalBitIdentical() throws Exception {
+		for (int numValues : new int[] {100, 1000, 40000}) {
+			Instances instances = getNominal(numValues);
+			Instances compact = CompactColumnStore.compact(new Instances(instances));
+			assertTrue(compact.instance(0) instanceof StoredInstance);
+			for (int i = 0; i < instances.numInstances(); ++i) {
+				assertEquals(instances.instance(i).weight(), compact.instance(i).weight(), 0.0);
+				for (int j = 0; j < instances.numAttributes(); ++j) {
+					assertEquals(Double.doubleToRawLongBits(instances.instance(i).value(j)), Double.doubleToRawLongBits(compact.instance(i).value(j)));
+				}
+			}
+			assertEquals(instances.toString(), compact.toString());
+		}
+	}
+	
+	@Test
+	public void testSize() throws Exception {
+		Instances instances = getNominal(1000);
+		// byte and short codes, plus weights
+		assertEquals(50 * (1 + 2 + 8), new CompactColumnStore(instances).sizeInBytes());
+	}
+	
+	@Test
+	public void testNumericAsFloat() throws Exception {
+		Instances dense = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		dense.instance(0).setValue(0, 0.1);
+		Instances compact = CompactColumnStore.compact(new Instances(dense));
+		assertEquals((double) 0.1f, compact.instance(0).value(0), 0.0);
+		assertTrue(compact.instance(1).isMissing(0));
+		assertTrue(compact.instance(2).isMissing(1));
+		assertEquals("hello", compact.instance(2).stringValue(2));
+		assertEquals(dense.instance(3).toString(), compact.instance(3).toString());
+		
+		// folds copy the reference to the store only
+		compact.setClassIndex(3);
+		EstimationProcedure ep = new EstimationProcedure(1, 1, "2-fold Crossvalidation", EstimationProcedureType.CROSSVALIDATION, 1, 2, null, "true");
+		DataSplits splits = new DataSplits(1, ep, compact, TestSparseRepresentation.getSplits(compact.numInstances(), 2));
+		StoredInstance first = (StoredInstance) compact.instance(0);
+		assertSame(first.getStore(), ((StoredInstance) splits.getTestSet(0, 0).instance(0)).getStore());
+	}
+	
+	@Test
+	public void testCacheWithFloatStorage() throws Exception {
+		File directory = Files.createTempDirectory("dataset_cache").toFile();
+		DatasetCache cache = new DatasetCache(directory, 1024 * 1024, DatasetStorage.FLOAT);
+		DataSetDescription dsd = TestDatasetCache.getDataSetDescription(1, "abc");
+		
+		Instances dense = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		cache.put(dsd, dense);
+		Instances compact = cache.get(dsd);
+		assertTrue(compact.instance(0) instanceof StoredInstance);
+		assertEquals(dense.toString(), compact.toString());
+		for (File file : directory.listFiles()) {
+			file.deleteOnExit();
+		}
+		directory.deleteOnExit();
+	}
+}
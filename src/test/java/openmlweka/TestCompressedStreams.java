@@ -0,0 +1,125 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+import org.openml.weka.io.CompressedStreams;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class TestCompressedStreams extends BaseTestFramework {
+	
+	private static final String CONTENT = TestDatasetCache.ARFF_DENSE;
+	
+	private static byte[] compress(String content, String encoding) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OutputStream out;
+		if (encoding.equals("gzip")) {
+			out = new GZIPOutputStream(bytes);
+		} else if (encoding.equals("deflate")) {
+			out = new DeflaterOutputStream(bytes);
+		} else if (encoding.equals("raw-deflate")) {
+			out = new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+		} else {
+			out = bytes;
+		}
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+		return bytes.toByteArray();
+	}
+	
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			bytes.write(buffer, 0, read);
+		}
+		in.close();
+		return new String(bytes.toByteArray(), "UTF-8");
+	}
+	
+	/**
+	 * Serves CONTENT with the given encoding, if the client accepts it. 
+	 */
+	private static HttpServer startServer(final String encoding) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+				String header = encoding.equals("raw-deflate") ? "deflate" : encoding;
+				byte[] body;
+				if (accepted != null && accepted.contains(header)) {
+					exchange.getResponseHeaders().set("Content-Encoding", header);
+					body = compress(CONTENT, encoding);
+				} else {
+					body = compress(CONTENT, "identity");
+				}
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+				exchange.close();
+			}
+		});
+		server.start();
+		return server;
+	}
+	
+	private static void doCheckHttp(String encoding) throws Exception {
+		HttpServer server = startServer(encoding);
+		try {
+			URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/data.arff");
+			assertEquals(CONTENT, read(CompressedStreams.open(url)));
+		} finally {
+			server.stop(0);
+		}
+	}
+	
+	@Test
+	public void testHttpGzip() throws Exception {
+		doCheckHttp("gzip");
+	}
+	
+	@Test
+	public void testHttpDeflate() throws Exception {
+		doCheckHttp("deflate");
+		doCheckHttp("raw-deflate");
+	}
+	
+	@Test
+	public void testHttpIdentity() throws Exception {
+		doCheckHttp("br");
+	}
+	
+	@Test
+	public void testLocalFile() throws Exception {
+		File plain = File.createTempFile("dataset", ".arff");
+		File compressed = File.createTempFile("dataset", ".arff.gz");
+		plain.deleteOnExit();
+		compressed.deleteOnExit();
+		
+		FileOutputStream out = new FileOutputStream(plain);
+		out.write(compress(CONTENT, "identity"));
+		out.close();
+		out = new FileOutputStream(compressed);
+		out.write(compress(CONTENT, "gzip"));
+		out.close();
+		
+		assertEquals(CONTENT, read(CompressedStreams.open(plain)));
+		assertEquals(CONTENT, read(CompressedStreams.open(compressed)));
+	}
+}
@@ -35,7 +35,9 @@ public class TestDataSplits extends BaseTestFramework {
 		Set<Integer> testIndices = new TreeSet<Integer>();
 		Instances rebuild = new Instances(dataset, 0);
 		for (int i = 0; i < ds.FOLDS; ++i) {
-			testIndices.addAll(ds.getTestSetRowIds(0,  i, 0));
+			for (int rowid : ds.getTestSetRowIds(0,  i, 0)) {
+				testIndices.add(rowid);
+			}
 			Instances testSet = ds.getTestSet(0, i);
 			assertEquals(testSet.numInstances(), 1);
 			rebuild.add(testSet.instance(0));
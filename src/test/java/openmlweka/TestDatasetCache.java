@@ -0,0 +1,113 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.openml.apiconnector.xml.DataSetDescription;
+import org.openml.weka.io.BinaryInstancesFormat;
+import org.openml.weka.io.DatasetCache;
+
+import weka.core.Instances;
+
+public class TestDatasetCache extends BaseTestFramework {
+	
+	protected static final String ARFF_DENSE = 
+		"@relation dense\n" + 
+		"@attribute num numeric\n" + 
+		"@attribute nom {a,'b c',d}\n" + 
+		"@attribute str string\n" + 
+		"@attribute class {yes,no}\n" + 
+		"@data\n" + 
+		"1.5,a,'hello world',yes\n" + 
+		"?,'b c',foo,no\n" + 
+		"-3,?,hello,?\n" + 
+		"0,d,foo,yes\n";
+	
+	protected static final String ARFF_SPARSE = 
+		"@relation sparse\n" + 
+		"@attribute w1 numeric\n" + 
+		"@attribute w2 numeric\n" + 
+		"@attribute w3 numeric\n" + 
+		"@attribute class {pos,neg}\n" + 
+		"@data\n" + 
+		"{0 1,3 pos}\n" + 
+		"{1 2.5,2 ?,3 neg}, {5}\n" + 
+		"{3 neg}\n";
+	
+	protected static DataSetDescription getDataSetDescription(int id, String md5) {
+		String xml = "<oml:data_set_description xmlns:oml=\"http://openml.org/openml\">" + 
+			"<oml:id>" + id + "</oml:id><oml:name>dataset" + id + "</oml:name><oml:format>ARFF</oml:format>" + 
+			"<oml:file_id>" + (id + 1000) + "</oml:file_id><oml:md5_checksum>" + md5 + "</oml:md5_checksum>" + 
+			"</oml:data_set_description>";
+		return (DataSetDescription) xstream.fromXML(xml);
+	}
+	
+	@Test
+	public void testBinaryFormatDense() throws Exception {
+		Instances dataset = new Instances(new StringReader(ARFF_DENSE));
+		File file = File.createTempFile("dense", ".bin");
+		file.deleteOnExit();
+		BinaryInstancesFormat.write(dataset, file);
+		Instances restored = BinaryInstancesFormat.read(file);
+		assertEquals(dataset.toString(), restored.toString());
+		assertEquals(dataset.attribute("str").numValues(), restored.attribute("str").numValues());
+	}
+	
+	@Test
+	public void testBinaryFormatSparse() throws Exception {
+		Instances dataset = new Instances(new StringReader(ARFF_SPARSE));
+		File file = File.createTempFile("sparse", ".bin");
+		file.deleteOnExit();
+		BinaryInstancesFormat.write(dataset, file);
+		Instances restored = BinaryInstancesFormat.read(file);
+		assertEquals(dataset.toString(), restored.toString());
+		assertEquals(5.0, restored.instance(1).weight(), 0.0);
+		assertTrue(restored.instance(0) instanceof weka.core.SparseInstance);
+	}
+	
+	@Test
+	public void testCacheHitAndMiss() throws Exception {
+		File directory = Files.createTempDirectory("dataset_cache").toFile();
+		DatasetCache cache = new DatasetCache(directory, 1024 * 1024);
+		Instances dataset = new Instances(new StringReader(ARFF_DENSE));
+		
+		assertNull(cache.get(getDataSetDescription(1, "abc")));
+		cache.put(getDataSetDescription(1, "abc"), dataset);
+		assertEquals(dataset.toString(), cache.get(getDataSetDescription(1, "abc")).toString());
+		// a different checksum means a different version of the file
+		assertNull(cache.get(getDataSetDescription(1, "def")));
+	}
+	
+	@Test
+	public void testCacheEviction() throws Exception {
+		File directory = Files.createTempDirectory("dataset_cache").toFile();
+		Instances dataset = new Instances(new StringReader(ARFF_DENSE));
+		File tmp = File.createTempFile("size", ".bin");
+		tmp.deleteOnExit();
+		BinaryInstancesFormat.write(dataset, tmp);
+		
+		// room for two entries
+		DatasetCache cache = new DatasetCache(directory, tmp.length() * 2);
+		DataSetDescription first = getDataSetDescription(1, "abc");
+		DataSetDescription second = getDataSetDescription(2, "abc");
+		DataSetDescription third = getDataSetDescription(3, "abc");
+		cache.put(first, dataset);
+		cache.put(second, dataset);
+		cache.getLocation(second).setLastModified(System.currentTimeMillis() - 60000);
+		// first is now more recently used than second
+		cache.get(first);
+		cache.put(third, dataset);
+		
+		assertTrue(cache.getLocation(first).exists());
+		assertFalse(cache.getLocation(second).exists());
+		assertTrue(cache.getLocation(third).exists());
+		assertTrue(cache.size() <= cache.getMaxBytes());
+	}
+}
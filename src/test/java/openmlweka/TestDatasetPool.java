@@ -0,0 +1,88 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+import org.openml.weka.io.DatasetPool;
+
+import weka.core.Instances;
+
+public class TestDatasetPool extends BaseTestFramework {
+	
+	private static class CountingLoader implements Callable<Instances> {
+		private int calls = 0;
+		
+		@Override
+		public Instances call() throws Exception {
+			++calls;
+			return new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		}
+	}
+	
+	@Test
+	public void testShared() throws Exception {
+		DatasetPool pool = new DatasetPool(1024 * 1024);
+		CountingLoader loader = new CountingLoader();
+		Instances first = pool.acquire("a", loader);
+		Instances second = pool.acquire("a", loader);
+		assertSame(first, second);
+		assertEquals(1, loader.calls);
+		assertEquals(1, pool.getHits());
+		assertEquals(1, pool.getMisses());
+		assertEquals(DatasetPool.estimateSize(first), pool.getBytes());
+		
+		pool.release("a");
+		pool.release("a");
+		// still fits within the bound, so kept for the next task
+		assertSame(first, pool.acquire("a", loader));
+		assertEquals(1, loader.calls);
+	}
+	
+	@Test
+	public void testEviction() throws Exception {
+		CountingLoader loader = new CountingLoader();
+		Instances dataset = loader.call();
+		DatasetPool pool = new DatasetPool(DatasetPool.estimateSize(dataset) * 3 / 2);
+		
+		Instances a = pool.acquire("a", loader);
+		Instances b = pool.acquire("b", loader);
+		// datasets in use are never evicted
+		assertEquals(2, pool.size());
+		
+		pool.release("a");
+		assertEquals(1, pool.size());
+		assertSame(b, pool.acquire("b", loader));
+		assertNotSame(a, pool.acquire("a", loader));
+		pool.release("b");
+		pool.release("b");
+		assertEquals(1, pool.size());
+	}
+	
+	@Test
+	public void testFailedLoad() throws Exception {
+		DatasetPool pool = new DatasetPool(1024 * 1024);
+		try {
+			pool.acquire("a", new Callable<Instances>() {
+				@Override
+				public Instances call() throws Exception {
+					throw new Exception("not available");
+				}
+			});
+		} catch (Exception e) {
+			assertEquals("not available", e.getMessage());
+		}
+		assertEquals(0, pool.size());
+		pool.acquire("a", new CountingLoader());
+		assertEquals(1, pool.size());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testReleaseWithoutAcquire() throws Exception {
+		new DatasetPool(1024 * 1024).release("a");
+	}
+}
@@ -0,0 +1,210 @@
+package openmlweka;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.junit.Test;
+import org.openml.weka.io.DownloadClient;
+import org.openml.weka.io.StreamingArffLoader;
+
+import weka.core.Instances;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class TestDownloadClient extends BaseTestFramework {
+	
+	private static void consume(InputStream in) throws IOException {
+		byte[] buffer = new byte[1024];
+		while (in.read(buffer) > 0) {
+			// discard
+		}
+		in.close();
+	}
+	
+	@Test
+	public void testKeepAlive() throws Exception {
+		// remembers the client side of every connection the server has seen
+		final Set<String> connections = Collections.synchronizedSet(new HashSet<String>());
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				connections.add(exchange.getRemoteAddress().toString());
+				byte[] body = TestDatasetCache.ARFF_DENSE.getBytes("UTF-8");
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+				exchange.close();
+			}
+		});
+		server.start();
+		
+		DownloadClient client = new DownloadClient(1000, 1000, 4, 2);
+		try {
+			URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/data.arff");
+			for (int i = 0; i < 5; ++i) {
+				consume(client.open(url));
+			}
+			assertEquals(1, connections.size());
+			assertEquals(1, client.getAvailableConnections());
+		} finally {
+			client.close();
+			server.stop(0);
+		}
+	}
+	
+	@Test
+	public void testErrorStatus() throws Exception {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.sendResponseHeaders(404, -1);
+				exchange.close();
+			}
+		});
+		server.start();
+		
+		DownloadClient client = new DownloadClient(1000, 1000, 4, 2);
+		try {
+			client.open(new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/missing.arff"));
+			assertTrue("Expected an IOException", false);
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("404"));
+		} finally {
+			client.close();
+			server.stop(0);
+		}
+	}
+	
+	@Test
+	public void testCorruptEncoding() throws Exception {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] body = "not gzip".getBytes("UTF-8");
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+				exchange.close();
+			}
+		});
+		server.start();
+		
+		// a single connection, so a leaked one blocks the next request
+		DownloadClient client = new DownloadClient(1000, 1000, 500, 1, 1, 0);
+		try {
+			URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/data.arff");
+			for (int i = 0; i < 3; ++i) {
+				try {
+					client.open(url);
+					assertTrue("Expected an IOException", false);
+				} catch (ConnectionPoolTimeoutException e) {
+					throw e;
+				} catch (IOException e) {
+					// the corrupt header
+				}
+			}
+		} finally {
+			client.close();
+			server.stop(0);
+		}
+	}
+	
+	private static HttpServer startServer(final byte[] body, final boolean truncate) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body, 0, truncate ? body.length / 2 : body.length);
+				exchange.getResponseBody().flush();
+				exchange.close();
+			}
+		});
+		server.start();
+		return server;
+	}
+	
+	@Test
+	public void testOpenAndStore() throws Exception {
+		byte[] body = TestDatasetCache.ARFF_DENSE.getBytes("UTF-8");
+		HttpServer server = startServer(body, false);
+		File directory = Files.createTempDirectory("download").toFile();
+		File target = new File(directory, "dataset.arff");
+		
+		DownloadClient client = new DownloadClient(1000, 1000, 4, 2);
+		try {
+			URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/data.arff");
+			
+			// a checksum mismatch does not leave a file behind
+			Reader reader = new BufferedReader(new InputStreamReader(client.openAndStore(url, target, "0123456789abcdef0123456789abcdef")));
+			StreamingArffLoader.load(reader, Collections.<String>emptyList());
+			try {
+				reader.close();
+				assertTrue("Expected an IOException", false);
+			} catch (IOException e) {
+				assertTrue(e.getMessage().contains("Checksum mismatch"));
+			}
+			assertEquals(0, directory.listFiles().length);
+			
+			// parsed while it is stored
+			reader = new BufferedReader(new InputStreamReader(client.openAndStore(url, target, DownloadClient.md5(TestDatasetCache.ARFF_DENSE))));
+			Instances instances = StreamingArffLoader.load(reader, Collections.<String>emptyList());
+			reader.close();
+			assertEquals(new Instances(new StringReader(TestDatasetCache.ARFF_DENSE)).toString(), instances.toString());
+			assertArrayEquals(body, Files.readAllBytes(target.toPath()));
+			assertEquals(1, directory.listFiles().length);
+		} finally {
+			client.close();
+			server.stop(0);
+			target.delete();
+			directory.delete();
+		}
+	}
+	
+	@Test
+	public void testOpenAndStoreInterrupted() throws Exception {
+		HttpServer server = startServer(TestDatasetCache.ARFF_DENSE.getBytes("UTF-8"), true);
+		File directory = Files.createTempDirectory("download").toFile();
+		File target = new File(directory, "dataset.arff");
+		
+		DownloadClient client = new DownloadClient(1000, 1000, 4, 2);
+		try {
+			URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/data.arff");
+			InputStream in = client.openAndStore(url, target, null);
+			try {
+				consume(in);
+				assertTrue("Expected an IOException", false);
+			} catch (IOException e) {
+				// the connection was closed before the end of the body
+			}
+			in.close();
+			assertFalse(target.exists());
+			assertEquals(0, directory.listFiles().length);
+		} finally {
+			client.close();
+			server.stop(0);
+			directory.delete();
+		}
+	}
+}
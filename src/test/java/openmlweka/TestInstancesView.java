@@ -0,0 +1,116 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.openml.apiconnector.xml.EstimationProcedure;
+import org.openml.apiconnector.xml.EstimationProcedureType;
+import org.openml.weka.algorithm.DataSplits;
+import org.openml.weka.algorithm.InstancesView;
+
+import weka.classifiers.AbstractClassifier;
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class TestInstancesView extends BaseTestFramework {
+	
+	@Test
+	public void testFoldViews() throws Exception {
+		Instances dataset = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		for (int i = 0; i < 3; ++i) {
+			dataset.addAll(new Instances(dataset));
+		}
+		dataset.setClassIndex(dataset.numAttributes() - 1);
+		EstimationProcedure ep = new EstimationProcedure(1, 1, "2-fold Crossvalidation", EstimationProcedureType.CROSSVALIDATION, 1, 2, null, "true");
+		DataSplits splits = new DataSplits(1, ep, dataset, TestSparseRepresentation.getSplits(dataset.numInstances(), 2));
+		
+		for (int fold = 0; fold < 2; ++fold) {
+			Instances train = splits.getTrainingSet(0, fold);
+			Instances test = splits.getTestSet(0, fold);
+			assertEquals(dataset.numInstances(), train.numInstances() + test.numInstances());
+			assertEquals(dataset.classIndex(), train.classIndex());
+			
+			// the view holds copies of the instances of the dataset
+			int[] rows = ((InstancesView) test).getRows();
+			assertEquals(splits.getTestSetRowIds(0, fold, 0).length, rows.length);
+			Instances copy = new Instances(dataset, 0);
+			for (int i = 0; i < rows.length; ++i) {
+				assertNotSame(dataset.instance(rows[i]), test.instance(i));
+				assertSame(test, test.instance(i).dataset());
+				assertEquals(dataset.instance(rows[i]).toString(), test.instance(i).toString());
+				assertEquals(rows[i], splits.getTestSetRowIds(0, fold, 0)[i]);
+				copy.add(dataset.instance(rows[i]));
+			}
+			assertEquals(copy.toString(), test.toString());
+			
+			// a copy of a view is a regular dataset
+			Instances trainCopy = new Instances(train);
+			assertEquals(train.toString(), trainCopy.toString());
+			assertNotSame(train.instance(0), trainCopy.instance(0));
+		}
+	}
+	
+	@Test
+	public void testReweightingClassifier() throws Exception {
+		Instances dataset = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		dataset.setClassIndex(dataset.numAttributes() - 1);
+		EstimationProcedure ep = new EstimationProcedure(1, 1, "3-fold Crossvalidation", EstimationProcedureType.CROSSVALIDATION, 1, 3, null, "true");
+		DataSplits splits = new DataSplits(1, ep, dataset, TestSparseRepresentation.getSplits(dataset.numInstances(), 3));
+		
+		// the training sets of the folds overlap
+		for (int fold = 0; fold < 3; ++fold) {
+			Instances train = splits.getTrainingSet(0, fold);
+			for (Instance instance : train) {
+				assertEquals(1.0, instance.weight(), 0.0);
+			}
+			new ReweightingClassifier().buildClassifier(train);
+		}
+		for (Instance instance : dataset) {
+			assertEquals(1.0, instance.weight(), 0.0);
+		}
+	}
+	
+	/**
+	 * Modifies its training data in place, as e.g. boosting schemes may do
+	 */
+	private static class ReweightingClassifier extends AbstractClassifier {
+		
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		public void buildClassifier(Instances data) throws Exception {
+			for (Instance instance : data) {
+				instance.setWeight(instance.weight() * 2);
+			}
+		}
+		
+		@Override
+		public double classifyInstance(Instance instance) throws Exception {
+			return 0;
+		}
+	}
+	
+	@Test
+	public void testLazyMaterialisation() throws Exception {
+		Instances dataset = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		EstimationProcedure ep = new EstimationProcedure(1, 1, "2-fold Crossvalidation", EstimationProcedureType.CROSSVALIDATION, 1, 2, null, "true");
+		DataSplits splits = new DataSplits(1, ep, dataset, TestSparseRepresentation.getSplits(dataset.numInstances(), 2));
+		assertEquals(0, splits.getNumMaterialized());
+		
+		Instances train = splits.getTrainingSet(0, 1);
+		assertEquals(1, splits.getNumMaterialized());
+		assertSame(train, splits.getTrainingSet(0, 1, null));
+		splits.getTestSet(0, 1);
+		splits.getTestSet(0, 0, 0);
+		assertEquals(2, splits.getNumMaterialized());
+		
+		splits.release(0, 1, null);
+		assertEquals(1, splits.getNumMaterialized());
+		assertNotSame(train, splits.getTrainingSet(0, 1));
+		assertEquals(train.toString(), splits.getTrainingSet(0, 1).toString());
+	}
+}
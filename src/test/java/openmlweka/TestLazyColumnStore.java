@@ -0,0 +1,124 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+import org.openml.apiconnector.xml.DataSetDescription;
+import org.openml.weka.algorithm.DatasetStorage;
+import org.openml.weka.algorithm.StoredInstance;
+import org.openml.weka.io.BinaryInstancesFormat;
+import org.openml.weka.io.DatasetCache;
+import org.openml.weka.io.DatasetPool;
+import org.openml.weka.io.LazyColumnStore;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+public class TestLazyColumnStore extends BaseTestFramework {
+	
+	private static Instances getLazy(Instances dataset) throws Exception {
+		File file = File.createTempFile("lazy", ".bin");
+		file.deleteOnExit();
+		BinaryInstancesFormat.write(dataset, file);
+		return LazyColumnStore.load(file);
+	}
+	
+	private static LazyColumnStore getStore(Instances lazy) {
+		return (LazyColumnStore) ((StoredInstance) lazy.instance(0)).getStore();
+	}
+	
+	@Test
+	public void testLazyEqualsHeap() throws Exception {
+		Instances dataset = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		dataset.instance(2).setWeight(0.5);
+		Instances lazy = getLazy(dataset);
+		assertEquals(0, getStore(lazy).numLoadedColumns());
+		assertEquals(dataset.toString(), lazy.toString());
+		assertEquals(0.5, lazy.instance(2).weight(), 0.0);
+		assertEquals(dataset.numAttributes(), getStore(lazy).numLoadedColumns());
+	}
+	
+	@Test
+	public void testOnlyAccessedColumns() throws Exception {
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		for (int j = 0; j < 100; ++j) {
+			attributes.add(new Attribute("gene" + j));
+		}
+		Instances wide = new Instances("wide", attributes, 10);
+		for (int i = 0; i < 10; ++i) {
+			double[] values = new double[100];
+			for (int j = 0; j < 100; ++j) {
+				values[j] = i * 100 + j;
+			}
+			wide.add(new DenseInstance(1.0, values));
+		}
+		
+		Instances lazy = getLazy(wide);
+		lazy.setClassIndex(99);
+		assertEquals(0, getStore(lazy).numLoadedColumns());
+		assertEquals(937.0, lazy.instance(9).value(37), 0.0);
+		assertEquals(99.0, lazy.instance(0).classValue(), 0.0);
+		assertEquals(2, getStore(lazy).numLoadedColumns());
+		assertEquals(wide.toString(), lazy.toString());
+	}
+	
+	@Test
+	public void testClosedOnEviction() throws Exception {
+		final Instances dataset = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		DatasetPool pool = new DatasetPool(0);
+		Instances lazy = pool.acquire("a", new Callable<Instances>() {
+			@Override
+			public Instances call() throws Exception {
+				return getLazy(dataset);
+			}
+		});
+		LazyColumnStore store = getStore(lazy);
+		assertTrue(store.isOpen());
+		
+		// still in use
+		pool.setMaxBytes(0);
+		assertTrue(store.isOpen());
+		
+		pool.release("a");
+		assertEquals(0, pool.size());
+		assertFalse(store.isOpen());
+	}
+	
+	@Test
+	public void testCacheWithLazyStorage() throws Exception {
+		File directory = Files.createTempDirectory("dataset_cache").toFile();
+		DatasetCache cache = new DatasetCache(directory, 1024 * 1024, DatasetStorage.LAZY);
+		DataSetDescription dsd = TestDatasetCache.getDataSetDescription(1, "abc");
+		
+		Instances dense = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		cache.put(dsd, dense);
+		Instances lazy = cache.get(dsd);
+		assertTrue(lazy.instance(0) instanceof StoredInstance);
+		
+		// columns can still be read after the file is evicted
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+		assertEquals(dense.toString(), lazy.toString());
+		
+		// sparse data falls back to the heap
+		cache = new DatasetCache(Files.createTempDirectory("dataset_cache").toFile(), 1024 * 1024, DatasetStorage.LAZY);
+		Instances sparse = new Instances(new StringReader(TestDatasetCache.ARFF_SPARSE));
+		cache.put(dsd, sparse);
+		assertEquals(sparse.toString(), cache.get(dsd).toString());
+		for (File file : cache.getDirectory().listFiles()) {
+			file.deleteOnExit();
+		}
+		cache.getDirectory().deleteOnExit();
+	}
+}
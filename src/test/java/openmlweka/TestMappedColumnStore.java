@@ -0,0 +1,91 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.openml.apiconnector.xml.DataSetDescription;
+import org.openml.weka.algorithm.DatasetStorage;
+import org.openml.weka.algorithm.StoredInstance;
+import org.openml.weka.io.BinaryInstancesFormat;
+import org.openml.weka.io.DatasetCache;
+import org.openml.weka.io.MappedColumnStore;
+
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class TestMappedColumnStore extends BaseTestFramework {
+	
+	private static Instances getMapped(Instances dataset) throws Exception {
+		File file = File.createTempFile("mapped", ".bin");
+		file.deleteOnExit();
+		BinaryInstancesFormat.write(dataset, file);
+		return MappedColumnStore.load(file);
+	}
+	
+	@Test
+	public void testMappedEqualsHeap() throws Exception {
+		Instances dataset = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		Instances mapped = getMapped(dataset);
+		assertEquals(dataset.toString(), mapped.toString());
+		assertTrue(mapped.instance(0) instanceof StoredInstance);
+		
+		mapped.setClassIndex(mapped.numAttributes() - 1);
+		dataset.setClassIndex(dataset.numAttributes() - 1);
+		assertEquals(dataset.attributeStats(0).toString(), mapped.attributeStats(0).toString());
+		assertEquals(dataset.instance(0).classValue(), mapped.instance(0).classValue(), 0.0);
+	}
+	
+	@Test
+	public void testCopyOnWrite() throws Exception {
+		Instances mapped = getMapped(new Instances(new StringReader(TestDatasetCache.ARFF_DENSE)));
+		Instance original = mapped.instance(0);
+		Instance copy = (Instance) original.copy();
+		copy.setValue(0, 42.0);
+		assertEquals(42.0, copy.value(0), 0.0);
+		assertEquals(1.5, original.value(0), 0.0);
+		assertEquals(1.5, getMapped(mapped).instance(0).value(0), 0.0);
+		
+		Instance second = (Instance) copy.copy();
+		second.setMissing(0);
+		assertEquals(42.0, copy.value(0), 0.0);
+		assertTrue(second.isMissing(0));
+	}
+	
+	@Test
+	public void testSerializesAsDenseInstance() throws Exception {
+		Instances mapped = getMapped(new Instances(new StringReader(TestDatasetCache.ARFF_DENSE)));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(mapped);
+		out.close();
+		Instances restored = (Instances) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertTrue(restored.instance(0) instanceof DenseInstance);
+		assertEquals(mapped.toString(), restored.toString());
+	}
+	
+	@Test
+	public void testCacheWithMappedStorage() throws Exception {
+		File directory = Files.createTempDirectory("dataset_cache").toFile();
+		DatasetCache cache = new DatasetCache(directory, 1024 * 1024, DatasetStorage.MAPPED);
+		DataSetDescription dsd = TestDatasetCache.getDataSetDescription(1, "abc");
+		
+		Instances dense = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		cache.put(dsd, dense);
+		assertTrue(cache.get(dsd).instance(0) instanceof StoredInstance);
+		
+		// sparse data falls back to the heap
+		Instances sparse = new Instances(new StringReader(TestDatasetCache.ARFF_SPARSE));
+		cache.put(dsd, sparse);
+		assertEquals(sparse.toString(), cache.get(dsd).toString());
+	}
+}
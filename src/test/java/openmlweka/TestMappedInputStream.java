@@ -0,0 +1,52 @@
+package openmlweka;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.openml.weka.io.MappedInputStream;
+
+public class TestMappedInputStream extends BaseTestFramework {
+	
+	private static byte[] readFully(InputStream in) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[7];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+	
+	@Test
+	public void testRegions() throws Exception {
+		StringBuilder sb = new StringBuilder(TestDatasetCache.ARFF_DENSE);
+		for (int i = 0; i < 1000; ++i) {
+			sb.append(i + ",a,'row " + i + "',yes\n");
+		}
+		byte[] content = sb.toString().getBytes();
+		File file = File.createTempFile("mapped", ".arff");
+		file.deleteOnExit();
+		Files.write(file.toPath(), content);
+		
+		assertArrayEquals(content, readFully(new MappedInputStream(file)));
+		assertArrayEquals(Arrays.copyOfRange(content, 100, 2000), readFully(new MappedInputStream(file, 100, 2000)));
+		assertEquals(0, readFully(new MappedInputStream(file, 50, 50)).length);
+		// the end is limited to the file size
+		assertArrayEquals(Arrays.copyOfRange(content, 10, content.length), readFully(new MappedInputStream(file, 10, content.length + 100)));
+		
+		InputStream in = new MappedInputStream(file, 0, 200);
+		assertEquals(content[0], in.read());
+		assertEquals(50, in.skip(50));
+		assertEquals(content[51], in.read());
+		assertEquals(148, in.available());
+		in.close();
+	}
+}
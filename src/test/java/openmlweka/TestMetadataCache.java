@@ -0,0 +1,138 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+import org.openml.apiconnector.xml.DataSetDescription;
+import org.openml.weka.io.MetadataCache;
+
+public class TestMetadataCache extends BaseTestFramework {
+	
+	private static class CountingLoader implements Callable<DataSetDescription> {
+		private final int id;
+		private int calls = 0;
+		
+		private CountingLoader(int id) {
+			this.id = id;
+		}
+		
+		@Override
+		public DataSetDescription call() throws Exception {
+			++calls;
+			return TestDatasetCache.getDataSetDescription(id, "abc");
+		}
+	}
+	
+	@Test
+	public void testMemory() throws Exception {
+		MetadataCache cache = new MetadataCache(60000, null);
+		CountingLoader loader = new CountingLoader(1);
+		DataSetDescription first = cache.get("data", 1, loader);
+		DataSetDescription second = cache.get("data", 1, loader);
+		assertSame(first, second);
+		assertEquals(1, loader.calls);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		
+		// different type, same id
+		cache.get("task", 1, loader);
+		assertEquals(2, loader.calls);
+	}
+	
+	@Test
+	public void testExpiry() throws Exception {
+		MetadataCache cache = new MetadataCache(-1, null);
+		CountingLoader loader = new CountingLoader(1);
+		cache.get("data", 1, loader);
+		cache.get("data", 1, loader);
+		assertEquals(2, loader.calls);
+		assertEquals(0, cache.getHits());
+	}
+	
+	@Test
+	public void testPersistent() throws Exception {
+		File directory = Files.createTempDirectory("metadata_cache").toFile();
+		directory.deleteOnExit();
+		CountingLoader loader = new CountingLoader(2);
+		new MetadataCache(60000, directory).get("data", 2, loader);
+		assertEquals(1, loader.calls);
+		
+		// a new cache, as in a subsequent run, reads the stored xml
+		MetadataCache cache = new MetadataCache(60000, directory);
+		DataSetDescription dsd = cache.get("data", 2, loader);
+		assertEquals(1, loader.calls);
+		assertEquals(1, cache.getHits());
+		assertEquals(2, (int) dsd.getId());
+		assertEquals("abc", dsd.getMd5_checksum());
+		for (File file : directory.listFiles()) {
+			file.deleteOnExit();
+		}
+	}
+	
+	@Test
+	public void testServerDirectories() throws Exception {
+		File directory = Files.createTempDirectory("metadata_cache").toFile();
+		directory.deleteOnExit();
+		CountingLoader loader = new CountingLoader(3);
+		MetadataCache production = new MetadataCache("https://www.openml.org/api/v1/", 60000, directory, 10);
+		MetadataCache test = new MetadataCache("https://test.openml.org/api/v1/", 60000, directory, 10);
+		production.get("data", 3, loader);
+		
+		// the same id on another server is a different object
+		test.get("data", 3, loader);
+		assertEquals(2, loader.calls);
+		assertEquals(new File(directory, "www.openml.org"), production.getDirectory());
+		assertEquals(new File(directory, "test.openml.org"), test.getDirectory());
+		assertEquals("localhost_8080", MetadataCache.getDirectoryName("http://localhost:8080/api/v1/"));
+		
+		for (File server : directory.listFiles()) {
+			for (File file : server.listFiles()) {
+				file.deleteOnExit();
+			}
+			server.deleteOnExit();
+		}
+	}
+	
+	@Test
+	public void testBounded() throws Exception {
+		MetadataCache cache = new MetadataCache(null, 60000, null, 2);
+		CountingLoader loader = new CountingLoader(1);
+		cache.get("data", 1, loader);
+		cache.get("data", 2, loader);
+		cache.get("data", 1, loader);
+		cache.get("data", 3, loader);
+		assertEquals(2, cache.size());
+		assertEquals(3, loader.calls);
+		
+		// the least recently used entry was removed
+		cache.get("data", 1, loader);
+		assertEquals(3, loader.calls);
+		cache.get("data", 2, loader);
+		assertEquals(4, loader.calls);
+	}
+	
+	@Test
+	public void testExpiredEntriesRemoved() throws Exception {
+		File directory = Files.createTempDirectory("metadata_cache").toFile();
+		directory.deleteOnExit();
+		CountingLoader loader = new CountingLoader(4);
+		new MetadataCache(60000, directory).get("data", 4, loader);
+		assertEquals(1, directory.listFiles().length);
+		
+		// expired entries are removed from memory when the cache is full
+		MetadataCache cache = new MetadataCache(null, -1, directory, 2);
+		cache.get("data", 4, loader);
+		cache.get("data", 5, loader);
+		assertEquals(2, cache.size());
+		cache.get("data", 6, loader);
+		assertEquals(1, cache.size());
+		for (File file : directory.listFiles()) {
+			file.deleteOnExit();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.openml.apiconnector.xml.DataSetDescription;
+import org.openml.weka.algorithm.DatasetStorage;
+import org.openml.weka.algorithm.StoredInstance;
+import org.openml.weka.io.BinaryInstancesFormat;
+import org.openml.weka.io.DatasetCache;
+import org.openml.weka.io.OffHeapColumnStore;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class TestOffHeapColumnStore extends BaseTestFramework {
+	
+	@Test
+	public void testLoadEqualsHeap() throws Exception {
+		Instances dataset = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		dataset.instance(1).setWeight(3.0);
+		File file = File.createTempFile("offheap", ".bin");
+		file.deleteOnExit();
+		BinaryInstancesFormat.write(dataset, file);
+		
+		Instances offHeap = OffHeapColumnStore.load(file);
+		// the file is no longer needed
+		file.delete();
+		assertTrue(offHeap.instance(0) instanceof StoredInstance);
+		assertEquals(dataset.toString(), offHeap.toString());
+		assertEquals(3.0, offHeap.instance(1).weight(), 0.0);
+		
+		OffHeapColumnStore store = (OffHeapColumnStore) ((StoredInstance) offHeap.instance(0)).getStore();
+		assertEquals(4 * 5 * 8, store.sizeInBytes());
+	}
+	
+	@Test(expected = IOException.class)
+	public void testLoadSparse() throws Exception {
+		File file = File.createTempFile("offheap", ".bin");
+		file.deleteOnExit();
+		BinaryInstancesFormat.write(new Instances(new StringReader(TestDatasetCache.ARFF_SPARSE)), file);
+		OffHeapColumnStore.load(file);
+	}
+	
+	@Test
+	public void testStore() throws Exception {
+		Instances dataset = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		String expected = dataset.toString();
+		Instances offHeap = OffHeapColumnStore.store(dataset);
+		assertTrue(offHeap.instance(3) instanceof StoredInstance);
+		assertEquals(expected, offHeap.toString());
+		
+		// modifications stay on the heap, in a private copy
+		Instance copy = (Instance) offHeap.instance(0).copy();
+		copy.setValue(0, 7.0);
+		assertEquals(1.5, offHeap.instance(0).value(0), 0.0);
+		
+		Instances sparse = new Instances(new StringReader(TestDatasetCache.ARFF_SPARSE));
+		assertTrue(!(OffHeapColumnStore.store(sparse).instance(0) instanceof StoredInstance));
+	}
+	
+	@Test
+	public void testCacheWithOffHeapStorage() throws Exception {
+		File directory = Files.createTempDirectory("dataset_cache").toFile();
+		DataSetDescription dsd = TestDatasetCache.getDataSetDescription(1, "abc");
+		Instances dense = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		
+		DatasetCache cache = new DatasetCache(directory, 1024 * 1024, DatasetStorage.OFFHEAP);
+		cache.put(dsd, dense);
+		Instances offHeap = cache.get(dsd);
+		assertTrue(offHeap.instance(0) instanceof StoredInstance);
+		assertEquals(dense.toString(), offHeap.toString());
+		
+		// datasets that do not fit in the cache are converted in memory
+		DatasetCache small = new DatasetCache(directory, 1, DatasetStorage.OFFHEAP);
+		assertTrue(small.toStorage(new Instances(dense)).instance(0) instanceof StoredInstance);
+		for (File file : directory.listFiles()) {
+			file.deleteOnExit();
+		}
+		directory.deleteOnExit();
+	}
+}
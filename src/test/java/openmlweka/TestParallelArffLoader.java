@@ -0,0 +1,119 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openml.weka.io.ParallelArffLoader;
+import org.openml.weka.io.StreamingArffLoader;
+
+import weka.core.Instances;
+
+public class TestParallelArffLoader extends BaseTestFramework {
+	
+	private static String generateDense(int numRows, boolean strings) {
+		Random random = new Random(42);
+		StringBuilder arff = new StringBuilder();
+		arff.append("% generated\n@relation test\n\n");
+		arff.append("@attribute id numeric\n@attribute num numeric\n@attribute nom {a,b,c}\n");
+		arff.append(strings ? "@attribute str string\n" : "@attribute str {s}\n");
+		arff.append("@attribute date date \"yyyy-MM-dd\"\n@attribute class {yes,no}\n\n@DATA\n");
+		for (int i = 0; i < numRows; ++i) {
+			if (i % 50 == 0) {
+				arff.append("% comment " + i + "\n");
+			}
+			arff.append(i + ",");
+			arff.append(random.nextInt(10) == 0 ? "?" : Double.toString(random.nextGaussian()));
+			arff.append("," + "abc?".charAt(random.nextInt(4)));
+			arff.append(strings ? ",'s" + random.nextInt(numRows / 4) + "'" : ",s");
+			arff.append(",2017-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10));
+			arff.append("," + (random.nextBoolean() ? "yes" : "no"));
+			if (i % 7 == 0) {
+				arff.append(",{" + (i % 3 + 1) + "}");
+			}
+			arff.append("\n");
+		}
+		return arff.toString();
+	}
+	
+	private static String generateSparse(int numRows) {
+		Random random = new Random(7);
+		StringBuilder arff = new StringBuilder();
+		arff.append("@relation sparse\n");
+		for (int i = 0; i < 20; ++i) {
+			arff.append("@attribute w" + i + " numeric\n");
+		}
+		arff.append("@attribute nom {u,v,w}\n@attribute class {x,y}\n@data\n");
+		for (int i = 0; i < numRows; ++i) {
+			arff.append("{" + random.nextInt(10) + " 1," + (10 + random.nextInt(10)) + " 2");
+			if (random.nextBoolean()) {
+				arff.append(",20 " + "uvw".charAt(random.nextInt(3)));
+			}
+			arff.append(",21 " + (random.nextBoolean() ? "x" : "y") + "}\n");
+		}
+		return arff.toString();
+	}
+	
+	private static File write(String arff) throws Exception {
+		File file = File.createTempFile("parallel", ".arff");
+		file.deleteOnExit();
+		FileWriter writer = new FileWriter(file);
+		writer.write(arff);
+		writer.close();
+		return file;
+	}
+	
+	private static void doCheck(String arff, List<String> removeAttributes) throws Exception {
+		File file = write(arff);
+		Instances expected = StreamingArffLoader.load(new StringReader(arff), removeAttributes);
+		Instances parallel = ParallelArffLoader.load(file, removeAttributes, 4, 1024);
+		assertEquals(expected.toString(), parallel.toString());
+		assertEquals(expected.numInstances(), parallel.numInstances());
+		for (int i = 0; i < expected.numAttributes(); ++i) {
+			assertEquals(expected.attribute(i).numValues(), parallel.attribute(i).numValues());
+			for (int j = 0; j < expected.attribute(i).numValues(); ++j) {
+				assertEquals(expected.attribute(i).value(j), parallel.attribute(i).value(j));
+			}
+		}
+		for (int i = 0; i < expected.numInstances(); ++i) {
+			assertEquals(expected.instance(i).weight(), parallel.instance(i).weight(), 0.0);
+		}
+	}
+	
+	@Test
+	public void testDense() throws Exception {
+		doCheck(generateDense(2000, false), Arrays.<String>asList());
+		doCheck(generateDense(2000, false), Arrays.asList("id"));
+		doCheck(generateDense(2000, false), Arrays.asList("num", "str"));
+	}
+	
+	@Test
+	public void testStrings() throws Exception {
+		// parsed sequentially, also when the string attribute is removed
+		doCheck(generateDense(2000, true), Arrays.<String>asList());
+		doCheck(generateDense(2000, true), Arrays.asList("num", "str"));
+	}
+	
+	@Test
+	public void testSparse() throws Exception {
+		doCheck(generateSparse(2000), Arrays.<String>asList());
+		doCheck(generateSparse(2000), Arrays.asList("w3"));
+	}
+	
+	@Test
+	public void testSmallFile() throws Exception {
+		// parsed sequentially
+		doCheck(TestDatasetCache.ARFF_DENSE, Arrays.asList("nom"));
+	}
+	
+	@Test(expected = java.io.IOException.class)
+	public void testInvalidRow() throws Exception {
+		ParallelArffLoader.load(write(generateDense(2000, false) + "1,2,d,s,2017-01-01,yes\n"), null, 4, 1024);
+	}
+}
@@ -0,0 +1,134 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.openml.weka.io.ParquetLoader;
+import org.openml.weka.io.StreamingArffLoader;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class TestParquetLoader extends BaseTestFramework {
+	
+	/**
+	 * The fixture has two row groups and covers plain and dictionary 
+	 * encoding, data pages of version 1 and 2, optional columns and the 
+	 * uncompressed, snappy and gzip codecs. It is written by 
+	 * generate_mixed.py in the same resource directory. 
+	 */
+	private static final File FIXTURE = new File(TestParquetLoader.class.getResource("/parquet/mixed.parquet").getFile());
+	
+	private static final String EXPECTED = 
+		"@relation mixed\n" + 
+		"@attribute num numeric\n" + 
+		"@attribute nom {a,'b c',d}\n" + 
+		"@attribute cnt numeric\n" + 
+		"@attribute str string\n" + 
+		"@attribute class {yes,no}\n" + 
+		"@attribute flag numeric\n" + 
+		"@data\n" + 
+		"1.5,a,10,'hello world',yes,1\n" + 
+		"?,'b c',20,foo,no,0\n" + 
+		"-3.25,?,30,hello,no,1\n" + 
+		"0,a,40,foo,yes,1\n" + 
+		"7,d,50,x,yes,0\n" + 
+		"?,a,60,y,no,0\n";
+	
+	/** The same dataset as the fixture, as it would be served as ARFF **/
+	private static final String ARFF = 
+		"@relation mixed\n" + 
+		"@attribute num numeric\n" + 
+		"@attribute nom {a,'b c',d}\n" + 
+		"@attribute cnt numeric\n" + 
+		"@attribute str string\n" + 
+		"@attribute rowid numeric\n" + 
+		"@attribute class {yes,no}\n" + 
+		"@attribute flag numeric\n" + 
+		"@data\n" + 
+		"1.5,a,10,'hello world',100,yes,1\n" + 
+		"?,'b c',20,foo,101,no,0\n" + 
+		"-3.25,?,30,hello,102,no,1\n" + 
+		"0,a,40,foo,103,yes,1\n" + 
+		"7,d,50,x,104,yes,0\n" + 
+		"?,a,60,y,105,no,0\n";
+	
+	private static Map<String, String[]> getNominalValues() {
+		Map<String, String[]> nominalValues = new HashMap<String, String[]>();
+		nominalValues.put("nom", new String[] {"a", "b c", "d"});
+		nominalValues.put("class", new String[] {"yes", "no"});
+		return nominalValues;
+	}
+	
+	@Test
+	public void testLoad() throws Exception {
+		Instances expected = new Instances(new StringReader(EXPECTED));
+		Instances loaded = ParquetLoader.load(FIXTURE, Arrays.asList("rowid"), getNominalValues(), "mixed");
+		assertEquals(expected.toString(), loaded.toString());
+	}
+	
+	@Test
+	public void testSameAsArff() throws Exception {
+		Instances arff = StreamingArffLoader.load(new StringReader(ARFF), Arrays.asList("rowid"));
+		Instances parquet = ParquetLoader.load(FIXTURE, Arrays.asList("rowid"), getNominalValues(), "mixed");
+		assertNull(arff.equalHeadersMsg(parquet));
+		assertEquals(arff.numInstances(), parquet.numInstances());
+		for (int i = 0; i < arff.numInstances(); ++i) {
+			Instance expected = arff.instance(i);
+			Instance actual = parquet.instance(i);
+			assertEquals(expected.weight(), actual.weight(), 0.0);
+			for (int j = 0; j < arff.numAttributes(); ++j) {
+				assertEquals(expected.isMissing(j), actual.isMissing(j));
+				if (expected.isMissing(j)) {
+					continue;
+				} else if (arff.attribute(j).isString()) {
+					// string values are indices into the attribute of each dataset
+					assertEquals(expected.stringValue(j), actual.stringValue(j));
+				} else {
+					assertEquals(expected.value(j), actual.value(j), 0.0);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testColumnPruning() throws Exception {
+		Instances expected = new Instances(new StringReader(EXPECTED));
+		expected.deleteAttributeAt(expected.attribute("str").index());
+		expected.deleteAttributeAt(expected.attribute("num").index());
+		Instances loaded = ParquetLoader.load(FIXTURE, Arrays.asList("rowid", "str", "num"), getNominalValues(), "mixed");
+		assertEquals(expected.toString(), loaded.toString());
+	}
+	
+	@Test
+	public void testWithoutNominalValues() throws Exception {
+		Instances loaded = ParquetLoader.load(FIXTURE, null, null, "mixed");
+		assertEquals(7, loaded.numAttributes());
+		assertEquals(6, loaded.numInstances());
+		assertEquals(true, loaded.attribute("nom").isString());
+		assertEquals("b c", loaded.instance(1).stringValue(loaded.attribute("nom")));
+		assertEquals(105.0, loaded.instance(5).value(loaded.attribute("rowid")), 0.0);
+	}
+	
+	@Test(expected = IOException.class)
+	public void testUndeclaredNominalValue() throws Exception {
+		Map<String, String[]> nominalValues = getNominalValues();
+		nominalValues.put("nom", new String[] {"a", "d"});
+		ParquetLoader.load(FIXTURE, Arrays.asList("rowid"), nominalValues, "mixed");
+	}
+	
+	@Test(expected = IOException.class)
+	public void testNotParquet() throws Exception {
+		File file = File.createTempFile("dataset", ".parquet");
+		file.deleteOnExit();
+		ParquetLoader.load(file, null, null, "empty");
+	}
+}
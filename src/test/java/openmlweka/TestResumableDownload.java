@@ -0,0 +1,230 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+import org.openml.weka.io.CompressedStreams;
+import org.openml.weka.io.DownloadClient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class TestResumableDownload extends BaseTestFramework {
+	
+	private static final byte[] CONTENT;
+	static {
+		StringBuilder sb = new StringBuilder(TestDatasetCache.ARFF_DENSE);
+		for (int i = 0; i < 2000; ++i) {
+			sb.append(i + ",a,'row " + i + "',yes\n");
+		}
+		CONTENT = sb.toString().getBytes();
+	}
+	
+	/**
+	 * Serves the content with Range support. The first response is cut off 
+	 * halfway, to simulate a broken connection. 
+	 */
+	private static HttpServer startServer(final byte[] content, final boolean gzip, final List<String> ranges) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String range = exchange.getRequestHeaders().getFirst("Range");
+				ranges.add(range);
+				int offset = range == null ? 0 : Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+				if (gzip) {
+					exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				}
+				if (range != null) {
+					exchange.getResponseHeaders().set("Content-Range", "bytes " + offset + "-" + (content.length - 1) + "/" + content.length);
+					exchange.sendResponseHeaders(206, content.length - offset);
+				} else {
+					exchange.sendResponseHeaders(200, content.length);
+				}
+				if (ranges.size() == 1) {
+					// break the connection halfway
+					exchange.getResponseBody().write(content, offset, (content.length - offset) / 2);
+					exchange.getResponseBody().flush();
+					exchange.close();
+					return;
+				}
+				exchange.getResponseBody().write(content, offset, content.length - offset);
+				exchange.close();
+			}
+		});
+		server.start();
+		return server;
+	}
+	
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			bytes.write(buffer, 0, read);
+		}
+		in.close();
+		return bytes.toByteArray();
+	}
+	
+	private static File tempTarget() throws IOException {
+		File dir = Files.createTempDirectory("download").toFile();
+		dir.deleteOnExit();
+		return new File(dir, "dataset.arff");
+	}
+	
+	private static String md5(byte[] content) throws IOException {
+		File tmp = File.createTempFile("content", ".bin");
+		FileOutputStream out = new FileOutputStream(tmp);
+		out.write(content);
+		out.close();
+		String md5 = DownloadClient.md5(tmp);
+		tmp.delete();
+		return md5;
+	}
+	
+	@Test
+	public void testResume() throws Exception {
+		List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+		HttpServer server = startServer(CONTENT, false, ranges);
+		DownloadClient client = new DownloadClient(1000, 1000, 4, 2, 3);
+		try {
+			File target = tempTarget();
+			URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/dataset.arff");
+			File result = client.download(url, target, md5(CONTENT));
+			assertEquals(target, result);
+			assertEquals(2, ranges.size());
+			assertEquals(null, ranges.get(0));
+			assertEquals("bytes=" + (CONTENT.length / 2) + "-", ranges.get(1));
+			assertEquals(new String(CONTENT), new String(readAll(CompressedStreams.open(result))));
+			assertFalse(new File(target.getAbsolutePath() + ".part").exists());
+		} finally {
+			client.close();
+			server.stop(0);
+		}
+	}
+	
+	@Test
+	public void testConcurrentDownloads() throws Exception {
+		List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+		HttpServer server = startServer(CONTENT, false, ranges);
+		final DownloadClient client = new DownloadClient(1000, 1000, 4, 2, 3);
+		try {
+			final File target = tempTarget();
+			final URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/dataset.arff");
+			final String md5 = md5(CONTENT);
+			final List<Object> results = Collections.synchronizedList(new ArrayList<Object>());
+			List<Thread> threads = new ArrayList<Thread>();
+			for (int i = 0; i < 4; ++i) {
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							results.add(client.download(url, target, md5));
+						} catch (IOException e) {
+							results.add(e);
+						}
+					}
+				});
+				thread.start();
+				threads.add(thread);
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			
+			// downloaded once, the others waited for it
+			assertEquals(Collections.nCopies(4, target), results);
+			assertEquals(2, ranges.size());
+			assertEquals(new String(CONTENT), new String(readAll(CompressedStreams.open(target))));
+		} finally {
+			client.close();
+			server.stop(0);
+		}
+	}
+	
+	@Test
+	public void testResumeCompressed() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+		gzip.write(CONTENT);
+		gzip.close();
+		
+		List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+		HttpServer server = startServer(bytes.toByteArray(), true, ranges);
+		DownloadClient client = new DownloadClient(1000, 1000, 4, 2, 3);
+		try {
+			File target = tempTarget();
+			URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/dataset.arff");
+			File result = client.download(url, target, md5(CONTENT));
+			assertEquals(new File(target.getAbsolutePath() + ".gz"), result);
+			assertEquals(2, ranges.size());
+			assertEquals(new String(CONTENT), new String(readAll(CompressedStreams.open(result))));
+		} finally {
+			client.close();
+			server.stop(0);
+		}
+	}
+	
+	@Test
+	public void testStalePartialDownload() throws Exception {
+		List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+		HttpServer server = startServer(CONTENT, false, ranges);
+		DownloadClient client = new DownloadClient(1000, 1000, 4, 2, 3);
+		try {
+			File target = tempTarget();
+			// left behind by an earlier run, but not a prefix of the current file
+			FileOutputStream stale = new FileOutputStream(target.getAbsolutePath() + ".part");
+			stale.write(new byte[CONTENT.length / 2]);
+			stale.close();
+			
+			URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/dataset.arff");
+			File result = client.download(url, target, md5(CONTENT));
+			assertEquals(target, result);
+			assertEquals(3, ranges.size());
+			assertEquals("bytes=" + (CONTENT.length / 2) + "-", ranges.get(0));
+			assertEquals(null, ranges.get(2));
+			assertEquals(new String(CONTENT), new String(readAll(CompressedStreams.open(result))));
+			assertFalse(new File(target.getAbsolutePath() + ".part").exists());
+		} finally {
+			client.close();
+			server.stop(0);
+		}
+	}
+	
+	@Test
+	public void testChecksumMismatch() throws Exception {
+		List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+		HttpServer server = startServer(CONTENT, false, ranges);
+		DownloadClient client = new DownloadClient(1000, 1000, 4, 2, 3);
+		File target = tempTarget();
+		try {
+			URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/dataset.arff");
+			client.download(url, target, "00000000000000000000000000000000");
+			assertTrue("Expected an IOException", false);
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("Checksum mismatch"));
+			assertFalse(target.exists());
+			assertFalse(new File(target.getAbsolutePath() + ".part").exists());
+		} finally {
+			client.close();
+			server.stop(0);
+		}
+	}
+}
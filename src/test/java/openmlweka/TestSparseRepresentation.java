@@ -0,0 +1,114 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.openml.apiconnector.xml.EstimationProcedure;
+import org.openml.apiconnector.xml.EstimationProcedureType;
+import org.openml.weka.algorithm.AttributeProjection;
+import org.openml.weka.algorithm.DataSplits;
+import org.openml.weka.algorithm.InstancesHelper;
+import org.openml.weka.algorithm.WekaConfig;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+public class TestSparseRepresentation extends BaseTestFramework {
+	
+	private static Instances getMostlyZeros(int numInstances, int numAttributes) {
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		for (int j = 0; j < numAttributes - 1; ++j) {
+			attributes.add(new Attribute("w" + j));
+		}
+		attributes.add(new Attribute("class", Arrays.asList("pos", "neg")));
+		Instances instances = new Instances("bag-of-words", attributes, numInstances);
+		for (int i = 0; i < numInstances; ++i) {
+			double[] values = new double[numAttributes];
+			values[i % (numAttributes - 1)] = i + 1;
+			values[numAttributes - 1] = i % 2;
+			instances.add(new DenseInstance(1.0, values));
+		}
+		instances.setClassIndex(numAttributes - 1);
+		return instances;
+	}
+	
+	protected static Instances getSplits(int numInstances, int numFolds) {
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("type", Arrays.asList("TRAIN", "TEST")));
+		attributes.add(new Attribute("rowid"));
+		attributes.add(new Attribute("repeat"));
+		attributes.add(new Attribute("fold"));
+		Instances splits = new Instances("splits", attributes, numInstances * numFolds);
+		for (int fold = 0; fold < numFolds; ++fold) {
+			for (int i = 0; i < numInstances; ++i) {
+				splits.add(new DenseInstance(1.0, new double[] {i % numFolds == fold ? 1 : 0, i, 0, fold}));
+			}
+		}
+		return splits;
+	}
+	
+	@Test
+	public void testDensity() throws Exception {
+		// one word per row, and class value neg for half of the rows
+		assertEquals(15.0 / 200.0, InstancesHelper.getDensity(getMostlyZeros(10, 20)), 1e-9);
+		// the missing value counts as non-zero
+		Instances sparse = new Instances(new StringReader(TestDatasetCache.ARFF_SPARSE));
+		assertEquals(5.0 / 12.0, InstancesHelper.getDensity(sparse), 1e-9);
+	}
+	
+	@Test
+	public void testConversion() throws Exception {
+		Instances dense = getMostlyZeros(10, 20);
+		String expected = dense.toString();
+		
+		InstancesHelper.toSparseIfBeneficial(dense, 0.01);
+		assertFalse(dense.instance(0) instanceof SparseInstance);
+		
+		// dense datasets are only converted on request
+		InstancesHelper.toSparseIfBeneficial(dense, new WekaConfig("").getSparseDensity());
+		assertFalse(dense.instance(0) instanceof SparseInstance);
+		
+		InstancesHelper.toSparseIfBeneficial(dense, 0.25);
+		for (Instance instance : dense) {
+			assertTrue(instance instanceof SparseInstance);
+			assertEquals(2, instance.numValues() + (instance.classValue() == 0 ? 1 : 0));
+		}
+		// same values, different notation
+		Instances restored = new Instances(dense, 0);
+		for (Instance instance : dense) {
+			restored.add(new DenseInstance(instance));
+		}
+		assertEquals(expected, restored.toString());
+	}
+	
+	@Test
+	public void testSparseEndToEnd() throws Exception {
+		Instances sparse = new Instances(new StringReader(TestDatasetCache.ARFF_SPARSE));
+		Instances projected = new AttributeProjection(sparse, Arrays.asList("w2")).project(sparse);
+		for (Instance instance : projected) {
+			assertTrue(instance instanceof SparseInstance);
+		}
+		
+		Instances dataset = InstancesHelper.toSparseIfBeneficial(getMostlyZeros(10, 20), 0.25);
+		EstimationProcedure ep = new EstimationProcedure(1, 1, "2-fold Crossvalidation", EstimationProcedureType.CROSSVALIDATION, 1, 2, null, "true");
+		DataSplits splits = new DataSplits(1, ep, dataset, getSplits(10, 2));
+		for (int fold = 0; fold < 2; ++fold) {
+			assertEquals(10, splits.getTrainingSet(0, fold).size() + splits.getTestSet(0, fold).size());
+			for (Instance instance : splits.getTrainingSet(0, fold)) {
+				assertTrue(instance instanceof SparseInstance);
+			}
+			for (Instance instance : splits.getTestSet(0, fold)) {
+				assertTrue(instance instanceof SparseInstance);
+			}
+		}
+	}
+}
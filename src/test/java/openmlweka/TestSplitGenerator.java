@@ -0,0 +1,122 @@
+package openmlweka;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.openml.apiconnector.xml.EstimationProcedure;
+import org.openml.apiconnector.xml.EstimationProcedureType;
+import org.openml.weka.algorithm.DataSplits;
+import org.openml.weka.algorithm.SplitGenerator;
+import org.openml.weka.algorithm.SplitIndex;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+public class TestSplitGenerator extends BaseTestFramework {
+	
+	private static Instances getDataset(int numRows) {
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("x"));
+		attributes.add(new Attribute("class", Arrays.asList("a", "b", "c")));
+		Instances dataset = new Instances("generated", attributes, numRows);
+		for (int i = 0; i < numRows; ++i) {
+			// 60% a, 30% b, 10% c
+			int label = i % 10 < 6 ? 0 : i % 10 < 9 ? 1 : 2;
+			dataset.add(new DenseInstance(1.0, new double[] {i, label}));
+		}
+		dataset.setClassIndex(1);
+		return dataset;
+	}
+	
+	private static int count(Instances dataset, int[] rows, int label) {
+		int count = 0;
+		for (int row : rows) {
+			if ((int) dataset.instance(row).classValue() == label) {
+				++count;
+			}
+		}
+		return count;
+	}
+	
+	@Test
+	public void testCrossValidation() throws Exception {
+		Instances dataset = getDataset(100);
+		EstimationProcedure ep = new EstimationProcedure(1, 1, "2x10-fold Crossvalidation", EstimationProcedureType.CROSSVALIDATION, 2, 10, null, "true");
+		SplitIndex splits = SplitGenerator.generate(ep, dataset, 1);
+		assertEquals(2, splits.getRepeats());
+		assertEquals(10, splits.getFolds());
+		
+		for (int repeat = 0; repeat < 2; ++repeat) {
+			boolean[] tested = new boolean[100];
+			for (int fold = 0; fold < 10; ++fold) {
+				int[] train = splits.getRows(repeat, fold, 0, true);
+				int[] test = splits.getRows(repeat, fold, 0, false);
+				assertEquals(90, train.length);
+				assertEquals(10, test.length);
+				for (int row : test) {
+					assertFalse(tested[row]);
+					tested[row] = true;
+				}
+				// stratified: every fold has the class distribution of the dataset
+				assertEquals(6, count(dataset, test, 0));
+				assertEquals(3, count(dataset, test, 1));
+				assertEquals(1, count(dataset, test, 2));
+			}
+		}
+		assertFalse(Arrays.equals(splits.getRows(0, 0, 0, false), splits.getRows(1, 0, 0, false)));
+		
+		// deterministic for a given seed
+		SplitIndex again = SplitGenerator.generate(ep, dataset, 1);
+		SplitIndex other = SplitGenerator.generate(ep, dataset, 2);
+		assertArrayEquals(splits.getRows(1, 3, 0, true), again.getRows(1, 3, 0, true));
+		// repeat r uses seed + r
+		assertArrayEquals(splits.getRows(1, 0, 0, false), other.getRows(0, 0, 0, false));
+	}
+	
+	@Test
+	public void testHoldout() throws Exception {
+		Instances dataset = getDataset(100);
+		EstimationProcedure ep = new EstimationProcedure(1, 1, "33% Holdout set", EstimationProcedureType.HOLDOUT, 3, null, 30, "true");
+		SplitIndex splits = SplitGenerator.generate(ep, dataset, 1);
+		assertEquals(3, splits.getRepeats());
+		for (int repeat = 0; repeat < 3; ++repeat) {
+			int[] train = splits.getRows(repeat, 0, 0, true);
+			int[] test = splits.getRows(repeat, 0, 0, false);
+			assertEquals(70, train.length);
+			assertEquals(30, test.length);
+			assertEquals(18, count(dataset, test, 0));
+			assertEquals(9, count(dataset, test, 1));
+			assertEquals(3, count(dataset, test, 2));
+		}
+		
+		EstimationProcedure ordered = new EstimationProcedure(1, 1, "Ordered holdout", EstimationProcedureType.HOLDOUT_ORDERED, 1, 1, 20, "false");
+		SplitIndex orderedSplits = SplitGenerator.generate(ordered, dataset, 1);
+		assertEquals(80, orderedSplits.getRows(0, 0, 0, true).length);
+		assertEquals(80, orderedSplits.getRows(0, 0, 0, false)[0]);
+		assertEquals(99, orderedSplits.getRows(0, 0, 0, false)[19]);
+	}
+	
+	@Test
+	public void testLeaveOneOut() throws Exception {
+		Instances dataset = getDataset(20);
+		EstimationProcedure ep = new EstimationProcedure(1, 1, "Leave one out", EstimationProcedureType.LEAVEONEOUT, 1, 20, null, "false");
+		DataSplits splits = SplitGenerator.generateDataSplits(1, ep, dataset, 1);
+		assertEquals(20, splits.FOLDS);
+		assertTrue(splits.getSplitIndex().isTrainingImplicit());
+		assertEquals(19, splits.getTrainingSet(0, 7).numInstances());
+		assertArrayEquals(new int[] {7}, splits.getTestSetRowIds(0, 7, null));
+	}
+	
+	@Test(expected = Exception.class)
+	public void testUnsupported() throws Exception {
+		EstimationProcedure ep = new EstimationProcedure(1, 1, "Bootstrapping", EstimationProcedureType.BOOTSTRAPPING, 1, 1, null, "false");
+		SplitGenerator.generate(ep, getDataset(10), 1);
+	}
+}
@@ -0,0 +1,166 @@
+package openmlweka;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.openml.apiconnector.xml.EstimationProcedure;
+import org.openml.apiconnector.xml.EstimationProcedureType;
+import org.openml.weka.algorithm.DataSplits;
+import org.openml.weka.algorithm.SplitIndex;
+import org.openml.weka.io.SplitIndexFormat;
+
+import weka.core.Instances;
+
+public class TestSplitIndex extends BaseTestFramework {
+	
+	private static String getSplits(int numRows, int repeats, int folds, int samples) {
+		StringBuilder arff = new StringBuilder();
+		arff.append("@relation 'splits'\n\n@attribute type {TRAIN,TEST}\n@attribute rowid numeric\n");
+		arff.append("@attribute repeat numeric\n@attribute fold numeric\n@attribute sample numeric\n\n@data\n");
+		for (int r = 0; r < repeats; ++r) {
+			for (int f = 0; f < folds; ++f) {
+				arff.append("% repeat " + r + " fold " + f + "\n");
+				for (int s = 0; s < samples; ++s) {
+					for (int i = 0; i < numRows; ++i) {
+						int row = (i * 7 + r) % numRows;
+						if (row % folds == f) {
+							arff.append("TEST," + row + "," + r + "," + f + "," + s + "\n");
+						} else if (row % (s + 1) == 0) {
+							arff.append("'TRAIN'," + row + ".0," + r + "," + f + "," + s + "\n");
+						}
+					}
+				}
+			}
+		}
+		return arff.toString();
+	}
+	
+	private static void assertIndexEquals(SplitIndex expected, SplitIndex actual) {
+		assertEquals(expected.getRepeats(), actual.getRepeats());
+		assertEquals(expected.getFolds(), actual.getFolds());
+		assertEquals(expected.getSamples(), actual.getSamples());
+		if (expected.isTrainingImplicit() == actual.isTrainingImplicit()) {
+			assertEquals(expected.size(), actual.size());
+		}
+		for (int r = 0; r < expected.getRepeats(); ++r) {
+			for (int f = 0; f < expected.getFolds(); ++f) {
+				for (int s = 0; s < expected.getSamples(); ++s) {
+					assertArrayEquals(expected.getRows(r, f, s, true), actual.getRows(r, f, s, true));
+					assertArrayEquals(expected.getRows(r, f, s, false), actual.getRows(r, f, s, false));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testParse() throws Exception {
+		String arff = getSplits(50, 2, 5, 3);
+		SplitIndex expected = SplitIndex.fromInstances(new Instances(new StringReader(arff)));
+		SplitIndex parsed = SplitIndexFormat.parse(new StringReader(arff));
+		assertIndexEquals(expected, parsed);
+		assertEquals(2, parsed.getRepeats());
+		assertEquals(5, parsed.getFolds());
+		assertEquals(3, parsed.getSamples());
+		assertEquals(10, parsed.getRows(1, 2, 0, false).length);
+		assertEquals(0, parsed.getRows(2, 0, 0, false).length);
+	}
+	
+	@Test
+	public void testWithoutOptionalColumns() throws Exception {
+		String arff = "@relation splits\n@attribute rowid numeric\n@attribute type {TRAIN,TEST}\n@data\n" + 
+				"2,TRAIN\n0,TEST\n 1 , TRAIN \n";
+		SplitIndex parsed = SplitIndexFormat.parse(new StringReader(arff));
+		assertEquals(1, parsed.getRepeats());
+		assertArrayEquals(new int[] {2, 1}, parsed.getRows(0, 0, 0, true));
+		assertArrayEquals(new int[] {0}, parsed.getRows(0, 0, 0, false));
+	}
+	
+	@Test
+	public void testBinaryForm() throws Exception {
+		File splitsFile = File.createTempFile("splits", ".arff");
+		File indexFile = new File(splitsFile.getPath() + SplitIndexFormat.INDEX_SUFFIX);
+		splitsFile.deleteOnExit();
+		indexFile.deleteOnExit();
+		String arff = getSplits(30, 3, 4, 1);
+		FileWriter writer = new FileWriter(splitsFile);
+		writer.write(arff);
+		writer.close();
+		
+		SplitIndex parsed = SplitIndexFormat.load(splitsFile);
+		assertTrue(indexFile.exists());
+		assertIndexEquals(parsed, SplitIndexFormat.read(indexFile));
+		assertIndexEquals(parsed, SplitIndexFormat.load(splitsFile));
+	}
+	
+	private static String getLeaveOneOutSplits(int numRows) {
+		StringBuilder arff = new StringBuilder();
+		arff.append("@relation splits\n@attribute type {TRAIN,TEST}\n@attribute rowid numeric\n");
+		arff.append("@attribute repeat numeric\n@attribute fold numeric\n@data\n");
+		for (int f = 0; f < numRows; ++f) {
+			int test = (f * 7) % numRows;
+			for (int i = 0; i < numRows; ++i) {
+				arff.append((i == test ? "TEST," : "TRAIN,") + i + ",0," + f + "\n");
+			}
+		}
+		return arff.toString();
+	}
+	
+	@Test
+	public void testLeaveOneOut() throws Exception {
+		String arff = getLeaveOneOutSplits(20);
+		SplitIndex explicit = SplitIndexFormat.parse(new StringReader(arff));
+		SplitIndex implicit = SplitIndexFormat.parse(new StringReader(arff), true);
+		assertFalse(explicit.isTrainingImplicit());
+		assertTrue(implicit.isTrainingImplicit());
+		assertEquals(20, implicit.getNumRows());
+		assertEquals(20 * 20, explicit.size());
+		assertEquals(20, implicit.size());
+		assertIndexEquals(explicit, implicit);
+		assertIndexEquals(explicit, SplitIndex.fromInstances(new Instances(new StringReader(arff)), true));
+		
+		File splitsFile = File.createTempFile("splits", ".arff");
+		File indexFile = new File(splitsFile.getPath() + SplitIndexFormat.TEST_INDEX_SUFFIX);
+		splitsFile.deleteOnExit();
+		indexFile.deleteOnExit();
+		FileWriter writer = new FileWriter(splitsFile);
+		writer.write(arff);
+		writer.close();
+		SplitIndexFormat.load(splitsFile, true);
+		assertTrue(indexFile.exists());
+		SplitIndex read = SplitIndexFormat.read(indexFile);
+		assertTrue(read.isTrainingImplicit());
+		assertIndexEquals(explicit, read);
+	}
+	
+	@Test
+	public void testLeaveOneOutDataSplits() throws Exception {
+		Instances dataset = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		int n = dataset.numInstances();
+		EstimationProcedure ep = new EstimationProcedure(1, 1, "Leave one out", EstimationProcedureType.LEAVEONEOUT, 1, n, null, "true");
+		DataSplits splits = new DataSplits(1, ep, dataset, SplitIndexFormat.parse(new StringReader(getLeaveOneOutSplits(n)), true));
+		assertEquals(n, splits.FOLDS);
+		for (int fold = 0; fold < n; ++fold) {
+			Instances train = splits.getTrainingSet(0, fold);
+			Instances test = splits.getTestSet(0, fold);
+			assertEquals(n - 1, train.numInstances());
+			assertEquals(1, test.numInstances());
+			assertFalse(train.contains(test.instance(0)));
+			splits.release(0, fold, null);
+		}
+		assertEquals(0, splits.getNumMaterialized());
+	}
+	
+	@Test(expected = IOException.class)
+	public void testMissingRowid() throws Exception {
+		String arff = "@relation splits\n@attribute type {TRAIN,TEST}\n@attribute rowid numeric\n@data\nTRAIN,?\n";
+		SplitIndexFormat.parse(new StringReader(arff));
+	}
+}
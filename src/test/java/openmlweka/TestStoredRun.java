@@ -0,0 +1,153 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.openml.apiconnector.io.OpenmlConnector;
+import org.openml.apiconnector.xml.Flow;
+import org.openml.apiconnector.xml.FlowExists;
+import org.openml.apiconnector.xml.Run;
+import org.openml.apiconnector.xml.Run.Parameter_setting;
+import org.openml.weka.algorithm.WekaAlgorithm;
+import org.openml.weka.algorithm.WekaConfig;
+import org.openml.weka.io.StoredRun;
+import org.openml.weka.io.TaskBundleConnector;
+
+import weka.classifiers.trees.J48;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+public class TestStoredRun extends BaseTestFramework {
+	
+	private static final String[] TAGS = {"weka", "bundle"};
+	
+	/**
+	 * Acts as a server on which the flow does not exist yet
+	 */
+	private static class RecordingConnector extends OpenmlConnector {
+		private static final long serialVersionUID = 1L;
+		
+		private Flow flow;
+		private Run run;
+		private Map<String, File> outputFiles;
+		
+		@Override
+		public FlowExists flowExists(String name, String external_version) throws Exception {
+			throw new Exception("Flow does not exist");
+		}
+		
+		@Override
+		public int flowUpload(Flow flow) throws Exception {
+			this.flow = flow;
+			return 42;
+		}
+		
+		@Override
+		public Flow flowGet(int flow_id) throws Exception {
+			assertEquals(42, flow_id);
+			return flow;
+		}
+		
+		@Override
+		public int runUpload(Run run, Map<String, File> outputFiles) throws Exception {
+			this.run = run;
+			this.outputFiles = outputFiles;
+			return 99;
+		}
+	}
+	
+	private static Instances getPredictions() {
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("row_id"));
+		attributes.add(new Attribute("prediction", Arrays.asList("yes", "no")));
+		Instances predictions = new Instances("openml_task_7_predictions", attributes, 2);
+		predictions.add(new DenseInstance(1.0, new double[] {0, 1}));
+		predictions.add(new DenseInstance(1.0, new double[] {1, 0}));
+		return predictions;
+	}
+	
+	@Test
+	public void testStoreAndUpload() throws Exception {
+		File root = Files.createTempDirectory("task_bundles").toFile();
+		TestTaskBundle.writeBundle(root, 7, 3);
+		
+		// runs are stored next to the bundle of their task
+		TaskBundleConnector connector = new TaskBundleConnector(root, new WekaConfig(""));
+		J48 classifier = new J48();
+		classifier.setOptions(new String[] {"-C", "0.1"});
+		Flow flow = WekaAlgorithm.serializeClassifier(classifier, TAGS);
+		Run run = new Run(7, null, 0, "weka.classifiers.trees.J48 -C 0.1 -M 2", new Parameter_setting[0], TAGS);
+		Map<String, Instances> outputFiles = new HashMap<String, Instances>();
+		outputFiles.put("predictions", getPredictions());
+		StoredRun.write(connector.getRunDirectory(7), run, flow, outputFiles);
+		StoredRun.write(connector.getRunDirectory(7), run, flow, outputFiles);
+		TestTaskBundle.deleteOnExit(root);
+		
+		List<StoredRun> stored = StoredRun.find(root);
+		assertEquals(2, stored.size());
+		StoredRun first = stored.get(0);
+		assertEquals(7, first.getRun().getTask_id());
+		assertEquals(flow.getName(), first.getFlow().getName());
+		assertEquals(getPredictions().toString(), new Instances(new FileReader(first.getOutputFiles().get("predictions"))).toString());
+		assertNull(first.getUploadedRunId());
+		
+		RecordingConnector server = new RecordingConnector();
+		assertEquals(99, first.upload(server));
+		assertEquals(99, (int) first.getUploadedRunId());
+		assertEquals(42, server.run.getFlow_id());
+		assertEquals(7, server.run.getTask_id());
+		assertEquals(Arrays.asList(TAGS), Arrays.asList(server.run.getTag()));
+		assertNotNull(server.outputFiles.get("predictions"));
+		
+		// the parameter settings are obtained from the setup string
+		boolean confidence = false;
+		for (Parameter_setting setting : server.run.getParameter_settings()) {
+			confidence |= setting.getName().equals("C") && setting.getValue().contains("0.1");
+		}
+		assertTrue(confidence);
+	}
+	
+	@Test
+	public void testGeneratedSplitsNotUploaded() throws Exception {
+		File root = Files.createTempDirectory("task_bundles").toFile();
+		TestTaskBundle.deleteOnExit(root);
+		Flow flow = WekaAlgorithm.serializeClassifier(new J48(), TAGS);
+		Run run = new Run(7, null, 0, "weka.classifiers.trees.J48 -C 0.25 -M 2", new Parameter_setting[0], TAGS);
+		Map<String, Instances> outputFiles = new HashMap<String, Instances>();
+		outputFiles.put("predictions", getPredictions());
+		StoredRun stored = StoredRun.write(new File(root, "runs"), run, flow, outputFiles, true);
+		assertTrue(stored.hasGeneratedSplits());
+		
+		RecordingConnector server = new RecordingConnector();
+		try {
+			stored.upload(server);
+			fail("Runs on generated splits should not be uploaded");
+		} catch (Exception e) {
+			assertTrue(e.getMessage().contains("generated splits"));
+		}
+		assertNull(server.run);
+		assertNull(stored.getUploadedRunId());
+	}
+	
+	@Test(expected = Exception.class)
+	public void testBundleDoesNotUpload() throws Exception {
+		File root = Files.createTempDirectory("task_bundles").toFile();
+		TestTaskBundle.writeBundle(root, 7, 3);
+		TestTaskBundle.deleteOnExit(root);
+		new TaskBundleConnector(root, new WekaConfig("")).runUpload(new Run(7, null, 0, "weka.classifiers.trees.J48", new Parameter_setting[0], TAGS), new HashMap<String, File>());
+	}
+}
@@ -0,0 +1,48 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.openml.weka.io.StreamingArffLoader;
+
+import weka.core.Instances;
+
+public class TestStreamingArffLoader extends BaseTestFramework {
+	
+	private static Instances loadAndDelete(String arff, List<String> removeAttributes) throws Exception {
+		Instances instances = new Instances(new StringReader(arff));
+		for (String name : removeAttributes) {
+			instances.deleteAttributeAt(instances.attribute(name).index());
+		}
+		return instances;
+	}
+	
+	private static void doCheck(String arff, List<String> removeAttributes) throws Exception {
+		Instances expected = loadAndDelete(arff, removeAttributes);
+		Instances streamed = StreamingArffLoader.load(new StringReader(arff), removeAttributes);
+		assertEquals(expected.toString(), streamed.toString());
+		assertEquals(expected.numInstances(), streamed.numInstances());
+	}
+	
+	@Test
+	public void testDense() throws Exception {
+		doCheck(TestDatasetCache.ARFF_DENSE, Arrays.asList("num", "str"));
+		doCheck(TestDatasetCache.ARFF_DENSE, Arrays.asList("nom"));
+		doCheck(TestDatasetCache.ARFF_DENSE, Arrays.<String>asList());
+	}
+	
+	@Test
+	public void testSparse() throws Exception {
+		doCheck(TestDatasetCache.ARFF_SPARSE, Arrays.asList("w2"));
+		doCheck(TestDatasetCache.ARFF_SPARSE, Arrays.asList("w1", "w3"));
+	}
+	
+	@Test(expected = java.io.IOException.class)
+	public void testNonExistingAttribute() throws Exception {
+		StreamingArffLoader.load(new StringReader(TestDatasetCache.ARFF_DENSE), Arrays.asList("does_not_exist"));
+	}
+}
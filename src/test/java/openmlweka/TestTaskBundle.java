@@ -0,0 +1,106 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.openml.apiconnector.xml.EstimationProcedure;
+import org.openml.apiconnector.xml.EstimationProcedureType;
+import org.openml.apiconnector.xml.Task;
+import org.openml.weka.algorithm.WekaConfig;
+import org.openml.weka.experiment.TaskResultProducer;
+import org.openml.weka.experiment.TaskResultProducer.TaskData;
+import org.openml.weka.io.TaskBundle;
+import org.openml.weka.io.TaskBundleConnector;
+
+import weka.core.Instances;
+
+public class TestTaskBundle extends BaseTestFramework {
+	
+	protected static Task getTask(int taskId, int did) {
+		// the splits url is never requested, as the splits are in the bundle
+		String xml = "<oml:task xmlns:oml=\"http://openml.org/openml\">" + 
+			"<oml:task_id>" + taskId + "</oml:task_id><oml:task_name>Task " + taskId + "</oml:task_name>" + 
+			"<oml:task_type_id>1</oml:task_type_id><oml:task_type>Supervised Classification</oml:task_type>" + 
+			"<oml:input name=\"source_data\"><oml:data_set><oml:data_set_id>" + did + "</oml:data_set_id>" + 
+			"<oml:target_feature>class</oml:target_feature></oml:data_set></oml:input>" + 
+			"<oml:input name=\"estimation_procedure\"><oml:estimation_procedure><oml:id>1</oml:id>" + 
+			"<oml:type>crossvalidation</oml:type><oml:data_splits_url>http://127.0.0.1:1/splits.arff</oml:data_splits_url>" + 
+			"</oml:estimation_procedure></oml:input></oml:task>";
+		return (Task) xstream.fromXML(xml);
+	}
+	
+	protected static File writeBundle(File root, int taskId, int did) throws Exception {
+		EstimationProcedure ep = new EstimationProcedure(1, 1, "2-fold Crossvalidation", EstimationProcedureType.CROSSVALIDATION, 1, 2, null, "true");
+		Instances dataset = new Instances(new StringReader(TestDatasetCache.ARFF_DENSE));
+		File splits = File.createTempFile("splits", ".arff");
+		splits.deleteOnExit();
+		Files.write(splits.toPath(), TestSparseRepresentation.getSplits(dataset.numInstances(), 2).toString().getBytes(StandardCharsets.UTF_8));
+		
+		File directory = TaskBundle.getDirectory(root, taskId);
+		TaskBundle.write(directory, getTask(taskId, did), ep, TestDatasetCache.getDataSetDescription(did, "abc"), dataset, splits);
+		return directory;
+	}
+	
+	protected static void deleteOnExit(File directory) {
+		directory.deleteOnExit();
+		for (File file : directory.listFiles()) {
+			if (file.isDirectory()) {
+				deleteOnExit(file);
+			} else {
+				file.deleteOnExit();
+			}
+		}
+	}
+	
+	@Test
+	public void testWriteRead() throws Exception {
+		File root = Files.createTempDirectory("task_bundles").toFile();
+		File directory = writeBundle(root, 7, 3);
+		deleteOnExit(root);
+		
+		assertTrue(TaskBundle.isBundle(directory));
+		assertFalse(TaskBundle.isBundle(root));
+		TaskBundle bundle = new TaskBundle(directory);
+		assertEquals(7, (int) bundle.getTask().getTask_id());
+		assertEquals(3, (int) bundle.getDataSetDescription().getId());
+		assertEquals(2, (int) bundle.getEstimationProcedure().getFolds());
+		assertEquals(new Instances(new StringReader(TestDatasetCache.ARFF_DENSE)).toString(), bundle.getInstances().toString());
+		assertEquals(8, new Instances(Files.newBufferedReader(bundle.getSplitsFile().toPath())).numInstances());
+	}
+	
+	@Test
+	public void testLoadTaskOffline() throws Exception {
+		File root = Files.createTempDirectory("task_bundles").toFile();
+		writeBundle(root, 7, 3);
+		writeBundle(root, 8, 4);
+		deleteOnExit(root);
+		
+		WekaConfig config = new WekaConfig("");
+		TaskBundleConnector connector = new TaskBundleConnector(root, config);
+		TaskResultProducer producer = new TaskResultProducer(connector, config);
+		for (int taskId = 7; taskId <= 8; ++taskId) {
+			TaskData data = producer.loadTask(connector.taskGet(taskId));
+			assertEquals(4, data.getInstances().numInstances());
+			assertEquals("class", data.getInstances().classAttribute().name());
+			assertEquals(2, data.getDataSplits().FOLDS);
+			for (int fold = 0; fold < 2; ++fold) {
+				assertEquals(2, data.getDataSplits().getTestSet(0, fold).size());
+			}
+		}
+	}
+	
+	@Test(expected = Exception.class)
+	public void testMissingTask() throws Exception {
+		File root = Files.createTempDirectory("task_bundles").toFile();
+		writeBundle(root, 7, 3);
+		deleteOnExit(root);
+		new TaskBundleConnector(root, new WekaConfig("")).taskGet(9);
+	}
+}
@@ -0,0 +1,111 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.openml.apiconnector.io.OpenmlConnector;
+import org.openml.apiconnector.xml.Task;
+import org.openml.weka.algorithm.WekaConfig;
+import org.openml.weka.experiment.TaskPrefetcher;
+import org.openml.weka.experiment.TaskResultProducer;
+import org.openml.weka.experiment.TaskResultProducer.TaskData;
+
+public class TestTaskPrefetcher extends BaseTestFramework {
+
+	private static class BlockingProducer extends TaskResultProducer {
+		private static final long serialVersionUID = 1L;
+
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final CountDownLatch proceed = new CountDownLatch(1);
+		private final AtomicInteger loads = new AtomicInteger();
+		private final AtomicInteger releases = new AtomicInteger();
+		private final long size;
+
+		public BlockingProducer(long size) {
+			super(new OpenmlConnector("http://localhost/"), new WekaConfig(""));
+			this.size = size;
+		}
+
+		@Override
+		public TaskData loadTask(Task t) throws Exception {
+			started.countDown();
+			proceed.await();
+			loads.incrementAndGet();
+			return new TaskData(t, null, null, false, "Task " + t.getTask_id(), null) {
+				@Override
+				public long estimateSize() {
+					return size;
+				}
+			};
+		}
+
+		@Override
+		public void release(TaskData data) {
+			releases.incrementAndGet();
+		}
+	}
+
+	@Test
+	public void testGetWhileLoading() throws Exception {
+		final BlockingProducer producer = new BlockingProducer(1);
+		final TaskPrefetcher prefetcher = new TaskPrefetcher(producer, 2, 1024);
+		final Task task = new Task(1);
+		prefetcher.prefetch(Arrays.asList(task));
+		producer.started.await();
+
+		final AtomicReference<TaskData> result = new AtomicReference<TaskData>();
+		Thread getter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					result.set(prefetcher.get(task));
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		getter.start();
+		// waits on the load that is blocked
+		while (getter.getState() != Thread.State.WAITING) {
+			Thread.sleep(1);
+		}
+		producer.proceed.countDown();
+		getter.join();
+
+		assertEquals(1, producer.loads.get());
+		assertSame(task, result.get().getTask());
+		prefetcher.shutdown();
+		// handed over to the caller, so never released by the prefetcher
+		assertEquals(0, producer.releases.get());
+	}
+
+	@Test
+	public void testTooLarge() throws Exception {
+		BlockingProducer producer = new BlockingProducer(2048);
+		TaskPrefetcher prefetcher = new TaskPrefetcher(producer, 2, 1024);
+		producer.proceed.countDown();
+		Task first = new Task(1);
+		Task second = new Task(2);
+
+		prefetcher.prefetch(Arrays.asList(first));
+		while (producer.releases.get() < 1) {
+			Thread.sleep(1);
+		}
+		// the discarded task is not loaded again in the background
+		prefetcher.prefetch(Arrays.asList(first, second));
+		while (producer.releases.get() < 2) {
+			Thread.sleep(1);
+		}
+		assertEquals(2, producer.loads.get());
+
+		prefetcher.get(first);
+		assertEquals(3, producer.loads.get());
+		prefetcher.shutdown();
+	}
+}
@@ -0,0 +1,77 @@
+package openmlweka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.openml.apiconnector.xml.EstimationProcedure;
+import org.openml.apiconnector.xml.EstimationProcedureType;
+import org.openml.weka.algorithm.DataSplits;
+import org.openml.weka.algorithm.ValueDictionary;
+import org.openml.weka.io.StreamingArffLoader;
+
+import weka.core.Attribute;
+import weka.core.Instances;
+
+public class TestValueDictionary extends BaseTestFramework {
+	
+	@Test
+	public void testIntern() {
+		ValueDictionary dictionary = new ValueDictionary(1);
+		String value = new String("hello");
+		assertSame(value, dictionary.intern(value));
+		assertSame(value, dictionary.intern(new String("hello")));
+		assertEquals(1, dictionary.size());
+		
+		ValueDictionary disabled = new ValueDictionary(0);
+		String other = new String("hello");
+		assertSame(other, disabled.intern(other));
+		assertNotSame(value, disabled.intern(new String("hello")));
+	}
+	
+	@Test
+	public void testNominal() {
+		ValueDictionary dictionary = new ValueDictionary(3);
+		Attribute first = dictionary.nominal("a", Arrays.asList("x", "y", "z"));
+		Attribute second = dictionary.nominal("b", Arrays.asList("x", "y", "z"));
+		assertEquals("b", second.name());
+		assertSame(first.value(2), second.value(2));
+		assertEquals(1, dictionary.getSharedAttributes());
+		
+		// below the threshold, and different labels
+		Attribute small = dictionary.nominal("c", Arrays.asList(new String("x"), "y"));
+		assertNotSame(small.value(0), dictionary.nominal("d", Arrays.asList(new String("x"), "y")).value(0));
+		Attribute shared = dictionary.share(new Attribute("e", Arrays.asList("x", "y", "z")));
+		assertSame(first.value(0), shared.value(0));
+		assertEquals(2, dictionary.getSharedAttributes());
+		dictionary.nominal("f", Arrays.asList("z", "y", "x"));
+		assertEquals(2, dictionary.getSharedAttributes());
+	}
+	
+	@Test
+	public void testSharedBetweenLoads() throws Exception {
+		ValueDictionary dictionary = ValueDictionary.getShared();
+		int minNominalValues = dictionary.getMinNominalValues();
+		dictionary.setMinNominalValues(3);
+		try {
+			Instances first = StreamingArffLoader.load(new StringReader(TestDatasetCache.ARFF_DENSE), null);
+			Instances second = StreamingArffLoader.load(new StringReader(TestDatasetCache.ARFF_DENSE), null);
+			assertSame(first.attribute("nom").value(1), second.attribute("nom").value(1));
+			assertSame(first.instance(1).stringValue(2), second.instance(3).stringValue(2));
+			assertEquals(first.toString(), second.toString());
+			
+			// folds use the attributes of the dataset
+			first.setClassIndex(3);
+			EstimationProcedure ep = new EstimationProcedure(1, 1, "2-fold Crossvalidation", EstimationProcedureType.CROSSVALIDATION, 1, 2, null, "true");
+			DataSplits splits = new DataSplits(1, ep, first, TestSparseRepresentation.getSplits(first.numInstances(), 2));
+			assertSame(first.attribute("nom"), splits.getTrainingSet(0, 1).attribute("nom"));
+			assertSame(first.attribute("str"), splits.getTestSet(0, 1).attribute("str"));
+		} finally {
+			dictionary.setMinNominalValues(minNominalValues);
+		}
+	}
+}
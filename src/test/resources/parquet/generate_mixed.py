@@ -0,0 +1,200 @@
+"""
+Writes src/test/resources/parquet/mixed.parquet, the fixture of
+TestParquetLoader:
+
+    python generate_mixed.py mixed.parquet
+
+The file is written byte by byte, without a Parquet library, so that every
+feature the loader has to support appears exactly as specified: two row
+groups, plain and dictionary (RLE_DICTIONARY) encoding, data pages of
+version 1 and 2, optional columns with definition levels, and the
+uncompressed, snappy and gzip codecs. The snappy encoder only emits
+literals and 2-byte-offset copies, which is valid snappy.
+
+The expected contents are listed in DATA below and in TestParquetLoader.
+"""
+import struct, gzip, io, sys
+
+def varint(n):
+    out = b''
+    while True:
+        b = n & 0x7f; n >>= 7
+        if n: out += bytes([b | 0x80])
+        else: return out + bytes([b])
+
+def zz(n): return (n << 1) ^ (n >> 63)
+
+TC = {'i32': 5, 'i64': 6, 'bin': 8, 'list': 9, 'struct': 12}
+
+def enc_val(t, v):
+    if t in ('i32', 'i64'): return varint(zz(v))
+    if t == 'bin':
+        if isinstance(v, str): v = v.encode()
+        return varint(len(v)) + v
+    if t == 'list':
+        et, items = v
+        n = len(items)
+        h = bytes([(n << 4) | TC[et]]) if n < 15 else bytes([0xF0 | TC[et]]) + varint(n)
+        return h + b''.join(enc_val(et, i) for i in items)
+    if t == 'struct': return enc_struct(v)
+    raise Exception(t)
+
+def enc_struct(fields):
+    out = b''; last = 0
+    for fid, t, v in sorted(fields, key=lambda f: f[0]):
+        if t == 'bool':
+            code = 1 if v else 2
+        else:
+            code = TC[t]
+        d = fid - last
+        if 0 < d <= 15: out += bytes([(d << 4) | code])
+        else: out += bytes([code]) + varint(zz(fid))
+        if t != 'bool': out += enc_val(t, v)
+        last = fid
+    return out + b'\x00'
+
+def snappy(data):
+    out = varint(len(data))
+    i = 0; lit_start = 0; table = {}
+    def literal(b):
+        r = b''
+        while b:
+            chunk = b[:60]; b = b[60:]
+            r += bytes([(len(chunk) - 1) << 2]) + chunk
+        return r
+    while i + 4 <= len(data):
+        key = data[i:i+4]
+        j = table.get(key)
+        table[key] = i
+        if j is not None and i - j < 65536:
+            length = 4
+            while i + length < len(data) and data[j + length] == data[i + length] and length < 64:
+                length += 1
+            out += literal(data[lit_start:i])
+            out += bytes([((length - 1) << 2) | 2]) + struct.pack('<H', i - j)
+            i += length; lit_start = i
+        else:
+            i += 1
+    return out + literal(data[lit_start:])
+
+def rle_runs(values, bitwidth):
+    out = b''; i = 0; bw = (bitwidth + 7) // 8
+    while i < len(values):
+        j = i
+        while j < len(values) and values[j] == values[i]: j += 1
+        out += varint((j - i) << 1) + values[i].to_bytes(bw, 'little')
+        i = j
+    return out
+
+def bitpacked(values, bitwidth):
+    vals = list(values) + [0] * ((-len(values)) % 8)
+    groups = len(vals) // 8
+    bits = 0; nbits = 0; out = b''
+    for v in vals:
+        bits |= v << nbits; nbits += bitwidth
+        while nbits >= 8:
+            out += bytes([bits & 0xff]); bits >>= 8; nbits -= 8
+    if nbits: out += bytes([bits & 0xff])
+    return varint((groups << 1) | 1) + out
+
+def plain(ptype, values):
+    if ptype == 0:
+        b = bytearray((len(values) + 7) // 8)
+        for i, v in enumerate(values):
+            if v: b[i // 8] |= 1 << (i % 8)
+        return bytes(b)
+    if ptype == 1: return b''.join(struct.pack('<i', v) for v in values)
+    if ptype == 2: return b''.join(struct.pack('<q', v) for v in values)
+    if ptype == 5: return b''.join(struct.pack('<d', v) for v in values)
+    if ptype == 6: return b''.join(struct.pack('<i', len(v.encode())) + v.encode() for v in values)
+
+def compress(codec, data):
+    if codec == 0: return data
+    if codec == 1: return snappy(data)
+    if codec == 2:
+        buf = io.BytesIO()
+        with gzip.GzipFile(fileobj=buf, mode='wb', mtime=0) as f: f.write(data)
+        return buf.getvalue()
+
+# name, physical type, optional, codec, dictionary, page version
+COLUMNS = [
+    ('num',   5, True,  0, False, 1),
+    ('nom',   6, True,  1, True,  1),
+    ('cnt',   1, False, 2, False, 2),
+    ('str',   6, False, 0, False, 1),
+    ('rowid', 2, False, 1, False, 1),
+    ('class', 6, False, 1, True,  2),
+    ('flag',  0, False, 2, False, 1),
+]
+DATA = {
+    'num':   [1.5, None, -3.25, 0.0, 7.0, None],
+    'nom':   ['a', 'b c', None, 'a', 'd', 'a'],
+    'cnt':   [10, 20, 30, 40, 50, 60],
+    'str':   ['hello world', 'foo', 'hello', 'foo', 'x', 'y'],
+    'rowid': [100, 101, 102, 103, 104, 105],
+    'class': ['yes', 'no', 'no', 'yes', 'yes', 'no'],
+    'flag':  [True, False, True, True, False, False],
+}
+ROW_GROUPS = [(0, 4), (4, 6)]
+
+def column_chunk(f, col, values):
+    name, ptype, optional, codec, dictionary, version = col
+    start = f.tell()
+    dict_offset = None
+    nonnull = [v for v in values if v is not None]
+    encoding = 0
+    if dictionary:
+        dict_values = sorted(set(nonnull), key=nonnull.index)
+        raw = plain(ptype, dict_values)
+        comp = compress(codec, raw)
+        header = enc_struct([(1, 'i32', 2), (2, 'i32', len(raw)), (3, 'i32', len(comp)),
+                             (7, 'struct', [(1, 'i32', len(dict_values)), (2, 'i32', 0)])])
+        dict_offset = f.tell()
+        f.write(header + comp)
+        idx = [dict_values.index(v) for v in nonnull]
+        bw = max(1, (len(dict_values) - 1).bit_length())
+        body = bytes([bw]) + bitpacked(idx, bw)
+        encoding = 8
+    else:
+        body = plain(ptype, nonnull)
+    defs = rle_runs([0 if v is None else 1 for v in values], 1) if optional else b''
+    data_offset = f.tell()
+    if version == 1:
+        raw = (struct.pack('<i', len(defs)) + defs if optional else b'') + body
+        comp = compress(codec, raw)
+        header = enc_struct([(1, 'i32', 0), (2, 'i32', len(raw)), (3, 'i32', len(comp)),
+                             (5, 'struct', [(1, 'i32', len(values)), (2, 'i32', encoding), (3, 'i32', 3), (4, 'i32', 3)])])
+        f.write(header + comp)
+    else:
+        comp = compress(codec, body)
+        header = enc_struct([(1, 'i32', 3), (2, 'i32', len(defs) + len(body)), (3, 'i32', len(defs) + len(comp)),
+                             (8, 'struct', [(1, 'i32', len(values)), (2, 'i32', len(values) - len(nonnull)), (3, 'i32', len(values)),
+                                            (4, 'i32', encoding), (5, 'i32', len(defs)), (6, 'i32', 0), (7, 'bool', True)])])
+        f.write(header + defs + comp)
+    end = f.tell()
+    meta = [(1, 'i32', ptype), (2, 'list', ('i32', [0, 3] + ([8] if dictionary else []))), (3, 'list', ('bin', [name])),
+            (4, 'i32', codec), (5, 'i64', len(values)), (6, 'i64', end - start), (7, 'i64', end - start),
+            (9, 'i64', data_offset)]
+    if dict_offset is not None:
+        meta.append((11, 'i64', dict_offset))
+    return [(2, 'i64', start), (3, 'struct', meta)]
+
+def main(path):
+    f = open(path, 'wb')
+    f.write(b'PAR1')
+    row_groups = []
+    for a, b in ROW_GROUPS:
+        chunks = [column_chunk(f, col, DATA[col[0]][a:b]) for col in COLUMNS]
+        row_groups.append([(1, 'list', ('struct', chunks)), (2, 'i64', 0), (3, 'i64', b - a)])
+    schema = [[(4, 'bin', 'schema'), (5, 'i32', len(COLUMNS))]]
+    for name, ptype, optional, codec, dictionary, version in COLUMNS:
+        el = [(1, 'i32', ptype), (3, 'i32', 1 if optional else 0), (4, 'bin', name)]
+        if ptype == 6: el.append((6, 'i32', 0))
+        schema.append(el)
+    footer = enc_struct([(1, 'i32', 1), (2, 'list', ('struct', schema)), (3, 'i64', 6),
+                         (4, 'list', ('struct', row_groups)), (6, 'bin', 'openml-weka test fixture')])
+    f.write(footer + struct.pack('<i', len(footer)) + b'PAR1')
+    f.close()
+
+if __name__ == "__main__":
+    main(sys.argv[1])